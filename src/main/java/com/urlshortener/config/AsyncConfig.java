@@ -1,11 +1,13 @@
 package com.urlshortener.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
@@ -33,13 +35,40 @@ public class AsyncConfig {
         return executor;
     }
 
-    @Bean(name = "analyticsExecutor")
-    public Executor analyticsExecutor() {
+    @Bean(name = "analyticsQueryExecutor")
+    public Executor analyticsQueryExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(3);
-        executor.setMaxPoolSize(8);
-        executor.setQueueCapacity(200);
-        executor.setThreadNamePrefix("Analytics-");
+        executor.setCorePoolSize(16);
+        executor.setMaxPoolSize(16);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("AnalyticsQuery-");
+        // Run the query on the request thread rather than failing when the pool is saturated
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "clickMigrationExecutor")
+    public Executor clickMigrationExecutor(
+            @Value("${app.click-events.time-series.migration.parallelism:4}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("ClickMigration-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Long maintenance jobs run here instead of on the single scheduler thread, which the
+    // periodic flushes share
+    @Bean(name = "maintenanceExecutor")
+    public Executor maintenanceExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("Maintenance-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
         executor.initialize();
         return executor;
     }
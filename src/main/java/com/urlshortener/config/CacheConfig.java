@@ -1,6 +1,7 @@
 package com.urlshortener.config;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
@@ -13,6 +14,12 @@ import java.util.concurrent.TimeUnit;
 @EnableCaching
 public class CacheConfig {
 
+    @Value("${app.redirect-cache.maximum-size:100000}")
+    private long redirectCacheMaximumSize;
+
+    @Value("${app.redirect-cache.expire-after-write-minutes:60}")
+    private long redirectCacheExpireAfterWriteMinutes;
+
     @Bean
     public CacheManager cacheManager() {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
@@ -20,6 +27,13 @@ public class CacheConfig {
                 .maximumSize(10000)
                 .expireAfterWrite(1, TimeUnit.HOURS)
                 .recordStats());
+
+        // Redirect entries are small immutable snapshots, so this cache can hold far more of them
+        cacheManager.registerCustomCache("redirects", Caffeine.newBuilder()
+                .maximumSize(redirectCacheMaximumSize)
+                .expireAfterWrite(redirectCacheExpireAfterWriteMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build());
         return cacheManager;
     }
 
@@ -1,26 +1,94 @@
 package com.urlshortener.config;
 
+import com.mongodb.client.model.TimeSeriesGranularity;
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.repository.ClickDictionary;
+import com.urlshortener.repository.ClickEventCodec;
+import com.urlshortener.repository.ClickEventStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
 import org.springframework.data.mongodb.core.convert.DbRefResolver;
 import org.springframework.data.mongodb.core.convert.DefaultDbRefResolver;
 import org.springframework.data.mongodb.core.convert.DefaultMongoTypeMapper;
 import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
 import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 
+@Slf4j
 @Configuration
 @EnableMongoAuditing
 public class MongoConfig {
 
+    // Superseded by url_timestamp_id_idx, whose prefix serves every query the old one did
+    static final String SUPERSEDED_CLICK_EVENT_INDEX = "url_timestamp_idx";
+
+    // The dictionary needs MongoTemplate, which needs these conversions, hence the lazy proxy
+    @Bean
+    public ClickEventCodec clickEventCodec(@Lazy ClickDictionary clickDictionary,
+                                           @Value("${app.click-events.format:V2}") ClickEventCodec.Format format) {
+        return new ClickEventCodec(clickDictionary, format);
+    }
+
+    @Bean
+    public ClickEventStorage clickEventStorage(
+            MongoDatabaseFactory factory,
+            @Value("${app.click-events.storage:STANDARD}") ClickEventStorage.Mode mode,
+            @Value("${app.click-events.time-series.granularity:HOURS}") TimeSeriesGranularity granularity,
+            @Value("${app.click-events.time-series.expire-after-seconds:0}") long expireAfterSeconds) {
+        ClickEventStorage storage = new ClickEventStorage(mode, granularity, expireAfterSeconds);
+        storage.ensureCollection(factory.getMongoDatabase());
+        return storage;
+    }
+
+    @Bean
+    public MongoCustomConversions mongoCustomConversions(ClickEventCodec clickEventCodec) {
+        return new MongoCustomConversions(clickEventCodec.converters());
+    }
+
     @Bean
     public MappingMongoConverter mappingMongoConverter(
             MongoDatabaseFactory factory,
-            MongoMappingContext context) {
+            MongoMappingContext context,
+            MongoCustomConversions conversions,
+            ClickEventStorage clickEventStorage) {
+        // clickEventStorage is only a dependency so the time-series collection exists before
+        // MongoTemplate runs index creation against click events
         DbRefResolver dbRefResolver = new DefaultDbRefResolver(factory);
         MappingMongoConverter converter = new MappingMongoConverter(dbRefResolver, context);
         converter.setTypeMapper(new DefaultMongoTypeMapper(null));
+        converter.setCustomConversions(conversions);
         return converter;
     }
+
+    // Off by default so the old index stays until an operator drops it or enables this once
+    @Bean
+    public CommandLineRunner dropSupersededClickEventIndex(
+            MongoTemplate mongoTemplate,
+            @Value("${app.click-events.drop-superseded-index:false}") boolean enabled) {
+        return args -> {
+            if (!enabled) {
+                return;
+            }
+            try {
+                IndexOperations indexes = mongoTemplate.indexOps(ClickEvent.class);
+                for (IndexInfo index : indexes.getIndexInfo()) {
+                    if (SUPERSEDED_CLICK_EVENT_INDEX.equals(index.getName())) {
+                        indexes.dropIndex(SUPERSEDED_CLICK_EVENT_INDEX);
+                        log.info("Dropped click event index {}", SUPERSEDED_CLICK_EVENT_INDEX);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Failed to drop click event index {}: {}", SUPERSEDED_CLICK_EVENT_INDEX, e.getMessage());
+            }
+        };
+    }
 }
@@ -0,0 +1,20 @@
+package com.urlshortener.config;
+
+import com.urlshortener.service.WarmupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class WarmupHealthIndicator implements HealthIndicator {
+
+    private final WarmupService warmupService;
+
+    @Override
+    public Health health() {
+        Health.Builder builder = warmupService.isComplete() ? Health.up() : Health.down();
+        return builder.withDetail("phase", warmupService.getPhase()).build();
+    }
+}
@@ -10,6 +10,14 @@ import com.urlshortener.model.User;
 import com.urlshortener.repository.ClickEventRepository;
 import com.urlshortener.repository.UrlRepository;
 import com.urlshortener.repository.UserRepository;
+import com.urlshortener.service.AnalyticsRebuildService;
+import com.urlshortener.service.ClickJournalService;
+import com.urlshortener.service.GeoDatabaseService;
+import com.urlshortener.service.GeoLocationService;
+import com.urlshortener.service.RedirectTableService;
+import com.urlshortener.service.ShortCodeFilterService;
+import com.urlshortener.service.TimeSeriesMigrationService;
+import com.urlshortener.service.UrlService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -23,6 +31,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -37,6 +46,14 @@ public class AdminController {
     private final UserRepository userRepository;
     private final UrlRepository urlRepository;
     private final ClickEventRepository clickEventRepository;
+    private final ShortCodeFilterService shortCodeFilterService;
+    private final RedirectTableService redirectTableService;
+    private final ClickJournalService clickJournalService;
+    private final AnalyticsRebuildService analyticsRebuildService;
+    private final TimeSeriesMigrationService timeSeriesMigrationService;
+    private final GeoDatabaseService geoDatabaseService;
+    private final GeoLocationService geoLocationService;
+    private final UrlService urlService;
 
     @Value("${app.base-url}")
     private String baseUrl;
@@ -48,6 +65,10 @@ public class AdminController {
         stats.put("totalUsers", userRepository.count());
         stats.put("totalUrls", urlRepository.count());
         stats.put("totalClicks", clickEventRepository.count());
+        stats.put("redirectTable", redirectTableService.getStats());
+        stats.put("clickJournal", clickJournalService.getStats());
+        stats.put("geoDatabase", geoDatabaseService.getStats());
+        stats.put("geoCache", geoLocationService.getCacheStats());
 
         return ResponseEntity.ok(ApiResponse.success(stats));
     }
@@ -114,10 +135,44 @@ public class AdminController {
         return ResponseEntity.ok(ApiResponse.success("User enabled successfully"));
     }
 
+    @PostMapping("/short-code-filter/rebuild")
+    @Operation(summary = "Rebuild short code filter", description = "Rebuilds the in-memory filter used to reject unknown short codes")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> rebuildShortCodeFilter() {
+        return ResponseEntity.ok(ApiResponse.success(shortCodeFilterService.rebuild()));
+    }
+
+    @PostMapping("/analytics/rebuild")
+    @Operation(summary = "Rebuild analytics aggregates", description = "Recomputes click rollups, visitor sketches and heavy hitters from raw click events")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> rebuildAnalytics() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("eventsProcessed", analyticsRebuildService.rebuild());
+        return ResponseEntity.ok(ApiResponse.success(result));
+    }
+
+    @PostMapping("/click-events/time-series-migration")
+    @Operation(summary = "Copy click events to the time-series collection", description = "Starts copying the standard click_events collection into the time-series collection in parallel chunks, resuming from the last checkpoint; poll the status for progress")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> migrateClickEventsToTimeSeries() {
+        return ResponseEntity.accepted().body(ApiResponse.success(timeSeriesMigrationService.migrate()));
+    }
+
+    @GetMapping("/click-events/time-series-migration")
+    @Operation(summary = "Get time-series migration status", description = "Returns chunk progress of the click event copy, whether a copy is running and how the last one ended")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getTimeSeriesMigrationStatus() {
+        return ResponseEntity.ok(ApiResponse.success(timeSeriesMigrationService.getStatus()));
+    }
+
+    @PostMapping("/geo-database/reload")
+    @Operation(summary = "Reload geolocation database", description = "Loads the configured IP range database and swaps it in without a restart")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> reloadGeoDatabase() throws IOException {
+        return ResponseEntity.ok(ApiResponse.success(geoDatabaseService.reload()));
+    }
+
     @DeleteMapping("/urls/{urlId}")
     @Operation(summary = "Delete URL", description = "Deletes any URL")
     public ResponseEntity<ApiResponse<Void>> deleteUrl(@PathVariable String urlId) {
-        urlRepository.deleteById(urlId);
+        Url url = urlRepository.findById(urlId)
+                .orElseThrow(() -> new ResourceNotFoundException("URL", "id", urlId));
+        urlService.deleteUrlAsAdmin(url.getShortCode());
         return ResponseEntity.ok(ApiResponse.success("URL deleted successfully"));
     }
 }
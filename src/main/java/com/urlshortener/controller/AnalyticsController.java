@@ -7,20 +7,33 @@ import com.urlshortener.exception.ForbiddenException;
 import com.urlshortener.model.Url;
 import com.urlshortener.model.User;
 import com.urlshortener.service.AnalyticsService;
+import com.urlshortener.service.ClickExportService;
+import com.urlshortener.service.ClickStreamService;
 import com.urlshortener.service.UrlService;
 import com.urlshortener.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.Callable;
 
 @RestController
 @RequestMapping("/api/v1/analytics")
@@ -32,6 +45,8 @@ public class AnalyticsController {
     private final AnalyticsService analyticsService;
     private final UrlService urlService;
     private final UserService userService;
+    private final ClickExportService clickExportService;
+    private final ClickStreamService clickStreamService;
 
     @GetMapping("/dashboard")
     @Operation(summary = "Get dashboard", description = "Returns user's dashboard with summary statistics")
@@ -41,6 +56,25 @@ public class AnalyticsController {
         return ResponseEntity.ok(ApiResponse.success(response));
     }
 
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream live clicks", description = "Server-Sent Events with coalesced click counts "
+            + "and recent click summaries for the caller's URLs, or for one URL when shortCode is given")
+    public SseEmitter streamClicks(
+            @RequestParam(required = false) String shortCode,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        User user = userService.findByEmail(userDetails.getUsername());
+        String urlId = null;
+        if (shortCode != null) {
+            Url url = urlService.findByShortCode(shortCode);
+            if (!url.getUserId().equals(user.getId())) {
+                throw new ForbiddenException("You don't have permission to view these analytics");
+            }
+            urlId = url.getId();
+        }
+        return clickStreamService.subscribe(user.getId(), urlId);
+    }
+
     @GetMapping("/urls/{shortCode}")
     @Operation(summary = "Get URL analytics", description = "Returns detailed analytics for a specific URL")
     public ResponseEntity<ApiResponse<AnalyticsResponse>> getUrlAnalytics(
@@ -90,4 +124,57 @@ public class AnalyticsController {
         AnalyticsResponse response = analyticsService.getUrlAnalytics(url.getId(), startDate, endDate);
         return ResponseEntity.ok(ApiResponse.success(response));
     }
+
+    @GetMapping("/urls/{shortCode}/export")
+    @Operation(summary = "Export URL clicks", description = "Streams raw clicks as NDJSON or CSV, optionally gzipped. "
+            + "Pass both the timestamp and id of the last received click to resume an interrupted export")
+    public ResponseEntity<StreamingResponseBody> exportClicks(
+            @PathVariable String shortCode,
+            @Parameter(description = "ndjson or csv")
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @Parameter(description = "Timestamp of the last click already received")
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @Parameter(description = "Id of the last click already received")
+            @RequestParam(required = false) String afterId,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request) {
+
+        Url url = urlService.findByShortCode(shortCode);
+        User user = userService.findByEmail(userDetails.getUsername());
+
+        if (!url.getUserId().equals(user.getId())) {
+            throw new ForbiddenException("You don't have permission to export these analytics");
+        }
+
+        ClickExportService.Format exportFormat = ClickExportService.Format.parse(format);
+        LocalDateTime end = endDate != null ? endDate : LocalDateTime.now();
+        String fileName = "clicks-" + shortCode + "." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body = clickExportService.export(
+                url.getId(), startDate, end, afterTimestamp, afterId, exportFormat, gzip);
+        extendAsyncTimeout(request, clickExportService.getTimeoutMs());
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
+    // Raises the async timeout for this request only, before the streaming body starts
+    private static void extendAsyncTimeout(HttpServletRequest request, long timeoutMs) {
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(ClickExportService.class.getName(),
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest webRequest, Callable<T> task) {
+                        if (webRequest instanceof AsyncWebRequest asyncWebRequest) {
+                            asyncWebRequest.setTimeout(timeoutMs);
+                        }
+                    }
+                });
+    }
 }
@@ -2,8 +2,10 @@ package com.urlshortener.controller;
 
 import com.urlshortener.dto.request.UrlPasswordRequest;
 import com.urlshortener.dto.response.ApiResponse;
+import com.urlshortener.model.RedirectEntry;
 import com.urlshortener.model.Url;
 import com.urlshortener.service.AnalyticsService;
+import com.urlshortener.service.RedirectService;
 import com.urlshortener.service.UrlService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -27,6 +29,7 @@ import java.util.Map;
 public class RedirectController {
 
     private final UrlService urlService;
+    private final RedirectService redirectService;
     private final AnalyticsService analyticsService;
 
     @GetMapping("/{shortCode}")
@@ -35,13 +38,15 @@ public class RedirectController {
             @PathVariable String shortCode,
             HttpServletRequest request) {
 
-        if (urlService.isPasswordProtected(shortCode)) {
+        RedirectEntry entry = redirectService.resolve(shortCode);
+
+        if (entry.isPasswordProtected()) {
             return ResponseEntity
                     .status(HttpStatus.FORBIDDEN)
                     .body(ApiResponse.error("Password required"));
         }
 
-        return performRedirect(shortCode, null, request);
+        return performRedirect(entry, request);
     }
 
     @PostMapping("/{shortCode}/verify")
@@ -51,11 +56,12 @@ public class RedirectController {
             @Valid @RequestBody UrlPasswordRequest passwordRequest,
             HttpServletRequest request) {
 
+        RedirectEntry entry = redirectService.resolve(shortCode);
+        redirectService.ensureRedirectable(entry);
         String originalUrl = urlService.resolveUrl(shortCode, passwordRequest.getPassword());
 
-        Url url = urlService.findByShortCode(shortCode);
         urlService.incrementClickCount(shortCode);
-        analyticsService.recordClick(url, request);
+        analyticsService.recordClick(entry, request);
 
         return ResponseEntity.ok(ApiResponse.success(Map.of("redirectUrl", originalUrl)));
     }
@@ -80,17 +86,16 @@ public class RedirectController {
         return ResponseEntity.ok(ApiResponse.success(preview));
     }
 
-    private ResponseEntity<?> performRedirect(String shortCode, String password, HttpServletRequest request) {
-        String originalUrl = urlService.resolveUrl(shortCode, password);
+    private ResponseEntity<?> performRedirect(RedirectEntry entry, HttpServletRequest request) {
+        redirectService.ensureRedirectable(entry);
 
-        Url url = urlService.findByShortCode(shortCode);
-        urlService.incrementClickCount(shortCode);
-        analyticsService.recordClick(url, request);
+        urlService.incrementClickCount(entry.getShortCode());
+        analyticsService.recordClick(entry, request);
 
         HttpHeaders headers = new HttpHeaders();
-        headers.setLocation(URI.create(originalUrl));
+        headers.setLocation(URI.create(entry.getTargetUrl()));
 
-        log.info("Redirecting {} to {}", shortCode, originalUrl);
+        log.info("Redirecting {} to {}", entry.getShortCode(), entry.getTargetUrl());
         return new ResponseEntity<>(headers, HttpStatus.FOUND);
     }
 }
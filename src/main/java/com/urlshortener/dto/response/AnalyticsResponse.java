@@ -18,6 +18,11 @@ public class AnalyticsResponse {
     private String shortCode;
     private long totalClicks;
     private long uniqueVisitors;
+    private long uniqueVisitorsInRange;
+    // Relative standard error of the visitor counts; 0 when they were counted exactly
+    private double uniqueVisitorsError;
+    // Clicks of any country, browser or referrer missing from the top lists are at most this
+    private long topListsErrorBound;
     private List<ClicksByDate> clicksByDate;
     private List<CountryStats> topCountries;
     private List<BrowserStats> topBrowsers;
@@ -42,6 +47,7 @@ public class AnalyticsResponse {
         private String country;
         private long clicks;
         private double percentage;
+        private long maxError;
     }
 
     @Data
@@ -52,6 +58,7 @@ public class AnalyticsResponse {
         private String browser;
         private long clicks;
         private double percentage;
+        private long maxError;
     }
 
     @Data
@@ -72,5 +79,6 @@ public class AnalyticsResponse {
         private String referer;
         private long clicks;
         private double percentage;
+        private long maxError;
     }
 }
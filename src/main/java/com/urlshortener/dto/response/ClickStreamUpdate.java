@@ -0,0 +1,35 @@
+package com.urlshortener.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClickStreamUpdate {
+
+    private Map<String, Long> clicksByUrl;
+    private List<ClickSummary> recentClicks;
+    private long droppedClicks;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ClickSummary {
+        private String urlId;
+        private LocalDateTime timestamp;
+        private String country;
+        private String city;
+        private String deviceType;
+        private String browser;
+        private String refererDomain;
+    }
+}
@@ -13,4 +13,13 @@ public class ResourceNotFoundException extends RuntimeException {
     public ResourceNotFoundException(String resourceName, String fieldName, Object fieldValue) {
         super(String.format("%s not found with %s: '%s'", resourceName, fieldName, fieldValue));
     }
+
+    private ResourceNotFoundException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+
+    public static ResourceNotFoundException withoutStackTrace(String resourceName, String fieldName, Object fieldValue) {
+        return new ResourceNotFoundException(
+                String.format("%s not found with %s: '%s'", resourceName, fieldName, fieldValue), false);
+    }
 }
@@ -0,0 +1,55 @@
+package com.urlshortener.model;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Value;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+@Value
+@Builder
+public class ClickCapture {
+
+    public static final int MAX_USER_AGENT_LENGTH = 512;
+    public static final int MAX_REFERER_LENGTH = 1024;
+
+    String urlId;
+    String userId;
+
+    @Getter(AccessLevel.NONE)
+    byte[] clientIp;
+
+    String userAgent;
+    String referer;
+    long timestampNanos;
+
+    public byte[] getClientIp() {
+        return clientIp != null ? clientIp.clone() : null;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(0, timestampNanos), ZoneId.systemDefault());
+    }
+
+    public long estimatedSizeBytes() {
+        // Object header and fields, plus the backing arrays of each string and the address
+        return 48 + stringSize(urlId) + stringSize(userId) + stringSize(userAgent) + stringSize(referer)
+                + (clientIp != null ? 16 + clientIp.length : 0);
+    }
+
+    public static long nowNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    public static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    private static long stringSize(String value) {
+        return value != null ? 40 + value.length() : 0;
+    }
+}
@@ -16,8 +16,9 @@ import java.time.LocalDateTime;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Document(collection = "click_events")
-@CompoundIndex(name = "url_timestamp_idx", def = "{'urlId': 1, 'timestamp': -1}")
+@Document(collection = "#{@clickEventStorage.collectionName}")
+// _id breaks timestamp ties, so exports can page through a link's clicks in a stable order
+@CompoundIndex(name = "url_timestamp_id_idx", def = "{'urlId': 1, 'timestamp': 1, '_id': 1}")
 public class ClickEvent {
 
     @Id
@@ -0,0 +1,103 @@
+package com.urlshortener.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "click_rollups")
+@CompoundIndexes({
+        @CompoundIndex(name = "url_granularity_bucket_idx", def = "{'urlId': 1, 'granularity': 1, 'bucket': 1}"),
+        @CompoundIndex(name = "user_granularity_bucket_idx", def = "{'userId': 1, 'granularity': 1, 'bucket': 1}"),
+        @CompoundIndex(name = "granularity_bucket_idx", def = "{'granularity': 1, 'bucket': 1}")
+})
+public class ClickRollup {
+
+    public enum Granularity {
+        MINUTE,
+        HOUR,
+        DAY,
+        MONTH,
+        TOTAL
+    }
+
+    public static final String TOTAL_BUCKET = "all";
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH");
+    private static final DateTimeFormatter MINUTE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    // urlId:granularity:bucket, so concurrent upserts from several instances land on one document
+    @Id
+    private String id;
+
+    private String urlId;
+
+    private String userId;
+
+    private Granularity granularity;
+
+    // UTC bucket key: yyyy-MM-dd'T'HH:mm, yyyy-MM-dd'T'HH, yyyy-MM-dd or yyyy-MM by granularity
+    private String bucket;
+
+    private long totalClicks;
+
+    private Map<String, Long> countries;
+
+    private Map<String, Long> browsers;
+
+    private Map<String, Long> devices;
+
+    private Map<String, Long> referrers;
+
+    private Map<String, Long> hours;
+
+    // HyperLogLog of client IPs, present on DAY, MONTH and TOTAL rollups
+    private byte[] visitorSketch;
+
+    private long visitorSketchVersion;
+
+    private LocalDateTime updatedAt;
+
+    public static String idFor(String urlId, Granularity granularity, String bucket) {
+        return urlId + ":" + granularity + ":" + bucket;
+    }
+
+    public static LocalDateTime toUtc(LocalDateTime local) {
+        return local.atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime();
+    }
+
+    public static String dayBucket(TemporalAccessor utc) {
+        return DAY_FORMAT.format(utc);
+    }
+
+    public static String hourBucket(TemporalAccessor utc) {
+        return HOUR_FORMAT.format(utc);
+    }
+
+    public static String bucketFor(Granularity granularity, TemporalAccessor utc) {
+        return switch (granularity) {
+            case MINUTE -> MINUTE_FORMAT.format(utc);
+            case HOUR -> HOUR_FORMAT.format(utc);
+            case DAY -> DAY_FORMAT.format(utc);
+            case MONTH -> MONTH_FORMAT.format(utc);
+            case TOTAL -> TOTAL_BUCKET;
+        };
+    }
+}
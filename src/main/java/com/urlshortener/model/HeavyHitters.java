@@ -0,0 +1,49 @@
+package com.urlshortener.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "heavy_hitters")
+public class HeavyHitters {
+
+    // One document per url, keyed by the url id
+    @Id
+    private String id;
+
+    @Indexed
+    private String userId;
+
+    private int capacity;
+
+    private List<Entry> countries;
+
+    private List<Entry> browsers;
+
+    private List<Entry> referrers;
+
+    private long version;
+
+    private LocalDateTime updatedAt;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        private String item;
+        private long count;
+        private long error;
+    }
+}
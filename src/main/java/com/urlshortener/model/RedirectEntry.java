@@ -0,0 +1,45 @@
+package com.urlshortener.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+@Value
+@Builder
+public class RedirectEntry {
+
+    public static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    String urlId;
+    String userId;
+    String shortCode;
+    String targetUrl;
+    boolean active;
+    long expiresAtMillis;
+    boolean passwordProtected;
+
+    public boolean isExpired(long nowMillis) {
+        return nowMillis > expiresAtMillis;
+    }
+
+    public static RedirectEntry fromUrl(Url url) {
+        return RedirectEntry.builder()
+                .urlId(url.getId())
+                .userId(url.getUserId())
+                .shortCode(url.getShortCode())
+                .targetUrl(url.getOriginalUrl())
+                .active(url.isActive())
+                .expiresAtMillis(toEpochMillis(url.getExpiresAt()))
+                .passwordProtected(url.isPasswordProtected())
+                .build();
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return NO_EXPIRY;
+        }
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -43,6 +43,7 @@ public class Url {
     @Builder.Default
     private Set<String> tags = new HashSet<>();
 
+    // Written through $inc by ClickCounterService; updates to an existing url must not replace the document
     @Builder.Default
     private long clickCount = 0;
 
@@ -0,0 +1,112 @@
+package com.urlshortener.model;
+
+import com.urlshortener.dto.response.UrlResponse;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "user_dashboard")
+public class UserDashboard {
+
+    // One document per user, keyed by the user id
+    @Id
+    private String id;
+
+    private long totalUrls;
+
+    private long activeUrls;
+
+    private long expiredUrls;
+
+    private long totalClicks;
+
+    @Builder.Default
+    private List<UrlSnapshot> recentUrls = new ArrayList<>();
+
+    @Builder.Default
+    private List<UrlSnapshot> topPerformingUrls = new ArrayList<>();
+
+    // Clicks per UTC day (yyyy-MM-dd); the reconciler trims it back to the dashboard window
+    @Builder.Default
+    private Map<String, Long> clicksByDay = new TreeMap<>();
+
+    @Indexed
+    private LocalDateTime reconciledAt;
+
+    private LocalDateTime updatedAt;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UrlSnapshot {
+        private String urlId;
+        private String originalUrl;
+        private String shortCode;
+        private String customAlias;
+        private String title;
+        private String description;
+        private Set<String> tags;
+        private long clickCount;
+        private boolean active;
+        private boolean passwordProtected;
+        private boolean hasQrCode;
+        private LocalDateTime expiresAt;
+        private LocalDateTime createdAt;
+        private LocalDateTime updatedAt;
+
+        public static UrlSnapshot fromUrl(Url url) {
+            return UrlSnapshot.builder()
+                    .urlId(url.getId())
+                    .originalUrl(url.getOriginalUrl())
+                    .shortCode(url.getShortCode())
+                    .customAlias(url.getCustomAlias())
+                    .title(url.getTitle())
+                    .description(url.getDescription())
+                    .tags(url.getTags())
+                    .clickCount(url.getClickCount())
+                    .active(url.isActive())
+                    .passwordProtected(url.isPasswordProtected())
+                    .hasQrCode(url.getQrCodePath() != null)
+                    .expiresAt(url.getExpiresAt())
+                    .createdAt(url.getCreatedAt())
+                    .updatedAt(url.getUpdatedAt())
+                    .build();
+        }
+
+        public UrlResponse toResponse(String baseUrl) {
+            return UrlResponse.builder()
+                    .id(urlId)
+                    .originalUrl(originalUrl)
+                    .shortCode(shortCode)
+                    .shortUrl(baseUrl + "/" + shortCode)
+                    .customAlias(customAlias)
+                    .title(title)
+                    .description(description)
+                    .tags(tags)
+                    .clickCount(clickCount)
+                    .isActive(active)
+                    .isPasswordProtected(passwordProtected)
+                    .hasQrCode(hasQrCode)
+                    .expiresAt(expiresAt)
+                    .createdAt(createdAt)
+                    .updatedAt(updatedAt)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.urlshortener.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.InsertManyOptions;
+import com.urlshortener.util.Hashing;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Integer codes for low-cardinality click dimension values and a hash-keyed table of raw
+ * user agents, both shared by every instance through Mongo. Codes are global across
+ * dimensions, so aggregations can resolve them with a single $lookup on {@link #COLLECTION}.
+ * Codes are cached per instance up to a fixed bound and looked up in Mongo on a miss, so
+ * only dimensions with a small set of values belong here.
+ */
+@Slf4j
+@Component
+public class ClickDictionary {
+
+    public static final String COLLECTION = "click_dictionary";
+    public static final String USER_AGENT_COLLECTION = "user_agents";
+    private static final String SEQUENCE_COLLECTION = "click_dictionary_sequence";
+    private static final int MAX_CACHED_CODES = 10_000;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final Cache<String, Integer> codes = Caffeine.newBuilder().maximumSize(MAX_CACHED_CODES).build();
+    private final Cache<Integer, String> values = Caffeine.newBuilder().maximumSize(MAX_CACHED_CODES).build();
+    private final Cache<Long, String> userAgents = Caffeine.newBuilder().maximumSize(50_000).build();
+    private volatile boolean indexed;
+
+    public ClickDictionary(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Registers every value and user agent of a batch up front: one lookup of uncached values,
+     * one sequence reservation and one unordered insert for new ones, and one bulk upsert for
+     * unseen user agents.
+     */
+    public void prepare(Collection<String> dimensionValues, Collection<String> rawUserAgents) {
+        ensureIndexed();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String value : dimensionValues) {
+            if (value != null && codes.getIfPresent(value) == null) {
+                missing.add(value);
+            }
+        }
+        if (!missing.isEmpty()) {
+            missing.removeAll(fetch(missing));
+        }
+        if (!missing.isEmpty()) {
+            register(new ArrayList<>(missing));
+        }
+
+        Map<Long, String> unseen = new LinkedHashMap<>();
+        for (String userAgent : rawUserAgents) {
+            if (userAgent != null) {
+                long hash = Hashing.hash64(userAgent);
+                if (userAgents.getIfPresent(hash) == null) {
+                    unseen.put(hash, userAgent);
+                }
+            }
+        }
+        if (!unseen.isEmpty()) {
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, USER_AGENT_COLLECTION);
+            unseen.forEach((hash, userAgent) ->
+                    ops.upsert(Query.query(Criteria.where("_id").is(hash)), new Update().setOnInsert("ua", userAgent)));
+            ops.execute();
+            userAgents.putAll(unseen);
+        }
+    }
+
+    public Integer encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        Integer code = codes.getIfPresent(value);
+        if (code == null) {
+            prepare(List.of(value), List.of());
+            code = codes.getIfPresent(value);
+        }
+        return code;
+    }
+
+    public String decode(Integer code) {
+        if (code == null) {
+            return null;
+        }
+        String value = values.getIfPresent(code);
+        if (value == null) {
+            Document entry = mongoTemplate.findOne(Query.query(Criteria.where("code").is(code)), Document.class, COLLECTION);
+            if (entry == null) {
+                log.warn("Unknown click dictionary code {}", code);
+                return null;
+            }
+            value = entry.getString("_id");
+            cache(value, code);
+        }
+        return value;
+    }
+
+    public long userAgentHash(String userAgent) {
+        long hash = Hashing.hash64(userAgent);
+        if (userAgents.getIfPresent(hash) == null) {
+            prepare(List.of(), List.of(userAgent));
+        }
+        return hash;
+    }
+
+    public String userAgent(long hash) {
+        return userAgents.get(hash, key -> {
+            Document entry = mongoTemplate.findById(key, Document.class, USER_AGENT_COLLECTION);
+            return entry != null ? entry.getString("ua") : null;
+        });
+    }
+
+    private synchronized void ensureIndexed() {
+        if (indexed) {
+            return;
+        }
+        mongoTemplate.indexOps(COLLECTION).ensureIndex(new Index("code", Sort.Direction.ASC).unique());
+        indexed = true;
+    }
+
+    // Caches and returns the values that already have a code
+    private Set<String> fetch(Collection<String> values) {
+        Set<String> found = new LinkedHashSet<>();
+        for (Document entry : mongoTemplate.find(Query.query(Criteria.where("_id").in(values)), Document.class, COLLECTION)) {
+            cache(entry.getString("_id"), entry.getInteger("code"));
+            found.add(entry.getString("_id"));
+        }
+        return found;
+    }
+
+    private void register(List<String> missing) {
+        Document sequence = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is("code")),
+                new Update().inc("next", missing.size()),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Document.class, SEQUENCE_COLLECTION);
+        int next = ((Number) sequence.get("next")).intValue() - missing.size();
+
+        List<Document> entries = new ArrayList<>(missing.size());
+        for (String value : missing) {
+            entries.add(new Document("_id", value).append("code", next++));
+        }
+        try {
+            mongoTemplate.getCollection(COLLECTION).insertMany(entries,
+                    new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException | DuplicateKeyException e) {
+            // Another instance registered some of these first; its codes win
+            log.debug("Click dictionary values registered concurrently: {}", e.getMessage());
+        }
+
+        fetch(missing);
+    }
+
+    private void cache(String value, Integer code) {
+        codes.put(value, code);
+        values.put(code, value);
+    }
+}
@@ -0,0 +1,270 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.model.ClickEvent;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Reads and writes click_events documents in either format. V1 is the original one-field-per
+ * property layout. V2 keeps the indexed keys (urlId, userId, ipAddress, timestamp) but
+ * stores every other property under a short key, the low-cardinality dimensions (country,
+ * timezone, device, browser, OS) as {@link ClickDictionary} codes and the raw user agent as
+ * a hash into the user agent table. City, region and ISP stay plain strings, since their
+ * value sets are too large to keep in every instance's dictionary; documents written while
+ * they were still coded are decoded on read.
+ */
+public class ClickEventCodec {
+
+    public enum Format {
+        V1,
+        V2
+    }
+
+    public static final String VERSION = "v";
+    public static final int COMPACT_VERSION = 2;
+
+    // Property name -> V2 key
+    private static final Map<String, String> COMPACT_KEYS = Map.ofEntries(
+            Map.entry("userAgent", "ua"),
+            Map.entry("referer", "rf"),
+            Map.entry("country", "c"),
+            Map.entry("city", "ci"),
+            Map.entry("region", "rg"),
+            Map.entry("timezone", "tz"),
+            Map.entry("isp", "is"),
+            Map.entry("deviceType", "dt"),
+            Map.entry("browser", "b"),
+            Map.entry("browserVersion", "bv"),
+            Map.entry("operatingSystem", "os"),
+            Map.entry("osVersion", "ov"),
+            Map.entry("isMobile", "m"),
+            Map.entry("isBot", "bt"));
+
+    private final ClickDictionary dictionary;
+    private final Format writeFormat;
+
+    public ClickEventCodec(ClickDictionary dictionary, Format writeFormat) {
+        this.dictionary = dictionary;
+        this.writeFormat = writeFormat;
+    }
+
+    /**
+     * Stored keys for the given properties in both formats, for field projections. The format
+     * version is always included, since without it a V2 document would be read as V1.
+     */
+    public static String[] storedFields(String... properties) {
+        return Stream.concat(Stream.of(VERSION), Stream.of(properties)
+                        .flatMap(property -> COMPACT_KEYS.containsKey(property)
+                                ? Stream.of(property, COMPACT_KEYS.get(property))
+                                : Stream.of(property)))
+                .toArray(String[]::new);
+    }
+
+    public Format getWriteFormat() {
+        return writeFormat;
+    }
+
+    /**
+     * Registers the batch's dictionary values and user agents in bulk so the per-event
+     * conversion during insert only hits the in-memory caches.
+     */
+    public void prepare(Collection<ClickEvent> events) {
+        if (writeFormat != Format.V2) {
+            return;
+        }
+        List<String> values = new ArrayList<>();
+        List<String> userAgents = new ArrayList<>();
+        for (ClickEvent event : events) {
+            values.add(event.getCountry());
+            values.add(event.getTimezone());
+            values.add(event.getDeviceType());
+            values.add(event.getBrowser());
+            values.add(event.getOperatingSystem());
+            userAgents.add(event.getUserAgent());
+        }
+        dictionary.prepare(values, userAgents);
+    }
+
+    public Document toDocument(ClickEvent event) {
+        return writeFormat == Format.V2 ? toCompactDocument(event) : toLegacyDocument(event);
+    }
+
+    public Document toCompactDocument(ClickEvent event) {
+        Document document = new Document();
+        putId(document, event.getId());
+        document.put(VERSION, COMPACT_VERSION);
+        document.put("urlId", event.getUrlId());
+        document.put("userId", event.getUserId());
+        document.put("ipAddress", event.getIpAddress());
+        document.put("timestamp", toDate(event.getTimestamp()));
+        if (event.getUserAgent() != null) {
+            document.put("ua", dictionary.userAgentHash(event.getUserAgent()));
+        }
+        putIfPresent(document, "rf", event.getReferer());
+        putIfPresent(document, "c", dictionary.encode(event.getCountry()));
+        putIfPresent(document, "ci", event.getCity());
+        putIfPresent(document, "rg", event.getRegion());
+        putIfPresent(document, "tz", dictionary.encode(event.getTimezone()));
+        putIfPresent(document, "is", event.getIsp());
+        putIfPresent(document, "dt", dictionary.encode(event.getDeviceType()));
+        putIfPresent(document, "b", dictionary.encode(event.getBrowser()));
+        putIfPresent(document, "bv", event.getBrowserVersion());
+        putIfPresent(document, "os", dictionary.encode(event.getOperatingSystem()));
+        putIfPresent(document, "ov", event.getOsVersion());
+        if (event.isMobile()) {
+            document.put("m", true);
+        }
+        if (event.isBot()) {
+            document.put("bt", true);
+        }
+        return document;
+    }
+
+    public ClickEvent fromDocument(Document document) {
+        ClickEvent.ClickEventBuilder event = ClickEvent.builder()
+                .id(readId(document.get("_id")))
+                .urlId(document.getString("urlId"))
+                .userId(document.getString("userId"))
+                .ipAddress(document.getString("ipAddress"))
+                .timestamp(toLocalDateTime(document.getDate("timestamp")));
+
+        if (!Integer.valueOf(COMPACT_VERSION).equals(document.get(VERSION))) {
+            return event
+                    .userAgent(document.getString("userAgent"))
+                    .referer(document.getString("referer"))
+                    .country(document.getString("country"))
+                    .city(document.getString("city"))
+                    .region(document.getString("region"))
+                    .timezone(document.getString("timezone"))
+                    .isp(document.getString("isp"))
+                    .deviceType(document.getString("deviceType"))
+                    .browser(document.getString("browser"))
+                    .browserVersion(document.getString("browserVersion"))
+                    .operatingSystem(document.getString("operatingSystem"))
+                    .osVersion(document.getString("osVersion"))
+                    .isMobile(document.getBoolean("isMobile", false))
+                    .isBot(document.getBoolean("isBot", false))
+                    .build();
+        }
+
+        Long userAgentHash = document.getLong("ua");
+        return event
+                .userAgent(userAgentHash != null ? dictionary.userAgent(userAgentHash) : null)
+                .referer(document.getString("rf"))
+                .country(dictionary.decode(document.getInteger("c")))
+                .city(readUncoded(document.get("ci")))
+                .region(readUncoded(document.get("rg")))
+                .timezone(dictionary.decode(document.getInteger("tz")))
+                .isp(readUncoded(document.get("is")))
+                .deviceType(dictionary.decode(document.getInteger("dt")))
+                .browser(dictionary.decode(document.getInteger("b")))
+                .browserVersion(document.getString("bv"))
+                .operatingSystem(dictionary.decode(document.getInteger("os")))
+                .osVersion(document.getString("ov"))
+                .isMobile(document.getBoolean("m", false))
+                .isBot(document.getBoolean("bt", false))
+                .build();
+    }
+
+    public List<Converter<?, ?>> converters() {
+        return List.of(new Writer(this), new Reader(this));
+    }
+
+    private Document toLegacyDocument(ClickEvent event) {
+        Document document = new Document();
+        putId(document, event.getId());
+        document.put("urlId", event.getUrlId());
+        document.put("userId", event.getUserId());
+        document.put("ipAddress", event.getIpAddress());
+        document.put("userAgent", event.getUserAgent());
+        document.put("referer", event.getReferer());
+        document.put("country", event.getCountry());
+        document.put("city", event.getCity());
+        document.put("region", event.getRegion());
+        document.put("timezone", event.getTimezone());
+        document.put("isp", event.getIsp());
+        document.put("deviceType", event.getDeviceType());
+        document.put("browser", event.getBrowser());
+        document.put("browserVersion", event.getBrowserVersion());
+        document.put("operatingSystem", event.getOperatingSystem());
+        document.put("osVersion", event.getOsVersion());
+        document.put("isMobile", event.isMobile());
+        document.put("isBot", event.isBot());
+        document.put("timestamp", toDate(event.getTimestamp()));
+        return document;
+    }
+
+    private String readUncoded(Object value) {
+        return value instanceof Integer code ? dictionary.decode(code) : (String) value;
+    }
+
+    private static void putId(Document document, String id) {
+        if (id != null) {
+            document.put("_id", ObjectId.isValid(id) ? new ObjectId(id) : id);
+        }
+    }
+
+    private static String readId(Object id) {
+        if (id instanceof ObjectId objectId) {
+            return objectId.toHexString();
+        }
+        return id != null ? id.toString() : null;
+    }
+
+    private static void putIfPresent(Document document, String key, Object value) {
+        if (value != null) {
+            document.put(key, value);
+        }
+    }
+
+    // Same zone handling as the mapping converter, so both formats store identical instants
+    private static Date toDate(LocalDateTime value) {
+        return value != null ? Date.from(value.atZone(ZoneId.systemDefault()).toInstant()) : null;
+    }
+
+    private static LocalDateTime toLocalDateTime(Date value) {
+        return value != null ? LocalDateTime.ofInstant(value.toInstant(), ZoneId.systemDefault()) : null;
+    }
+
+    @WritingConverter
+    private static final class Writer implements Converter<ClickEvent, Document> {
+
+        private final ClickEventCodec codec;
+
+        private Writer(ClickEventCodec codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public Document convert(ClickEvent source) {
+            return codec.toDocument(source);
+        }
+    }
+
+    @ReadingConverter
+    private static final class Reader implements Converter<Document, ClickEvent> {
+
+        private final ClickEventCodec codec;
+
+        private Reader(ClickEventCodec codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public ClickEvent convert(Document source) {
+            return codec.fromDocument(source);
+        }
+    }
+}
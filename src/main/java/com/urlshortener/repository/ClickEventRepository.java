@@ -1,7 +1,9 @@
 package com.urlshortener.repository;
 
 import com.urlshortener.model.ClickEvent;
+import org.bson.Document;
 import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -12,6 +14,11 @@ import java.util.List;
 @Repository
 public interface ClickEventRepository extends MongoRepository<ClickEvent, String> {
 
+    // Dimension groups key on the V1 string or the V2 dictionary code; these two stages turn
+    // codes back into values and merge the counts of both formats
+    String RESOLVE_CODES = "{'$lookup': {'from': 'click_dictionary', 'localField': '_id', 'foreignField': 'code', 'as': 'd'}}";
+    String MERGE_RESOLVED = "{'$group': {'_id': {'$ifNull': [{'$arrayElemAt': ['$d._id', 0]}, '$_id']}, 'count': {'$sum': '$count'}}}";
+
     long countByUrlId(String urlId);
 
     List<ClickEvent> findByUrlIdOrderByTimestampDesc(String urlId);
@@ -19,8 +26,21 @@ public interface ClickEventRepository extends MongoRepository<ClickEvent, String
     @Query("{'urlId': ?0, 'timestamp': {$gte: ?1, $lte: ?2}}")
     List<ClickEvent> findByUrlIdAndTimestampBetween(String urlId, LocalDateTime start, LocalDateTime end);
 
-    @Query(value = "{'urlId': ?0}", fields = "{'ipAddress': 1}")
-    List<ClickEvent> findDistinctIpAddressesByUrlId(String urlId);
+    @Aggregation(pipeline = {
+            "{'$match': {'urlId': ?0}}",
+            "{'$group': {'_id': '$ipAddress'}}",
+            "{'$count': 'count'}"
+    })
+    @Meta(allowDiskUse = true)
+    Long countDistinctIpAddressesByUrlId(String urlId);
+
+    @Aggregation(pipeline = {
+            "{'$match': {'urlId': ?0, 'timestamp': {'$gte': ?1, '$lte': ?2}}}",
+            "{'$group': {'_id': '$ipAddress'}}",
+            "{'$count': 'count'}"
+    })
+    @Meta(allowDiskUse = true)
+    Long countDistinctIpAddressesByUrlIdBetween(String urlId, LocalDateTime start, LocalDateTime end);
 
     @Aggregation(pipeline = {
             "{'$match': {'urlId': ?0, 'timestamp': {'$gte': ?1, '$lte': ?2}}}",
@@ -31,7 +51,9 @@ public interface ClickEventRepository extends MongoRepository<ClickEvent, String
 
     @Aggregation(pipeline = {
             "{'$match': {'urlId': ?0}}",
-            "{'$group': {'_id': '$country', 'count': {'$sum': 1}}}",
+            "{'$group': {'_id': {'$ifNull': ['$country', '$c']}, 'count': {'$sum': 1}}}",
+            RESOLVE_CODES,
+            MERGE_RESOLVED,
             "{'$sort': {'count': -1}}",
             "{'$limit': 10}"
     })
@@ -39,7 +61,9 @@ public interface ClickEventRepository extends MongoRepository<ClickEvent, String
 
     @Aggregation(pipeline = {
             "{'$match': {'urlId': ?0}}",
-            "{'$group': {'_id': '$browser', 'count': {'$sum': 1}}}",
+            "{'$group': {'_id': {'$ifNull': ['$browser', '$b']}, 'count': {'$sum': 1}}}",
+            RESOLVE_CODES,
+            MERGE_RESOLVED,
             "{'$sort': {'count': -1}}",
             "{'$limit': 10}"
     })
@@ -47,14 +71,17 @@ public interface ClickEventRepository extends MongoRepository<ClickEvent, String
 
     @Aggregation(pipeline = {
             "{'$match': {'urlId': ?0}}",
-            "{'$group': {'_id': '$deviceType', 'count': {'$sum': 1}}}",
+            "{'$group': {'_id': {'$ifNull': ['$deviceType', '$dt']}, 'count': {'$sum': 1}}}",
+            RESOLVE_CODES,
+            MERGE_RESOLVED,
             "{'$sort': {'count': -1}}"
     })
     List<FieldCount> getDeviceBreakdown(String urlId);
 
     @Aggregation(pipeline = {
-            "{'$match': {'urlId': ?0, 'referer': {'$ne': null, '$ne': ''}}}",
-            "{'$group': {'_id': '$referer', 'count': {'$sum': 1}}}",
+            "{'$match': {'urlId': ?0}}",
+            "{'$group': {'_id': {'$ifNull': ['$referer', '$rf']}, 'count': {'$sum': 1}}}",
+            "{'$match': {'_id': {'$nin': [null, '']}}}",
             "{'$sort': {'count': -1}}",
             "{'$limit': 10}"
     })
@@ -74,8 +101,33 @@ public interface ClickEventRepository extends MongoRepository<ClickEvent, String
     })
     List<DateClickCount> getClicksByDateRangeForUser(String userId, LocalDateTime start, LocalDateTime end);
 
+    @Aggregation(pipeline = {
+            "{'$match': {'urlId': ?0}}",
+            "{'$facet': {"
+                    + "'total': [{'$count': 'count'}],"
+                    + "'visitors': [{'$group': {'_id': '$ipAddress'}}, {'$count': 'count'}],"
+                    + "'visitorsInRange': [{'$match': {'timestamp': {'$gte': ?1, '$lte': ?2}}}, {'$group': {'_id': '$ipAddress'}}, {'$count': 'count'}],"
+                    + "'clicksByDate': [{'$match': {'timestamp': {'$gte': ?1, '$lte': ?2}}}, {'$group': {'_id': {'$dateToString': {'format': '%Y-%m-%d', 'date': '$timestamp'}}, 'count': {'$sum': 1}}}, {'$sort': {'_id': 1}}],"
+                    + "'countries': [{'$group': {'_id': {'$ifNull': ['$country', '$c']}, 'count': {'$sum': 1}}}, " + RESOLVE_CODES + ", " + MERGE_RESOLVED + ", {'$sort': {'count': -1}}, {'$limit': 10}],"
+                    + "'browsers': [{'$group': {'_id': {'$ifNull': ['$browser', '$b']}, 'count': {'$sum': 1}}}, " + RESOLVE_CODES + ", " + MERGE_RESOLVED + ", {'$sort': {'count': -1}}, {'$limit': 10}],"
+                    + "'devices': [{'$group': {'_id': {'$ifNull': ['$deviceType', '$dt']}, 'count': {'$sum': 1}}}, " + RESOLVE_CODES + ", " + MERGE_RESOLVED + ", {'$sort': {'count': -1}}],"
+                    + "'referrers': [{'$group': {'_id': {'$ifNull': ['$referer', '$rf']}, 'count': {'$sum': 1}}}, {'$match': {'_id': {'$nin': [null, '']}}}, {'$sort': {'count': -1}}, {'$limit': 10}],"
+                    + "'hours': [{'$group': {'_id': {'$hour': '$timestamp'}, 'count': {'$sum': 1}}}, {'$sort': {'_id': 1}}]"
+                    + "}}"
+    })
+    @Meta(allowDiskUse = true)
+    Document getUrlAnalyticsFacets(String urlId, LocalDateTime start, LocalDateTime end);
+
     long countByUserId(String userId);
 
+    @Aggregation(pipeline = {
+            "{'$match': {'timestamp': {'$gte': ?0}}}",
+            "{'$group': {'_id': '$urlId', 'count': {'$sum': 1}}}",
+            "{'$sort': {'count': -1}}",
+            "{'$limit': ?1}"
+    })
+    List<FieldCount> getTopUrlsSince(LocalDateTime since, int limit);
+
     interface DateClickCount {
         String get_id();
         long getCount();
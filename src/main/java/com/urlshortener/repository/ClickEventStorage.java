@@ -0,0 +1,95 @@
+package com.urlshortener.repository;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.TimeSeriesGranularity;
+import com.mongodb.client.model.TimeSeriesOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where click events are stored. STANDARD is the original click_events collection.
+ * TIME_SERIES keeps them in a native time-series collection with timestamp as the time
+ * field and urlId as the meta field, so each link's clicks are packed into compressed
+ * buckets that range aggregations can skip wholesale, and old clicks expire on their own.
+ */
+@Slf4j
+public class ClickEventStorage {
+
+    public enum Mode {
+        STANDARD,
+        TIME_SERIES
+    }
+
+    public static final String STANDARD_COLLECTION = "click_events";
+    public static final String TIME_SERIES_COLLECTION = "click_events_ts";
+    public static final String TIME_FIELD = "timestamp";
+    public static final String META_FIELD = "urlId";
+
+    private final Mode mode;
+    private final TimeSeriesGranularity granularity;
+    private final long expireAfterSeconds;
+    private volatile boolean deletesByQuery = true;
+
+    public ClickEventStorage(Mode mode, TimeSeriesGranularity granularity, long expireAfterSeconds) {
+        this.mode = mode;
+        this.granularity = granularity;
+        this.expireAfterSeconds = expireAfterSeconds;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isTimeSeries() {
+        return mode == Mode.TIME_SERIES;
+    }
+
+    public String getCollectionName() {
+        return isTimeSeries() ? TIME_SERIES_COLLECTION : STANDARD_COLLECTION;
+    }
+
+    /**
+     * False for a time-series collection on a server before MongoDB 7.0, which only deletes
+     * from time-series collections by meta field and so cannot remove clicks by _id.
+     */
+    public boolean supportsDeletesByQuery() {
+        return deletesByQuery;
+    }
+
+    /**
+     * Creates the time-series collection, or applies the configured retention to an existing
+     * one. Must run before index creation, which would otherwise create a plain collection.
+     */
+    public void ensureCollection(MongoDatabase database) {
+        if (!isTimeSeries()) {
+            return;
+        }
+        List<?> version = database.runCommand(new Document("buildInfo", 1)).getList("versionArray", Object.class);
+        deletesByQuery = version != null && !version.isEmpty() && ((Number) version.get(0)).intValue() >= 7;
+        if (!deletesByQuery) {
+            log.warn("MongoDB before 7.0 cannot delete time-series clicks by _id; click retention is off, "
+                    + "use expireAfterSeconds to age out clicks");
+        }
+        Document existing = database.listCollections().filter(new Document("name", TIME_SERIES_COLLECTION)).first();
+        if (existing == null) {
+            CreateCollectionOptions options = new CreateCollectionOptions().timeSeriesOptions(
+                    new TimeSeriesOptions(TIME_FIELD).metaField(META_FIELD).granularity(granularity));
+            if (expireAfterSeconds > 0) {
+                options.expireAfter(expireAfterSeconds, TimeUnit.SECONDS);
+            }
+            database.createCollection(TIME_SERIES_COLLECTION, options);
+            log.info("Created time-series collection {} (granularity {}, expireAfterSeconds {})",
+                    TIME_SERIES_COLLECTION, granularity, expireAfterSeconds);
+            return;
+        }
+        if (!"timeseries".equals(existing.getString("type"))) {
+            throw new IllegalStateException(TIME_SERIES_COLLECTION + " exists but is not a time-series collection");
+        }
+        database.runCommand(new Document("collMod", TIME_SERIES_COLLECTION)
+                .append("expireAfterSeconds", expireAfterSeconds > 0 ? (Object) expireAfterSeconds : "off"));
+    }
+}
@@ -41,6 +41,8 @@ public interface UrlRepository extends MongoRepository<Url, String> {
 
     List<Url> findTop5ByUserIdOrderByCreatedAtDesc(String userId);
 
+    List<Url> findByIsActiveOrderByClickCountDesc(boolean isActive, Pageable pageable);
+
     @Query("{'expiresAt': {$lt: ?0, $ne: null}, 'isActive': true}")
     List<Url> findExpiredUrls(LocalDateTime now);
 }
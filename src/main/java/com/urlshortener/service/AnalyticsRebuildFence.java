@@ -0,0 +1,127 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keeps live ingestion and an analytics rebuild from counting a click twice or not at all.
+ * While the aggregates are being cleared no live click reaches the rebuilt listeners; while
+ * history is replayed up to the snapshot, only clicks newer than the snapshot do, since the
+ * replay counts everything else. The fence is stored in Mongo and polled so that every
+ * instance follows it, and it lapses if the rebuilding instance stops renewing it.
+ */
+@Slf4j
+@Component
+public class AnalyticsRebuildFence {
+
+    public enum Phase {
+        OPEN,
+        CLEARING,
+        REPLAYING
+    }
+
+    static final String COLLECTION = "analytics_rebuild";
+    private static final String FENCE_ID = "fence";
+
+    private final MongoTemplate mongoTemplate;
+    private final long leaseMs;
+
+    private volatile Phase phase = Phase.OPEN;
+    private volatile ObjectId snapshot;
+
+    public AnalyticsRebuildFence(MongoTemplate mongoTemplate,
+                                 @Value("${app.analytics-rebuild.fence-lease-ms:300000}") long leaseMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.leaseMs = leaseMs;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * The events a rebuilt listener should still apply live; the same list when no rebuild runs.
+     */
+    public List<ClickEvent> admitted(List<ClickEvent> events) {
+        Phase current = phase;
+        if (current == Phase.OPEN) {
+            return events;
+        }
+        if (current == Phase.CLEARING) {
+            return List.of();
+        }
+        ObjectId upTo = snapshot;
+        List<ClickEvent> admitted = new ArrayList<>(events.size());
+        for (ClickEvent event : events) {
+            if (event.getId() != null && ObjectId.isValid(event.getId()) && new ObjectId(event.getId()).compareTo(upTo) > 0) {
+                admitted.add(event);
+            }
+        }
+        return admitted;
+    }
+
+    public void clearing() {
+        publish(Phase.CLEARING, null);
+    }
+
+    public void replaying(ObjectId upTo) {
+        publish(Phase.REPLAYING, upTo);
+    }
+
+    /**
+     * Extends the lease; called by the rebuilding instance while it makes progress.
+     */
+    public void renew() {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(FENCE_ID)),
+                Update.update("expiresAt", new Date(System.currentTimeMillis() + leaseMs)), COLLECTION);
+    }
+
+    public void open() {
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(FENCE_ID)), COLLECTION);
+        apply(Phase.OPEN, null);
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics-rebuild.fence-poll-ms:1000}")
+    public void poll() {
+        try {
+            Document fence = mongoTemplate.findById(FENCE_ID, Document.class, COLLECTION);
+            if (fence == null || fence.getDate("expiresAt").getTime() < System.currentTimeMillis()) {
+                apply(Phase.OPEN, null);
+            } else {
+                apply(Phase.valueOf(fence.getString("phase")), fence.getObjectId("snapshot"));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read the analytics rebuild fence: {}", e.getMessage());
+        }
+    }
+
+    private void publish(Phase next, ObjectId upTo) {
+        Update update = Update.update("phase", next.name())
+                .set("snapshot", upTo)
+                .set("expiresAt", new Date(System.currentTimeMillis() + leaseMs));
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(FENCE_ID)), update, COLLECTION);
+        apply(next, upTo);
+    }
+
+    private void apply(Phase next, ObjectId upTo) {
+        if (next != phase) {
+            log.info("Analytics rebuild fence is now {}", next);
+        }
+        // The snapshot is written first so that a reader seeing REPLAYING never sees a stale one
+        snapshot = upTo;
+        phase = next;
+    }
+}
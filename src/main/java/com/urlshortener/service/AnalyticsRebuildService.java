@@ -0,0 +1,139 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.model.ClickRollup;
+import com.urlshortener.repository.ClickEventCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class AnalyticsRebuildService {
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    private static final long FENCE_RENEW_INTERVAL_MS = 10_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ClickRollupService clickRollupService;
+    private final VisitorSketchService visitorSketchService;
+    private final HeavyHitterService heavyHitterService;
+    private final UserDashboardService userDashboardService;
+    private final AnalyticsRebuildFence rebuildFence;
+    private final long fenceGraceMs;
+
+    public AnalyticsRebuildService(MongoTemplate mongoTemplate,
+                                   ClickRollupService clickRollupService,
+                                   VisitorSketchService visitorSketchService,
+                                   HeavyHitterService heavyHitterService,
+                                   UserDashboardService userDashboardService,
+                                   AnalyticsRebuildFence rebuildFence,
+                                   @Value("${app.analytics-rebuild.fence-grace-ms:5000}") long fenceGraceMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.clickRollupService = clickRollupService;
+        this.visitorSketchService = visitorSketchService;
+        this.heavyHitterService = heavyHitterService;
+        this.userDashboardService = userDashboardService;
+        this.rebuildFence = rebuildFence;
+        this.fenceGraceMs = fenceGraceMs;
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        try {
+            if (mongoTemplate.estimatedCount(ClickRollup.class) == 0 && mongoTemplate.estimatedCount(ClickEvent.class) > 0) {
+                log.info("No click rollups found, rebuilding analytics aggregates from click_events");
+                rebuild();
+            }
+        } catch (Exception e) {
+            log.warn("Analytics aggregate backfill failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recomputes rollups, visitor sketches and heavy hitters from click_events while ingestion
+     * keeps running. Each wait lets every instance pick up the fence and lets writes that
+     * started before it land, so no click is counted by both ingestion and the replay.
+     */
+    public synchronized long rebuild() {
+        try {
+            rebuildFence.clearing();
+            pause(fenceGraceMs);
+            clickRollupService.deleteAll();
+            heavyHitterService.deleteAll();
+
+            // The snapshot is minted locally and the scan is unordered, since time-series
+            // collections have no _id index to read the newest id or sort by
+            ObjectId snapshotId = new ObjectId();
+            rebuildFence.replaying(snapshotId);
+            pause(fenceGraceMs);
+            long processed = replay(snapshotId);
+
+            visitorSketchService.flush();
+            heavyHitterService.flush();
+            // Dashboards carry click totals too; they are rebuilt from the new rollups on next read
+            userDashboardService.deleteAll();
+
+            log.info("Rebuilt analytics aggregates from {} click events", processed);
+            return processed;
+        } finally {
+            rebuildFence.open();
+        }
+    }
+
+    private long replay(ObjectId snapshotId) {
+        Query query = Query.query(Criteria.where("_id").lte(snapshotId.toHexString()));
+        query.fields().include(ClickEventCodec.storedFields(
+                "urlId", "userId", "ipAddress", "country", "browser", "deviceType", "referer", "timestamp"));
+
+        long processed = 0;
+        long renewedAt = System.currentTimeMillis();
+        List<ClickEvent> batch = new ArrayList<>(REBUILD_BATCH_SIZE);
+        try (Stream<ClickEvent> events = mongoTemplate.stream(query, ClickEvent.class)) {
+            for (ClickEvent event : (Iterable<ClickEvent>) events::iterator) {
+                batch.add(event);
+                if (batch.size() == REBUILD_BATCH_SIZE) {
+                    apply(batch);
+                    processed += batch.size();
+                    batch.clear();
+                    if (System.currentTimeMillis() - renewedAt > FENCE_RENEW_INTERVAL_MS) {
+                        rebuildFence.renew();
+                        renewedAt = System.currentTimeMillis();
+                    }
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            apply(batch);
+            processed += batch.size();
+        }
+        return processed;
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the rebuild fence", e);
+        }
+    }
+
+    private void apply(List<ClickEvent> batch) {
+        clickRollupService.onBatch(batch);
+        visitorSketchService.onBatch(batch);
+        heavyHitterService.onBatch(batch);
+    }
+}
@@ -4,74 +4,103 @@ import com.urlshortener.dto.response.AnalyticsResponse;
 import com.urlshortener.dto.response.DashboardResponse;
 import com.urlshortener.dto.response.UrlResponse;
 import com.urlshortener.exception.ResourceNotFoundException;
-import com.urlshortener.model.ClickEvent;
+import com.urlshortener.model.ClickCapture;
+import com.urlshortener.model.ClickRollup;
+import com.urlshortener.model.RedirectEntry;
 import com.urlshortener.model.Url;
 import com.urlshortener.model.User;
+import com.urlshortener.model.UserDashboard;
 import com.urlshortener.repository.ClickEventRepository;
 import com.urlshortener.repository.UrlRepository;
-import com.urlshortener.util.UserAgentParser;
+import com.urlshortener.util.HyperLogLog;
+import com.urlshortener.util.IpAddresses;
+import com.urlshortener.util.MongoKeys;
 import jakarta.servlet.http.HttpServletRequest;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class AnalyticsService {
 
+    public enum QueryMode {
+        SEQUENTIAL,
+        PARALLEL,
+        FACET,
+        ROLLUP
+    }
+
     private final ClickEventRepository clickEventRepository;
     private final UrlRepository urlRepository;
-    private final GeoLocationService geoLocationService;
-    private final UserAgentParser userAgentParser;
+    private final ClickIngestionService clickIngestionService;
+    private final ClickRollupService clickRollupService;
+    private final VisitorSketchService visitorSketchService;
+    private final HeavyHitterService heavyHitterService;
+    private final UserDashboardService userDashboardService;
     private final UserService userService;
+    private final Executor analyticsQueryExecutor;
 
     @Value("${app.base-url}")
     private String baseUrl;
 
-    @Async("analyticsExecutor")
-    public void recordClick(Url url, HttpServletRequest request) {
-        try {
-            String ipAddress = getClientIP(request);
-            String userAgent = request.getHeader("User-Agent");
-            String referer = request.getHeader("Referer");
-
-            UserAgentParser.ParsedUserAgent parsedUA = userAgentParser.parse(userAgent);
-            GeoLocationService.GeoLocation geoLocation = geoLocationService.getLocation(ipAddress);
-
-            ClickEvent clickEvent = ClickEvent.builder()
-                    .urlId(url.getId())
-                    .userId(url.getUserId())
-                    .ipAddress(ipAddress)
-                    .userAgent(userAgent)
-                    .referer(referer)
-                    .country(geoLocation.getCountry())
-                    .city(geoLocation.getCity())
-                    .region(geoLocation.getRegion())
-                    .timezone(geoLocation.getTimezone())
-                    .isp(geoLocation.getIsp())
-                    .browser(parsedUA.getBrowser())
-                    .browserVersion(parsedUA.getBrowserVersion())
-                    .operatingSystem(parsedUA.getOperatingSystem())
-                    .osVersion(parsedUA.getOsVersion())
-                    .deviceType(parsedUA.getDeviceType())
-                    .isMobile(parsedUA.isMobile())
-                    .isBot(parsedUA.isBot())
-                    .timestamp(LocalDateTime.now())
-                    .build();
-
-            clickEventRepository.save(clickEvent);
-            log.debug("Click recorded for URL: {}", url.getShortCode());
-        } catch (Exception e) {
-            log.error("Failed to record click: {}", e.getMessage());
+    @Value("${app.analytics.query-mode:ROLLUP}")
+    private QueryMode queryMode;
+
+    @Value("${app.analytics.parallel-timeout-ms:10000}")
+    private long parallelTimeoutMs;
+
+    @Value("${app.user-dashboard.enabled:true}")
+    private boolean materializedDashboard;
+
+    public AnalyticsService(ClickEventRepository clickEventRepository,
+                            UrlRepository urlRepository,
+                            ClickIngestionService clickIngestionService,
+                            ClickRollupService clickRollupService,
+                            VisitorSketchService visitorSketchService,
+                            HeavyHitterService heavyHitterService,
+                            UserDashboardService userDashboardService,
+                            UserService userService,
+                            @Qualifier("analyticsQueryExecutor") Executor analyticsQueryExecutor) {
+        this.clickEventRepository = clickEventRepository;
+        this.urlRepository = urlRepository;
+        this.clickIngestionService = clickIngestionService;
+        this.clickRollupService = clickRollupService;
+        this.visitorSketchService = visitorSketchService;
+        this.heavyHitterService = heavyHitterService;
+        this.userDashboardService = userDashboardService;
+        this.userService = userService;
+        this.analyticsQueryExecutor = analyticsQueryExecutor;
+    }
+
+    public void recordClick(RedirectEntry entry, HttpServletRequest request) {
+        ClickCapture capture = ClickCapture.builder()
+                .urlId(entry.getUrlId())
+                .userId(entry.getUserId())
+                .clientIp(IpAddresses.parse(getClientIP(request)))
+                .userAgent(ClickCapture.truncate(request.getHeader("User-Agent"), ClickCapture.MAX_USER_AGENT_LENGTH))
+                .referer(ClickCapture.truncate(request.getHeader("Referer"), ClickCapture.MAX_REFERER_LENGTH))
+                .timestampNanos(ClickCapture.nowNanos())
+                .build();
+
+        if (!clickIngestionService.submit(capture)) {
+            log.debug("Click dropped for URL: {}", entry.getShortCode());
         }
     }
 
@@ -79,93 +108,154 @@ public class AnalyticsService {
         Url url = urlRepository.findById(urlId)
                 .orElseThrow(() -> new ResourceNotFoundException("URL", "id", urlId));
 
-        long totalClicks = clickEventRepository.countByUrlId(urlId);
+        return switch (queryMode) {
+            case ROLLUP -> getUrlAnalyticsFromRollups(url, startDate, endDate);
+            case FACET -> buildUrlAnalytics(url, queryWithFacet(urlId, startDate, endDate));
+            case PARALLEL -> buildUrlAnalytics(url, queryInParallel(urlId, startDate, endDate));
+            case SEQUENTIAL -> buildUrlAnalytics(url, querySequentially(urlId, startDate, endDate));
+        };
+    }
 
-        List<ClickEvent> uniqueIps = clickEventRepository.findDistinctIpAddressesByUrlId(urlId);
-        long uniqueVisitors = uniqueIps != null ? uniqueIps.stream()
-                .map(ClickEvent::getIpAddress)
-                .distinct()
-                .count() : 0;
+    private ClickAggregations querySequentially(String urlId, LocalDateTime startDate, LocalDateTime endDate) {
+        ClickAggregations aggregations = new ClickAggregations();
+        aggregations.totalClicks = clickEventRepository.countByUrlId(urlId);
+        aggregations.uniqueVisitors = orZero(clickEventRepository.countDistinctIpAddressesByUrlId(urlId));
+        aggregations.uniqueVisitorsInRange = orZero(clickEventRepository.countDistinctIpAddressesByUrlIdBetween(urlId, startDate, endDate));
 
-        List<AnalyticsResponse.ClicksByDate> clicksByDate = new java.util.ArrayList<>();
-        List<AnalyticsResponse.CountryStats> topCountries = new java.util.ArrayList<>();
-        List<AnalyticsResponse.BrowserStats> topBrowsers = new java.util.ArrayList<>();
-        List<AnalyticsResponse.DeviceStats> deviceBreakdown = new java.util.ArrayList<>();
-        List<AnalyticsResponse.ReferrerStats> topReferrers = new java.util.ArrayList<>();
-        Map<String, Long> clicksByHour = new HashMap<>();
+        try {
+            aggregations.clicksByDate = clickEventRepository.getClicksByDateRange(urlId, startDate, endDate);
+            aggregations.countries = clickEventRepository.getTopCountries(urlId);
+            aggregations.browsers = clickEventRepository.getTopBrowsers(urlId);
+            aggregations.devices = clickEventRepository.getDeviceBreakdown(urlId);
+            aggregations.referrers = clickEventRepository.getTopReferrers(urlId);
+            aggregations.hours = clickEventRepository.getClicksByHour(urlId);
+        } catch (Exception e) {
+            log.warn("Error fetching analytics aggregations: {}", e.getMessage());
+        }
+        return aggregations;
+    }
+
+    private ClickAggregations queryInParallel(String urlId, LocalDateTime startDate, LocalDateTime endDate) {
+        CompletableFuture<Long> totalClicks = submitQuery(() -> clickEventRepository.countByUrlId(urlId));
+        CompletableFuture<Long> uniqueVisitors = submitQuery(() -> clickEventRepository.countDistinctIpAddressesByUrlId(urlId));
+        CompletableFuture<Long> uniqueVisitorsInRange = submitQuery(
+                () -> clickEventRepository.countDistinctIpAddressesByUrlIdBetween(urlId, startDate, endDate));
+        CompletableFuture<List<ClickEventRepository.DateClickCount>> clicksByDate = submitQuery(
+                () -> clickEventRepository.getClicksByDateRange(urlId, startDate, endDate));
+        CompletableFuture<List<ClickEventRepository.FieldCount>> countries = submitQuery(() -> clickEventRepository.getTopCountries(urlId));
+        CompletableFuture<List<ClickEventRepository.FieldCount>> browsers = submitQuery(() -> clickEventRepository.getTopBrowsers(urlId));
+        CompletableFuture<List<ClickEventRepository.FieldCount>> devices = submitQuery(() -> clickEventRepository.getDeviceBreakdown(urlId));
+        CompletableFuture<List<ClickEventRepository.FieldCount>> referrers = submitQuery(() -> clickEventRepository.getTopReferrers(urlId));
+        CompletableFuture<List<ClickEventRepository.FieldCount>> hours = submitQuery(() -> clickEventRepository.getClicksByHour(urlId));
 
+        ClickAggregations aggregations = new ClickAggregations();
+        aggregations.totalClicks = orZero(joinQuery(totalClicks));
+        aggregations.uniqueVisitors = orZero(joinQuery(uniqueVisitors));
+        aggregations.uniqueVisitorsInRange = orZero(joinQuery(uniqueVisitorsInRange));
+        aggregations.clicksByDate = joinQuery(clicksByDate);
+        aggregations.countries = joinQuery(countries);
+        aggregations.browsers = joinQuery(browsers);
+        aggregations.devices = joinQuery(devices);
+        aggregations.referrers = joinQuery(referrers);
+        aggregations.hours = joinQuery(hours);
+        return aggregations;
+    }
+
+    private ClickAggregations queryWithFacet(String urlId, LocalDateTime startDate, LocalDateTime endDate) {
+        ClickAggregations aggregations = new ClickAggregations();
         try {
-            var dateResults = clickEventRepository.getClicksByDateRange(urlId, startDate, endDate);
-            if (dateResults != null) {
-                clicksByDate = dateResults.stream()
-                        .map(dc -> AnalyticsResponse.ClicksByDate.builder()
-                                .date(dc.get_id())
-                                .clicks(dc.getCount())
-                                .build())
-                        .collect(Collectors.toList());
+            Document facets = clickEventRepository.getUrlAnalyticsFacets(urlId, startDate, endDate);
+            if (facets == null) {
+                return aggregations;
             }
+            aggregations.totalClicks = firstCount(facets, "total");
+            aggregations.uniqueVisitors = firstCount(facets, "visitors");
+            aggregations.uniqueVisitorsInRange = firstCount(facets, "visitorsInRange");
+            aggregations.clicksByDate = facetCounts(facets, "clicksByDate");
+            aggregations.countries = facetCounts(facets, "countries");
+            aggregations.browsers = facetCounts(facets, "browsers");
+            aggregations.devices = facetCounts(facets, "devices");
+            aggregations.referrers = facetCounts(facets, "referrers");
+            aggregations.hours = facetCounts(facets, "hours");
+        } catch (Exception e) {
+            log.warn("Error fetching analytics facets: {}", e.getMessage());
+        }
+        return aggregations;
+    }
 
-            var countryResults = clickEventRepository.getTopCountries(urlId);
-            if (countryResults != null) {
-                topCountries = countryResults.stream()
-                        .map(fc -> AnalyticsResponse.CountryStats.builder()
-                                .country(fc.get_id() != null ? fc.get_id().toString() : "Unknown")
-                                .clicks(fc.getCount())
-                                .percentage(totalClicks > 0 ? (fc.getCount() * 100.0 / totalClicks) : 0)
-                                .build())
-                        .collect(Collectors.toList());
-            }
+    private AnalyticsResponse buildUrlAnalytics(Url url, ClickAggregations aggregations) {
+        long totalClicks = aggregations.totalClicks;
 
-            var browserResults = clickEventRepository.getTopBrowsers(urlId);
-            if (browserResults != null) {
-                topBrowsers = browserResults.stream()
-                        .map(fc -> AnalyticsResponse.BrowserStats.builder()
-                                .browser(fc.get_id() != null ? fc.get_id().toString() : "Unknown")
-                                .clicks(fc.getCount())
-                                .percentage(totalClicks > 0 ? (fc.getCount() * 100.0 / totalClicks) : 0)
-                                .build())
-                        .collect(Collectors.toList());
-            }
+        List<AnalyticsResponse.ClicksByDate> clicksByDate = new ArrayList<>();
+        List<AnalyticsResponse.CountryStats> topCountries = new ArrayList<>();
+        List<AnalyticsResponse.BrowserStats> topBrowsers = new ArrayList<>();
+        List<AnalyticsResponse.DeviceStats> deviceBreakdown = new ArrayList<>();
+        List<AnalyticsResponse.ReferrerStats> topReferrers = new ArrayList<>();
+        Map<String, Long> clicksByHour = new HashMap<>();
 
-            var deviceResults = clickEventRepository.getDeviceBreakdown(urlId);
-            if (deviceResults != null) {
-                deviceBreakdown = deviceResults.stream()
-                        .map(fc -> AnalyticsResponse.DeviceStats.builder()
-                                .deviceType(fc.get_id() != null ? fc.get_id().toString() : "Unknown")
-                                .clicks(fc.getCount())
-                                .percentage(totalClicks > 0 ? (fc.getCount() * 100.0 / totalClicks) : 0)
-                                .build())
-                        .collect(Collectors.toList());
-            }
+        if (aggregations.clicksByDate != null) {
+            clicksByDate = aggregations.clicksByDate.stream()
+                    .map(dc -> AnalyticsResponse.ClicksByDate.builder()
+                            .date(dc.get_id())
+                            .clicks(dc.getCount())
+                            .build())
+                    .collect(Collectors.toList());
+        }
 
-            var referrerResults = clickEventRepository.getTopReferrers(urlId);
-            if (referrerResults != null) {
-                topReferrers = referrerResults.stream()
-                        .map(fc -> AnalyticsResponse.ReferrerStats.builder()
-                                .referer(fc.get_id() != null ? fc.get_id().toString() : "Direct")
-                                .clicks(fc.getCount())
-                                .percentage(totalClicks > 0 ? (fc.getCount() * 100.0 / totalClicks) : 0)
-                                .build())
-                        .collect(Collectors.toList());
-            }
+        if (aggregations.countries != null) {
+            topCountries = aggregations.countries.stream()
+                    .map(fc -> AnalyticsResponse.CountryStats.builder()
+                            .country(fc.get_id() != null ? fc.get_id().toString() : "Unknown")
+                            .clicks(fc.getCount())
+                            .percentage(percentage(fc.getCount(), totalClicks))
+                            .build())
+                    .collect(Collectors.toList());
+        }
 
-            var hourResults = clickEventRepository.getClicksByHour(urlId);
-            if (hourResults != null) {
-                hourResults.forEach(fc -> {
-                    if (fc.get_id() != null) {
-                        clicksByHour.put(fc.get_id().toString(), fc.getCount());
-                    }
-                });
-            }
-        } catch (Exception e) {
-            log.warn("Error fetching analytics aggregations: {}", e.getMessage());
+        if (aggregations.browsers != null) {
+            topBrowsers = aggregations.browsers.stream()
+                    .map(fc -> AnalyticsResponse.BrowserStats.builder()
+                            .browser(fc.get_id() != null ? fc.get_id().toString() : "Unknown")
+                            .clicks(fc.getCount())
+                            .percentage(percentage(fc.getCount(), totalClicks))
+                            .build())
+                    .collect(Collectors.toList());
+        }
+
+        if (aggregations.devices != null) {
+            deviceBreakdown = aggregations.devices.stream()
+                    .map(fc -> AnalyticsResponse.DeviceStats.builder()
+                            .deviceType(fc.get_id() != null ? fc.get_id().toString() : "Unknown")
+                            .clicks(fc.getCount())
+                            .percentage(percentage(fc.getCount(), totalClicks))
+                            .build())
+                    .collect(Collectors.toList());
+        }
+
+        if (aggregations.referrers != null) {
+            topReferrers = aggregations.referrers.stream()
+                    .map(fc -> AnalyticsResponse.ReferrerStats.builder()
+                            .referer(fc.get_id() != null ? fc.get_id().toString() : "Direct")
+                            .clicks(fc.getCount())
+                            .percentage(percentage(fc.getCount(), totalClicks))
+                            .build())
+                    .collect(Collectors.toList());
+        }
+
+        if (aggregations.hours != null) {
+            aggregations.hours.forEach(fc -> {
+                if (fc.get_id() != null) {
+                    clicksByHour.put(fc.get_id().toString(), fc.getCount());
+                }
+            });
         }
 
         return AnalyticsResponse.builder()
-                .urlId(urlId)
+                .urlId(url.getId())
                 .shortCode(url.getShortCode())
                 .totalClicks(totalClicks)
-                .uniqueVisitors(uniqueVisitors)
+                .uniqueVisitors(aggregations.uniqueVisitors)
+                .uniqueVisitorsInRange(aggregations.uniqueVisitorsInRange)
                 .clicksByDate(clicksByDate)
                 .topCountries(topCountries)
                 .topBrowsers(topBrowsers)
@@ -175,15 +265,46 @@ public class AnalyticsService {
                 .build();
     }
 
+    private <T> CompletableFuture<T> submitQuery(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(query, analyticsQueryExecutor)
+                .orTimeout(parallelTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static <T> T joinQuery(CompletableFuture<T> query) {
+        try {
+            return query.join();
+        } catch (CompletionException e) {
+            log.warn("Error fetching analytics aggregation: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            return null;
+        }
+    }
+
+    private static long firstCount(Document facets, String facet) {
+        List<Document> results = facets.getList(facet, Document.class, List.of());
+        return results.isEmpty() ? 0L : ((Number) results.get(0).get("count")).longValue();
+    }
+
+    private static List<FacetCount> facetCounts(Document facets, String facet) {
+        return facets.getList(facet, Document.class, List.of()).stream()
+                .map(result -> new FacetCount(result.get("_id"), ((Number) result.get("count")).longValue()))
+                .collect(Collectors.toList());
+    }
+
     public DashboardResponse getDashboard(String userEmail) {
         User user = userService.findByEmail(userEmail);
         String userId = user.getId();
 
+        if (materializedDashboard) {
+            return getMaterializedDashboard(userId);
+        }
+
         long totalUrls = urlRepository.countByUserId(userId);
         long activeUrls = urlRepository.countByUserIdAndIsActive(userId, true);
         Long expiredCount = urlRepository.countByUserIdAndExpired(userId, LocalDateTime.now());
         long expiredUrls = expiredCount != null ? expiredCount : 0L;
-        long totalClicks = clickEventRepository.countByUserId(userId);
+        long totalClicks = queryMode == QueryMode.ROLLUP
+                ? clickRollupService.getTotalClicksForUser(userId)
+                : clickEventRepository.countByUserId(userId);
 
         List<UrlResponse> recentUrls = urlRepository.findTop5ByUserIdOrderByCreatedAtDesc(userId)
                 .stream()
@@ -195,11 +316,18 @@ public class AnalyticsService {
                 .map(url -> UrlResponse.fromUrl(url, baseUrl))
                 .collect(Collectors.toList());
 
-        List<AnalyticsResponse.ClicksByDate> clicksLast7Days = new java.util.ArrayList<>();
-        List<AnalyticsResponse.ClicksByDate> clicksLast30Days = new java.util.ArrayList<>();
+        List<AnalyticsResponse.ClicksByDate> clicksLast7Days = new ArrayList<>();
+        List<AnalyticsResponse.ClicksByDate> clicksLast30Days = new ArrayList<>();
 
         try {
             LocalDateTime now = LocalDateTime.now();
+            if (queryMode == QueryMode.ROLLUP) {
+                clicksLast7Days = toClicksByDate(clickRollupService.getClicksByDate("userId", userId, now.minusDays(7), now));
+                clicksLast30Days = toClicksByDate(clickRollupService.getClicksByDate("userId", userId, now.minusDays(30), now));
+                return buildDashboard(totalUrls, totalClicks, activeUrls, expiredUrls, recentUrls, topPerformingUrls,
+                        clicksLast7Days, clicksLast30Days);
+            }
+
             var last7Days = clickEventRepository.getClicksByDateRangeForUser(userId, now.minusDays(7), now);
             if (last7Days != null) {
                 clicksLast7Days = last7Days.stream()
@@ -223,6 +351,35 @@ public class AnalyticsService {
             log.warn("Error fetching dashboard click data: {}", e.getMessage());
         }
 
+        return buildDashboard(totalUrls, totalClicks, activeUrls, expiredUrls, recentUrls, topPerformingUrls,
+                clicksLast7Days, clicksLast30Days);
+    }
+
+    private DashboardResponse getMaterializedDashboard(String userId) {
+        UserDashboard dashboard = userDashboardService.getDashboard(userId);
+        LocalDateTime now = LocalDateTime.now();
+        String weekStart = ClickRollup.dayBucket(ClickRollup.toUtc(now.minusDays(7)));
+        String monthStart = ClickRollup.dayBucket(ClickRollup.toUtc(now.minusDays(UserDashboardService.HISTORY_DAYS)));
+        SortedMap<String, Long> clicksByDay = new TreeMap<>(dashboard.getClicksByDay());
+
+        return buildDashboard(dashboard.getTotalUrls(), dashboard.getTotalClicks(), dashboard.getActiveUrls(),
+                dashboard.getExpiredUrls(),
+                toUrlResponses(dashboard.getRecentUrls()),
+                toUrlResponses(dashboard.getTopPerformingUrls()),
+                toClicksByDate(clicksByDay.tailMap(weekStart)),
+                toClicksByDate(clicksByDay.tailMap(monthStart)));
+    }
+
+    private List<UrlResponse> toUrlResponses(List<UserDashboard.UrlSnapshot> snapshots) {
+        return snapshots.stream()
+                .map(snapshot -> snapshot.toResponse(baseUrl))
+                .collect(Collectors.toList());
+    }
+
+    private DashboardResponse buildDashboard(long totalUrls, long totalClicks, long activeUrls, long expiredUrls,
+                                             List<UrlResponse> recentUrls, List<UrlResponse> topPerformingUrls,
+                                             List<AnalyticsResponse.ClicksByDate> clicksLast7Days,
+                                             List<AnalyticsResponse.ClicksByDate> clicksLast30Days) {
         return DashboardResponse.builder()
                 .totalUrls(totalUrls)
                 .totalClicks(totalClicks)
@@ -235,6 +392,99 @@ public class AnalyticsService {
                 .build();
     }
 
+    private AnalyticsResponse getUrlAnalyticsFromRollups(Url url, LocalDateTime startDate, LocalDateTime endDate) {
+        ClickRollup total = clickRollupService.getTotal(url.getId());
+        long totalClicks = total != null ? total.getTotalClicks() : 0;
+
+        List<AnalyticsResponse.ClicksByDate> clicksByDate = new ArrayList<>();
+        try {
+            clicksByDate = toClicksByDate(clickRollupService.getClicksByDate("urlId", url.getId(), startDate, endDate));
+        } catch (Exception e) {
+            log.warn("Error fetching rollup date histogram: {}", e.getMessage());
+        }
+        HyperLogLog rangeVisitors = visitorSketchService.getSketchForRange(url.getId(), startDate, endDate);
+
+        HeavyHitterService.Summaries heavyHitters = heavyHitterService.getSummaries(url.getId());
+        HyperLogLog lifetimeVisitors = visitorSketchService.getLifetimeSketch(url.getId());
+
+        Map<String, Long> clicksByHour = new HashMap<>();
+        if (total != null && total.getHours() != null) {
+            total.getHours().forEach((hour, clicks) -> clicksByHour.put(MongoKeys.decode(hour), clicks));
+        }
+
+        return AnalyticsResponse.builder()
+                .urlId(url.getId())
+                .shortCode(url.getShortCode())
+                .totalClicks(totalClicks)
+                .uniqueVisitors(lifetimeVisitors.cardinality())
+                .uniqueVisitorsInRange(rangeVisitors.cardinality())
+                .uniqueVisitorsError(lifetimeVisitors.standardError())
+                .clicksByDate(clicksByDate)
+                .topCountries(heavyHitters.getCountries().top(10).stream()
+                        .map(counter -> AnalyticsResponse.CountryStats.builder()
+                                .country(counter.getItem())
+                                .clicks(counter.getCount())
+                                .percentage(percentage(counter.getCount(), totalClicks))
+                                .maxError(counter.getError())
+                                .build())
+                        .collect(Collectors.toList()))
+                .topBrowsers(heavyHitters.getBrowsers().top(10).stream()
+                        .map(counter -> AnalyticsResponse.BrowserStats.builder()
+                                .browser(counter.getItem())
+                                .clicks(counter.getCount())
+                                .percentage(percentage(counter.getCount(), totalClicks))
+                                .maxError(counter.getError())
+                                .build())
+                        .collect(Collectors.toList()))
+                .deviceBreakdown(topEntries(total != null ? total.getDevices() : null, Integer.MAX_VALUE).stream()
+                        .map(entry -> AnalyticsResponse.DeviceStats.builder()
+                                .deviceType(entry.getKey())
+                                .clicks(entry.getValue())
+                                .percentage(percentage(entry.getValue(), totalClicks))
+                                .build())
+                        .collect(Collectors.toList()))
+                .topReferrers(heavyHitters.getReferrers().top(10).stream()
+                        .map(counter -> AnalyticsResponse.ReferrerStats.builder()
+                                .referer(counter.getItem())
+                                .clicks(counter.getCount())
+                                .percentage(percentage(counter.getCount(), totalClicks))
+                                .maxError(counter.getError())
+                                .build())
+                        .collect(Collectors.toList()))
+                .topListsErrorBound(Math.max(heavyHitters.getCountries().errorBound(),
+                        Math.max(heavyHitters.getBrowsers().errorBound(), heavyHitters.getReferrers().errorBound())))
+                .clicksByHour(clicksByHour)
+                .build();
+    }
+
+    private static long orZero(Long count) {
+        return count != null ? count : 0L;
+    }
+
+    private static List<Map.Entry<String, Long>> topEntries(Map<String, Long> counts, int limit) {
+        if (counts == null) {
+            return List.of();
+        }
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(limit)
+                .map(entry -> Map.entry(MongoKeys.decode(entry.getKey()), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    private static List<AnalyticsResponse.ClicksByDate> toClicksByDate(SortedMap<String, Long> clicksByDate) {
+        return clicksByDate.entrySet().stream()
+                .map(entry -> AnalyticsResponse.ClicksByDate.builder()
+                        .date(entry.getKey())
+                        .clicks(entry.getValue())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private static double percentage(long clicks, long totalClicks) {
+        return totalClicks > 0 ? (clicks * 100.0 / totalClicks) : 0;
+    }
+
     private String getClientIP(HttpServletRequest request) {
         String xForwardedFor = request.getHeader("X-Forwarded-For");
         if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
@@ -248,4 +498,36 @@ public class AnalyticsService {
 
         return request.getRemoteAddr();
     }
+
+    private static class ClickAggregations {
+        private long totalClicks;
+        private long uniqueVisitors;
+        private long uniqueVisitorsInRange;
+        private List<? extends ClickEventRepository.DateClickCount> clicksByDate;
+        private List<? extends ClickEventRepository.FieldCount> countries;
+        private List<? extends ClickEventRepository.FieldCount> browsers;
+        private List<? extends ClickEventRepository.FieldCount> devices;
+        private List<? extends ClickEventRepository.FieldCount> referrers;
+        private List<? extends ClickEventRepository.FieldCount> hours;
+    }
+
+    private static class FacetCount implements ClickEventRepository.FieldCount, ClickEventRepository.DateClickCount {
+        private final Object id;
+        private final long count;
+
+        private FacetCount(Object id, long count) {
+            this.id = id;
+            this.count = count;
+        }
+
+        @Override
+        public String get_id() {
+            return id != null ? id.toString() : null;
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+    }
 }
@@ -0,0 +1,18 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickEvent;
+
+import java.util.List;
+
+public interface ClickBatchListener {
+
+    void onBatch(List<ClickEvent> events);
+
+    /**
+     * True for aggregates that {@link AnalyticsRebuildService} recomputes from click_events; their
+     * live batches pass through the {@link AnalyticsRebuildFence} first.
+     */
+    default boolean isRebuiltFromHistory() {
+        return false;
+    }
+}
@@ -0,0 +1,183 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.Url;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Service
+public class ClickCounterService {
+
+    private final MongoTemplate mongoTemplate;
+    private final CacheManager cacheManager;
+    private final Counter flushedClicks;
+
+    private final ConcurrentHashMap<String, LongAdder> pending = new ConcurrentHashMap<>();
+    private final Map<String, Integer> idleFlushes = new HashMap<>();
+    private List<Map.Entry<String, LongAdder>> retired = new ArrayList<>();
+    private final Object flushLock = new Object();
+
+    private volatile long lastFlushMillis = System.currentTimeMillis();
+
+    public ClickCounterService(MongoTemplate mongoTemplate, CacheManager cacheManager, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.cacheManager = cacheManager;
+        this.flushedClicks = Counter.builder("urlshortener.clicks.flushed")
+                .description("Clicks persisted to the urls collection")
+                .register(meterRegistry);
+        Gauge.builder("urlshortener.clicks.pending", this, ClickCounterService::getPendingClicks)
+                .description("Clicks counted in memory but not yet persisted")
+                .register(meterRegistry);
+        Gauge.builder("urlshortener.clicks.flush.lag", this, ClickCounterService::getFlushLagMillis)
+                .description("Milliseconds since pending clicks were last persisted")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    public void increment(String shortCode) {
+        LongAdder adder = pending.get(shortCode);
+        if (adder == null) {
+            adder = pending.computeIfAbsent(shortCode, k -> new LongAdder());
+        }
+        adder.increment();
+    }
+
+    public long getPendingClicks() {
+        long total = 0;
+        for (LongAdder adder : pending.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    public long getFlushLagMillis() {
+        return getPendingClicks() > 0 ? System.currentTimeMillis() - lastFlushMillis : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${app.click-counter.flush-interval-ms:5000}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, Long> deltas = collectDeltas();
+            if (deltas.isEmpty()) {
+                lastFlushMillis = System.currentTimeMillis();
+                return;
+            }
+
+            // Bulk write errors report the index of each failed update, so the order is fixed here
+            List<Map.Entry<String, Long>> updates = new ArrayList<>(deltas.entrySet());
+            try {
+                BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Url.class);
+                updates.forEach(update -> ops.updateOne(
+                        Query.query(Criteria.where("shortCode").is(update.getKey())),
+                        new Update().inc("clickCount", update.getValue())));
+                ops.execute();
+                recordFlushed(updates);
+            } catch (BulkOperationException e) {
+                // Unordered, so every update without an error was applied and must not be retried
+                Set<Integer> failed = new HashSet<>();
+                for (BulkWriteError error : e.getErrors()) {
+                    failed.add(error.getIndex());
+                }
+                log.warn("Failed to flush {} of {} click counts, will retry: {}",
+                        failed.size(), updates.size(), e.getMessage());
+                List<Map.Entry<String, Long>> applied = new ArrayList<>();
+                for (int i = 0; i < updates.size(); i++) {
+                    if (failed.contains(i)) {
+                        requeue(updates.get(i));
+                    } else {
+                        applied.add(updates.get(i));
+                    }
+                }
+                recordFlushed(applied);
+            } catch (Exception e) {
+                log.warn("Failed to flush click counts, will retry: {}", e.getMessage());
+                updates.forEach(this::requeue);
+            }
+        }
+    }
+
+    private void recordFlushed(List<Map.Entry<String, Long>> applied) {
+        if (applied.isEmpty()) {
+            return;
+        }
+        List<String> shortCodes = new ArrayList<>(applied.size());
+        long flushed = 0;
+        for (Map.Entry<String, Long> update : applied) {
+            shortCodes.add(update.getKey());
+            flushed += update.getValue();
+        }
+        evictCachedUrls(shortCodes);
+        flushedClicks.increment(flushed);
+        lastFlushMillis = System.currentTimeMillis();
+        log.debug("Flushed {} clicks for {} URLs", flushed, applied.size());
+    }
+
+    private void requeue(Map.Entry<String, Long> update) {
+        pending.computeIfAbsent(update.getKey(), k -> new LongAdder()).add(update.getValue());
+    }
+
+    @PreDestroy
+    public void drain() {
+        log.info("Draining {} pending clicks", getPendingClicks());
+        flush();
+    }
+
+    // Cached Url entities carry clickCount, so they are refreshed once per flush rather than per click
+    private void evictCachedUrls(Iterable<String> shortCodes) {
+        Cache cache = cacheManager.getCache("urls");
+        if (cache != null) {
+            shortCodes.forEach(cache::evict);
+        }
+    }
+
+    private Map<String, Long> collectDeltas() {
+        Map<String, Long> deltas = new HashMap<>();
+
+        // Adders removed on the previous pass may still have caught an increment from a
+        // thread that looked them up just before removal, so they are drained once more.
+        for (Map.Entry<String, LongAdder> entry : retired) {
+            long delta = entry.getValue().sumThenReset();
+            if (delta > 0) {
+                deltas.merge(entry.getKey(), delta, Long::sum);
+            }
+        }
+        retired = new ArrayList<>();
+
+        for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+            String shortCode = entry.getKey();
+            long delta = entry.getValue().sumThenReset();
+            if (delta > 0) {
+                deltas.merge(shortCode, delta, Long::sum);
+                idleFlushes.remove(shortCode);
+            } else if (idleFlushes.merge(shortCode, 1, Integer::sum) > 1
+                    && pending.remove(shortCode, entry.getValue())) {
+                idleFlushes.remove(shortCode);
+                retired.add(entry);
+            }
+        }
+        return deltas;
+    }
+}
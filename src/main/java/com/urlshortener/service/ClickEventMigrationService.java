@@ -0,0 +1,112 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.repository.ClickEventCodec;
+import com.urlshortener.repository.ClickEventStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites V1 click events into the compact V2 format in _id order, a bounded number of
+ * batches per run. Each replacement is conditional on the document still being V1, so
+ * several instances can migrate side by side. Time-series collections do not support
+ * replacements and only ever receive already converted events, so they are skipped.
+ */
+@Slf4j
+@Service
+public class ClickEventMigrationService {
+
+    private final MongoTemplate mongoTemplate;
+    private final ClickEventCodec clickEventCodec;
+    private final ClickEventStorage clickEventStorage;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int batchesPerRun;
+
+    private Object lastMigratedId;
+    private volatile boolean finished;
+
+    public ClickEventMigrationService(MongoTemplate mongoTemplate,
+                                      ClickEventCodec clickEventCodec,
+                                      ClickEventStorage clickEventStorage,
+                                      @Value("${app.click-events.migration.enabled:true}") boolean enabled,
+                                      @Value("${app.click-events.migration.batch-size:500}") int batchSize,
+                                      @Value("${app.click-events.migration.batches-per-run:20}") int batchesPerRun) {
+        this.mongoTemplate = mongoTemplate;
+        this.clickEventCodec = clickEventCodec;
+        this.clickEventStorage = clickEventStorage;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.batchesPerRun = batchesPerRun;
+    }
+
+    @Scheduled(fixedDelayString = "${app.click-events.migration.interval-ms:60000}",
+            initialDelayString = "${app.click-events.migration.interval-ms:60000}")
+    public synchronized void migrate() {
+        if (!enabled || finished || clickEventStorage.isTimeSeries()
+                || clickEventCodec.getWriteFormat() != ClickEventCodec.Format.V2) {
+            return;
+        }
+        long migrated = 0;
+        try {
+            for (int batch = 0; batch < batchesPerRun; batch++) {
+                int rewritten = migrateBatch();
+                if (rewritten == 0) {
+                    finished = true;
+                    log.info("Click event migration to the compact format is complete");
+                    break;
+                }
+                migrated += rewritten;
+            }
+        } catch (Exception e) {
+            log.warn("Click event migration batch failed, will retry: {}", e.getMessage());
+        }
+        if (migrated > 0) {
+            log.info("Migrated {} click events to the compact format", migrated);
+        }
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    private int migrateBatch() {
+        String collection = mongoTemplate.getCollectionName(ClickEvent.class);
+        Criteria legacy = Criteria.where(ClickEventCodec.VERSION).exists(false);
+        if (lastMigratedId != null) {
+            legacy = legacy.and("_id").gt(lastMigratedId);
+        }
+        Query query = Query.query(legacy).with(Sort.by("_id")).limit(batchSize);
+        List<Document> documents = mongoTemplate.find(query, Document.class, collection);
+        if (documents.isEmpty()) {
+            return 0;
+        }
+
+        List<ClickEvent> events = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            events.add(clickEventCodec.fromDocument(document));
+        }
+        clickEventCodec.prepare(events);
+
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+        for (int i = 0; i < documents.size(); i++) {
+            Object id = documents.get(i).get("_id");
+            ops.replaceOne(Query.query(Criteria.where("_id").is(id).and(ClickEventCodec.VERSION).exists(false)),
+                    clickEventCodec.toCompactDocument(events.get(i)));
+        }
+        ops.execute();
+        lastMigratedId = documents.get(documents.size() - 1).get("_id");
+        return documents.size();
+    }
+}
@@ -0,0 +1,85 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickCapture;
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.repository.ClickEventCodec;
+import com.urlshortener.util.IpAddresses;
+import com.urlshortener.util.UserAgentParser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ClickEventWriter {
+
+    private final MongoTemplate mongoTemplate;
+    private final ClickEventCodec clickEventCodec;
+    private final GeoLocationService geoLocationService;
+    private final UserAgentParser userAgentParser;
+    private final List<ClickBatchListener> batchListeners;
+    private final AnalyticsRebuildFence rebuildFence;
+
+    public void write(List<ClickCapture> batch) {
+        List<String> ipAddresses = new ArrayList<>(batch.size());
+        for (ClickCapture capture : batch) {
+            ipAddresses.add(IpAddresses.format(capture.getClientIp()));
+        }
+        Map<String, GeoLocationService.GeoLocation> locations = geoLocationService.getLocations(ipAddresses);
+
+        List<ClickEvent> events = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            String ipAddress = ipAddresses.get(i);
+            GeoLocationService.GeoLocation geoLocation = ipAddress != null ? locations.get(ipAddress) : null;
+            events.add(toClickEvent(batch.get(i), ipAddress,
+                    geoLocation != null ? geoLocation : GeoLocationService.GeoLocation.unknown()));
+        }
+        clickEventCodec.prepare(events);
+        mongoTemplate.insert(events, ClickEvent.class);
+
+        List<ClickEvent> admitted = rebuildFence.admitted(events);
+        for (ClickBatchListener listener : batchListeners) {
+            List<ClickEvent> delivered = listener.isRebuiltFromHistory() ? admitted : events;
+            if (delivered.isEmpty()) {
+                continue;
+            }
+            try {
+                listener.onBatch(delivered);
+            } catch (Exception e) {
+                log.error("{} failed to process a batch of {} clicks: {}",
+                        listener.getClass().getSimpleName(), events.size(), e.getMessage());
+            }
+        }
+    }
+
+    private ClickEvent toClickEvent(ClickCapture capture, String ipAddress, GeoLocationService.GeoLocation geoLocation) {
+        UserAgentParser.ParsedUserAgent parsedUA = userAgentParser.parse(capture.getUserAgent());
+
+        return ClickEvent.builder()
+                .urlId(capture.getUrlId())
+                .userId(capture.getUserId())
+                .ipAddress(ipAddress)
+                .userAgent(capture.getUserAgent())
+                .referer(capture.getReferer())
+                .country(geoLocation.getCountry())
+                .city(geoLocation.getCity())
+                .region(geoLocation.getRegion())
+                .timezone(geoLocation.getTimezone())
+                .isp(geoLocation.getIsp())
+                .browser(parsedUA.getBrowser())
+                .browserVersion(parsedUA.getBrowserVersion())
+                .operatingSystem(parsedUA.getOperatingSystem())
+                .osVersion(parsedUA.getOsVersion())
+                .deviceType(parsedUA.getDeviceType())
+                .isMobile(parsedUA.isMobile())
+                .isBot(parsedUA.isBot())
+                .timestamp(capture.getTimestamp())
+                .build();
+    }
+}
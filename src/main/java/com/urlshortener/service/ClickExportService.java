@@ -0,0 +1,219 @@
+package com.urlshortener.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.urlshortener.exception.BadRequestException;
+import com.urlshortener.model.ClickEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a link's clicks straight from a Mongo cursor to the response in (timestamp, _id)
+ * order, so memory stays flat however large the export. A client that loses the connection
+ * resumes by passing the timestamp and id of the last record it received.
+ */
+@Slf4j
+@Service
+public class ClickExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    private static final String[] COLUMNS = {
+            "id", "timestamp", "referer", "country", "city", "region", "timezone", "deviceType", "browser",
+            "browserVersion", "operatingSystem", "osVersion", "userAgent", "mobile", "bot"
+    };
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final long timeoutMs;
+
+    public ClickExportService(MongoTemplate mongoTemplate,
+                              ObjectMapper objectMapper,
+                              @Value("${app.click-export.batch-size:1000}") int batchSize,
+                              @Value("${app.click-export.timeout-ms:3600000}") long timeoutMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * How long one export may stream; applied to export requests only.
+     */
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    /**
+     * Validates the request up front, so bad parameters still get a proper error response
+     * rather than failing once the body has started streaming.
+     */
+    public StreamingResponseBody export(String urlId, LocalDateTime start, LocalDateTime end,
+                                        LocalDateTime afterTimestamp, String afterId, Format format, boolean gzip) {
+        Query query = buildQuery(urlId, start, end, afterTimestamp, afterId);
+        return output -> write(query, format, gzip, output);
+    }
+
+    private void write(Query query, Format format, boolean gzip, OutputStream output) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(output, 64 * 1024) : output;
+        try (Stream<ClickEvent> events = mongoTemplate.stream(query, ClickEvent.class)) {
+            if (format == Format.CSV) {
+                writeCsv(events, target);
+            } else {
+                writeNdjson(events, target);
+            }
+        }
+        if (target instanceof GZIPOutputStream compressed) {
+            compressed.finish();
+        }
+        output.flush();
+    }
+
+    private Query buildQuery(String urlId, LocalDateTime start, LocalDateTime end,
+                             LocalDateTime afterTimestamp, String afterId) {
+        Criteria range = Criteria.where("timestamp");
+        if (start != null) {
+            range = range.gte(start);
+        }
+        range = range.lte(end != null ? end : LocalDateTime.now());
+        Criteria criteria = Criteria.where("urlId").is(urlId).andOperator(range);
+
+        // Both halves of the position are needed: clicks sharing the last timestamp would
+        // otherwise be skipped or sent twice
+        if ((afterTimestamp == null) != (afterId == null)) {
+            throw new BadRequestException("Resuming an export needs both afterTimestamp and afterId");
+        }
+        if (afterTimestamp != null) {
+            if (!ObjectId.isValid(afterId)) {
+                throw new BadRequestException("Invalid resume id: " + afterId);
+            }
+            Criteria resume = new Criteria().orOperator(Criteria.where("timestamp").gt(afterTimestamp),
+                    Criteria.where("timestamp").is(afterTimestamp).and("_id").gt(new ObjectId(afterId)));
+            criteria = Criteria.where("urlId").is(urlId).andOperator(range, resume);
+        }
+
+        Query query = Query.query(criteria).with(Sort.by("timestamp", "_id"));
+        query.cursorBatchSize(batchSize);
+        return query;
+    }
+
+    private void writeNdjson(Stream<ClickEvent> events, OutputStream output) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            boolean any = false;
+            for (ClickEvent event : (Iterable<ClickEvent>) events::iterator) {
+                any = true;
+                Object[] values = values(event);
+                generator.writeStartObject();
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    generator.writeObjectField(COLUMNS[i], values[i]);
+                }
+                generator.writeEndObject();
+            }
+            if (any) {
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    private void writeCsv(Stream<ClickEvent> events, OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+        for (ClickEvent event : (Iterable<ClickEvent>) events::iterator) {
+            Object[] values = values(event);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeCsvField(writer, values[i]);
+            }
+            writer.write("\r\n");
+        }
+        writer.flush();
+    }
+
+    private static Object[] values(ClickEvent event) {
+        return new Object[] {
+                event.getId(),
+                event.getTimestamp() != null ? event.getTimestamp().toString() : null,
+                event.getReferer(),
+                event.getCountry(),
+                event.getCity(),
+                event.getRegion(),
+                event.getTimezone(),
+                event.getDeviceType(),
+                event.getBrowser(),
+                event.getBrowserVersion(),
+                event.getOperatingSystem(),
+                event.getOsVersion(),
+                event.getUserAgent(),
+                event.isMobile(),
+                event.isBot()
+        };
+    }
+
+    private static void writeCsvField(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        boolean quote = text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,187 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickCapture;
+import com.urlshortener.util.BoundedRingBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+@Slf4j
+@Service
+public class ClickIngestionService {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    public enum BackpressurePolicy {
+        DROP_OLDEST,
+        SAMPLE,
+        BLOCK
+    }
+
+    private final ClickEventWriter clickEventWriter;
+    private final ClickJournalService clickJournalService;
+
+    private final BoundedRingBuffer<ClickCapture> buffer;
+    private final BackpressurePolicy backpressurePolicy;
+    private final int batchSize;
+    private final long maxBatchAgeNanos;
+    private final int sampleRate;
+    private final int sampleThreshold;
+    private final long blockTimeoutNanos;
+
+    private final Counter acceptedClicks;
+    private final Counter droppedClicks;
+    private final Counter flushedClicks;
+    private final Counter failedClicks;
+
+    private volatile boolean running;
+    private Thread consumer;
+
+    public ClickIngestionService(
+            ClickEventWriter clickEventWriter,
+            ClickJournalService clickJournalService,
+            MeterRegistry meterRegistry,
+            @Value("${app.click-ingestion.buffer-capacity:65536}") int bufferCapacity,
+            @Value("${app.click-ingestion.batch-size:500}") int batchSize,
+            @Value("${app.click-ingestion.max-batch-age-ms:1000}") long maxBatchAgeMs,
+            @Value("${app.click-ingestion.backpressure-policy:DROP_OLDEST}") BackpressurePolicy backpressurePolicy,
+            @Value("${app.click-ingestion.sample-rate:10}") int sampleRate,
+            @Value("${app.click-ingestion.block-timeout-ms:5}") long blockTimeoutMs) {
+        this.clickEventWriter = clickEventWriter;
+        this.clickJournalService = clickJournalService;
+        this.buffer = new BoundedRingBuffer<>(bufferCapacity);
+        this.backpressurePolicy = backpressurePolicy;
+        this.batchSize = batchSize;
+        this.maxBatchAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxBatchAgeMs);
+        this.sampleRate = Math.max(1, sampleRate);
+        this.sampleThreshold = buffer.capacity() / 4 * 3;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+
+        this.acceptedClicks = Counter.builder("urlshortener.clicks.ingest.accepted")
+                .description("Clicks accepted into the ingestion buffer")
+                .register(meterRegistry);
+        this.droppedClicks = Counter.builder("urlshortener.clicks.ingest.dropped")
+                .description("Clicks discarded by the backpressure policy")
+                .register(meterRegistry);
+        this.flushedClicks = Counter.builder("urlshortener.clicks.ingest.flushed")
+                .description("Clicks written to click_events")
+                .register(meterRegistry);
+        this.failedClicks = Counter.builder("urlshortener.clicks.ingest.failed")
+                .description("Clicks lost because a batch write failed")
+                .register(meterRegistry);
+        Gauge.builder("urlshortener.clicks.ingest.buffered", buffer, BoundedRingBuffer::size)
+                .description("Clicks waiting in the ingestion buffer")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        consumer = new Thread(this::consume, "ClickIngestion");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(consumer);
+        consumer.join(TimeUnit.SECONDS.toMillis(30));
+        log.info("Click ingestion stopped with {} clicks still buffered", buffer.size());
+    }
+
+    public boolean submit(ClickCapture click) {
+        if (clickJournalService.append(click)) {
+            acceptedClicks.increment();
+            return true;
+        }
+
+        boolean accepted = switch (backpressurePolicy) {
+            case DROP_OLDEST -> offerDroppingOldest(click);
+            case SAMPLE -> offerSampled(click);
+            case BLOCK -> offerBlocking(click);
+        };
+
+        if (accepted) {
+            acceptedClicks.increment();
+        } else {
+            droppedClicks.increment();
+        }
+        return accepted;
+    }
+
+    private boolean offerDroppingOldest(ClickCapture click) {
+        while (!buffer.offer(click)) {
+            if (buffer.poll() != null) {
+                droppedClicks.increment();
+            }
+        }
+        return true;
+    }
+
+    private boolean offerSampled(ClickCapture click) {
+        if (buffer.size() >= sampleThreshold && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return false;
+        }
+        return buffer.offer(click);
+    }
+
+    private boolean offerBlocking(ClickCapture click) {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        while (!buffer.offer(click)) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        }
+        return true;
+    }
+
+    private void consume() {
+        List<ClickCapture> batch = new ArrayList<>(batchSize);
+        long batchStartedAt = 0;
+
+        while (running || !buffer.isEmpty()) {
+            int drained = buffer.drainTo(batch, batchSize - batch.size());
+            if (drained > 0 && batchStartedAt == 0) {
+                batchStartedAt = System.nanoTime();
+            }
+
+            boolean full = batch.size() >= batchSize;
+            boolean aged = !batch.isEmpty() && System.nanoTime() - batchStartedAt >= maxBatchAgeNanos;
+            if (full || aged || (!running && !batch.isEmpty())) {
+                writeBatch(batch);
+                batch = new ArrayList<>(batchSize);
+                batchStartedAt = 0;
+            } else if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(List<ClickCapture> batch) {
+        try {
+            clickEventWriter.write(batch);
+            flushedClicks.increment(batch.size());
+            log.debug("Flushed batch of {} clicks", batch.size());
+        } catch (Exception e) {
+            failedClicks.increment(batch.size());
+            log.error("Failed to write batch of {} clicks: {}", batch.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickCapture;
+import com.urlshortener.util.ClickJournal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+@Slf4j
+@Service
+public class ClickJournalService {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long MAX_RETRY_BACKOFF_MS = 30_000;
+    // Length-prefixed journal records that could not be written after repeated attempts
+    static final String DEAD_LETTER_FILE = "dead-letter.bin";
+
+    private final ClickEventWriter clickEventWriter;
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+    private final String path;
+    private final int segmentSizeBytes;
+    private final int maxSegments;
+    private final int replayBatchSize;
+    private final long retryBackoffMs;
+    private final int maxReplayAttempts;
+
+    private final Counter appendedClicks;
+    private final Counter replayedClicks;
+    private final Counter replayFailures;
+    private final Counter corruptRecords;
+    private final Counter deadLetteredRecords;
+
+    private volatile ClickJournal journal;
+    private volatile boolean journalFull;
+    private volatile boolean running;
+    private Thread replayer;
+
+    public ClickJournalService(
+            ClickEventWriter clickEventWriter,
+            MeterRegistry meterRegistry,
+            @Value("${app.click-journal.enabled:true}") boolean enabled,
+            @Value("${app.click-journal.path:./data/click-journal}") String path,
+            @Value("${app.click-journal.segment-size-bytes:67108864}") int segmentSizeBytes,
+            @Value("${app.click-journal.max-segments:64}") int maxSegments,
+            @Value("${app.click-journal.replay-batch-size:500}") int replayBatchSize,
+            @Value("${app.click-journal.retry-backoff-ms:1000}") long retryBackoffMs,
+            @Value("${app.click-journal.max-replay-attempts:5}") int maxReplayAttempts) {
+        this.clickEventWriter = clickEventWriter;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.path = path;
+        this.segmentSizeBytes = segmentSizeBytes;
+        this.maxSegments = maxSegments;
+        this.replayBatchSize = replayBatchSize;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxReplayAttempts = maxReplayAttempts;
+
+        this.appendedClicks = Counter.builder("urlshortener.clicks.journal.appended")
+                .description("Clicks appended to the local journal")
+                .register(meterRegistry);
+        this.replayedClicks = Counter.builder("urlshortener.clicks.journal.replayed")
+                .description("Journaled clicks shipped to click_events")
+                .register(meterRegistry);
+        this.replayFailures = Counter.builder("urlshortener.clicks.journal.replay.failures")
+                .description("Journal replay batches that failed and were retried")
+                .register(meterRegistry);
+        this.corruptRecords = Counter.builder("urlshortener.clicks.journal.corrupt")
+                .description("Journal records skipped because of a checksum or decode failure")
+                .register(meterRegistry);
+        this.deadLetteredRecords = Counter.builder("urlshortener.clicks.journal.dead.lettered")
+                .description("Journaled clicks that kept failing and were moved to the dead-letter file")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        Path directory = Paths.get(path);
+        try {
+            journal = ClickJournal.open(directory, segmentSizeBytes, maxSegments);
+            log.info("Click journal opened at {} with {} bytes pending replay",
+                    directory.toAbsolutePath(), journal.pendingBytes());
+        } catch (Exception e) {
+            log.warn("Click journal unavailable at {}, clicks will go straight to the ingestion buffer: {}",
+                    directory, e.getMessage());
+            return;
+        }
+
+        Gauge.builder("urlshortener.clicks.journal.pending.bytes", this, service -> service.pendingBytes())
+                .description("Journal bytes not yet replayed to click_events")
+                .register(meterRegistry);
+
+        running = true;
+        replayer = new Thread(this::replay, "ClickJournalReplay");
+        replayer.setDaemon(true);
+        replayer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        ClickJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(replayer);
+        replayer.join(TimeUnit.SECONDS.toMillis(30));
+        journal = null;
+        current.close();
+        log.info("Click journal closed with {} bytes pending replay", current.pendingBytes());
+    }
+
+    public boolean append(ClickCapture capture) {
+        ClickJournal current = journal;
+        if (current == null) {
+            return false;
+        }
+        try {
+            if (current.append(encode(capture))) {
+                appendedClicks.increment();
+                journalFull = false;
+                return true;
+            }
+            if (!journalFull) {
+                journalFull = true;
+                log.warn("Click journal is full, falling back to the ingestion buffer");
+            }
+        } catch (Exception e) {
+            log.warn("Failed to append click to journal: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    @Scheduled(fixedDelayString = "${app.click-journal.force-interval-ms:1000}")
+    public void force() {
+        ClickJournal current = journal;
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        ClickJournal current = journal;
+        stats.put("enabled", current != null);
+        if (current != null) {
+            stats.put("segments", current.segmentCount());
+            stats.put("pendingBytes", current.pendingBytes());
+        }
+        return stats;
+    }
+
+    private long pendingBytes() {
+        ClickJournal current = journal;
+        return current != null ? current.pendingBytes() : 0;
+    }
+
+    private void replay() {
+        ClickJournal current = journal;
+        ClickJournal.Position position = current.getCheckpoint();
+        long backoffMs = retryBackoffMs;
+        int attempts = 0;
+
+        while (running) {
+            ClickJournal.Batch batch = current.read(position, replayBatchSize);
+            if (batch.getNext().equals(position)) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            try {
+                List<ClickCapture> captures = decodeAll(batch.getRecords());
+                attempts++;
+                int written = attempts > maxReplayAttempts ? writeIsolatingFailures(captures) : write(captures);
+                current.commit(batch.getNext());
+                position = batch.getNext();
+                replayedClicks.increment(written);
+                corruptRecords.increment(batch.getCorrupt() + batch.getRecords().size() - captures.size());
+                backoffMs = retryBackoffMs;
+                attempts = 0;
+            } catch (Exception e) {
+                replayFailures.increment();
+                log.warn("Failed to replay {} journaled clicks (attempt {}), retrying in {} ms: {}",
+                        batch.getRecords().size(), attempts, backoffMs, e.getMessage());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoffMs));
+                backoffMs = Math.min(backoffMs * 2, MAX_RETRY_BACKOFF_MS);
+                // An outage is retried for as long as it lasts; only other failures count towards isolation
+                if (isTransient(e)) {
+                    attempts = 0;
+                }
+            }
+        }
+    }
+
+    private int write(List<ClickCapture> captures) {
+        if (!captures.isEmpty()) {
+            clickEventWriter.write(captures);
+        }
+        return captures.size();
+    }
+
+    // Writes a repeatedly failing batch one click at a time so that a poison record is moved
+    // aside instead of blocking everything behind it; an outage still aborts the whole batch
+    private int writeIsolatingFailures(List<ClickCapture> captures) throws IOException {
+        int written = 0;
+        for (ClickCapture capture : captures) {
+            try {
+                clickEventWriter.write(List.of(capture));
+                written++;
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    throw e;
+                }
+                deadLetter(capture, e);
+            }
+        }
+        return written;
+    }
+
+    private void deadLetter(ClickCapture capture, Exception cause) throws IOException {
+        byte[] record = encode(capture);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(record.length + 4);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(record.length);
+        out.write(record);
+        Files.write(Paths.get(path).resolve(DEAD_LETTER_FILE), bytes.toByteArray(),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        deadLetteredRecords.increment();
+        log.error("Moved journaled click for URL {} to the dead-letter file: {}", capture.getUrlId(), cause.getMessage());
+    }
+
+    private static boolean isTransient(Throwable e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+
+    private List<ClickCapture> decodeAll(List<byte[]> records) {
+        List<ClickCapture> captures = new ArrayList<>(records.size());
+        for (byte[] record : records) {
+            try {
+                captures.add(decode(record));
+            } catch (IOException e) {
+                log.warn("Skipping undecodable journal record: {}", e.getMessage());
+            }
+        }
+        return captures;
+    }
+
+    static byte[] encode(ClickCapture capture) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FORMAT_VERSION);
+        out.writeLong(capture.getTimestampNanos());
+        writeString(out, capture.getUrlId());
+        writeString(out, capture.getUserId());
+        byte[] clientIp = capture.getClientIp();
+        out.writeByte(clientIp != null ? clientIp.length : 0);
+        if (clientIp != null) {
+            out.write(clientIp);
+        }
+        writeString(out, capture.getUserAgent());
+        writeString(out, capture.getReferer());
+        return bytes.toByteArray();
+    }
+
+    static ClickCapture decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        int version = in.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported journal record version " + version);
+        }
+        long timestampNanos = in.readLong();
+        String urlId = readString(in);
+        String userId = readString(in);
+        int ipLength = in.readUnsignedByte();
+        byte[] clientIp = null;
+        if (ipLength > 0) {
+            clientIp = new byte[ipLength];
+            in.readFully(clientIp);
+        }
+
+        return ClickCapture.builder()
+                .timestampNanos(timestampNanos)
+                .urlId(urlId)
+                .userId(userId)
+                .clientIp(clientIp)
+                .userAgent(readString(in))
+                .referer(readString(in))
+                .build();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
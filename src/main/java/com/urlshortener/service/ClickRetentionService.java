@@ -0,0 +1,351 @@
+package com.urlshortener.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.model.ClickRollup;
+import com.urlshortener.repository.ClickEventStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Retires raw click events older than the retention age, one UTC day at a time: the day's
+ * DAY rollups are recomputed from its events, the events are written to a gzipped NDJSON
+ * file under archive-path/yyyy/MM, and only then are they deleted in bounded batches. The
+ * day, archive file and phase are checkpointed in Mongo before any of that starts, so an
+ * interrupted run repeats the same steps on the same file rather than starting another.
+ * A run holds a lease in the same collection, so only one instance works on the
+ * checkpoint at a time; the others skip the run while the lease is held.
+ */
+@Slf4j
+@Service
+public class ClickRetentionService {
+
+    private static final String CHECKPOINT_COLLECTION = "click_retention";
+    private static final String CHECKPOINT_ID = "checkpoint";
+    private static final String LEASE_ID = "lease";
+    private static final int EVENTS_PER_RENEWAL = 10_000;
+    private static final String PHASE_ARCHIVING = "ARCHIVING";
+    private static final String PHASE_ARCHIVED = "ARCHIVED";
+    private static final String PHASE_DONE = "DONE";
+
+    private final MongoTemplate mongoTemplate;
+    private final ClickRollupService clickRollupService;
+    private final ClickEventStorage clickEventStorage;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int maxAgeDays;
+    private final Path archivePath;
+    private final int deleteBatchSize;
+    private final long batchPauseMs;
+    private final int maxDaysPerRun;
+    private final long leaseMs;
+
+    public ClickRetentionService(MongoTemplate mongoTemplate,
+                                 ClickRollupService clickRollupService,
+                                 ClickEventStorage clickEventStorage,
+                                 ObjectMapper objectMapper,
+                                 @Value("${app.click-events.retention.enabled:false}") boolean enabled,
+                                 @Value("${app.click-events.retention.max-age-days:365}") int maxAgeDays,
+                                 @Value("${app.click-events.retention.archive-path:./data/click-archive}") String archivePath,
+                                 @Value("${app.click-events.retention.delete-batch-size:1000}") int deleteBatchSize,
+                                 @Value("${app.click-events.retention.batch-pause-ms:200}") long batchPauseMs,
+                                 @Value("${app.click-events.retention.max-days-per-run:31}") int maxDaysPerRun,
+                                 @Value("${app.click-events.retention.lease-ms:600000}") long leaseMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.clickRollupService = clickRollupService;
+        this.clickEventStorage = clickEventStorage;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxAgeDays = maxAgeDays;
+        this.archivePath = Paths.get(archivePath);
+        this.deleteBatchSize = deleteBatchSize;
+        this.batchPauseMs = batchPauseMs;
+        this.maxDaysPerRun = maxDaysPerRun;
+        this.leaseMs = leaseMs;
+    }
+
+    public synchronized Map<String, Object> run() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (!enabled || maxAgeDays <= 0) {
+            result.put("enabled", false);
+            return result;
+        }
+        // Deleting by _id from a time-series collection needs MongoDB 7.0; without it every
+        // run would archive the same oldest day again
+        if (!clickEventStorage.supportsDeletesByQuery()) {
+            result.put("enabled", false);
+            result.put("reason", "time-series deletes need MongoDB 7.0");
+            return result;
+        }
+        String owner = new ObjectId().toHexString();
+        if (!acquireLease(owner)) {
+            result.put("enabled", true);
+            result.put("skipped", "another instance holds the retention lease");
+            log.info("Click retention skipped, another instance is running it");
+            return result;
+        }
+        try {
+            return retire(owner, result);
+        } finally {
+            releaseLease(owner);
+        }
+    }
+
+    private Map<String, Object> retire(String owner, Map<String, Object> result) {
+        LocalDate cutoff = LocalDate.now(ZoneOffset.UTC).minusDays(maxAgeDays);
+        int days = 0;
+        long archived = 0;
+        long deleted = 0;
+        while (days < maxDaysPerRun) {
+            renewLease(owner);
+            Document checkpoint = mongoTemplate.findById(CHECKPOINT_ID, Document.class, CHECKPOINT_COLLECTION);
+            if (checkpoint == null || PHASE_DONE.equals(checkpoint.getString("phase"))) {
+                LocalDate oldest = oldestDay();
+                if (oldest == null || !oldest.isBefore(cutoff)) {
+                    break;
+                }
+                checkpoint = begin(oldest);
+            }
+            if (PHASE_ARCHIVING.equals(checkpoint.getString("phase"))) {
+                checkpoint = archive(owner, checkpoint);
+                archived += checkpoint.get("archived", 0L);
+            }
+            deleted += delete(owner, checkpoint);
+            days++;
+        }
+        result.put("enabled", true);
+        result.put("cutoff", cutoff.toString());
+        result.put("days", days);
+        result.put("archived", archived);
+        result.put("deleted", deleted);
+        if (days > 0) {
+            log.info("Click retention retired {} days before {}: {} events archived, {} deleted",
+                    days, cutoff, archived, deleted);
+        }
+        return result;
+    }
+
+    private LocalDate oldestDay() {
+        Query query = new Query().with(Sort.by("timestamp")).limit(1);
+        query.fields().include("timestamp");
+        ClickEvent oldest = mongoTemplate.findOne(query, ClickEvent.class);
+        return oldest != null && oldest.getTimestamp() != null
+                ? ClickRollup.toUtc(oldest.getTimestamp()).toLocalDate()
+                : null;
+    }
+
+    // Fixes the snapshot id and the archive part before writing anything, so clicks that
+    // arrive for the day afterwards are neither lost to the delete nor archived twice
+    private Document begin(LocalDate day) {
+        Document archivedDay = mongoTemplate.findById(dayId(day), Document.class, CHECKPOINT_COLLECTION);
+        int part = archivedDay != null ? archivedDay.getInteger("parts", 0) : 0;
+        while (Files.exists(archiveFile(day, part))) {
+            part++;
+        }
+        Document checkpoint = new Document("_id", CHECKPOINT_ID)
+                .append("day", day.toString())
+                .append("phase", PHASE_ARCHIVING)
+                .append("snapshotId", new ObjectId().toHexString())
+                .append("part", part)
+                .append("archived", 0L)
+                .append("deleted", 0L)
+                .append("updatedAt", LocalDateTime.now());
+        mongoTemplate.save(checkpoint, CHECKPOINT_COLLECTION);
+        return checkpoint;
+    }
+
+    /**
+     * Writes the day's clicks up to the snapshot to this part's file, replacing whatever an
+     * interrupted attempt left there. The DAY rollups are replaced with a recount of every
+     * part, earlier ones read back from their files, since a part only holds the clicks
+     * that arrived after the previous one was cut.
+     */
+    private Document archive(String owner, Document checkpoint) {
+        LocalDate day = LocalDate.parse(checkpoint.getString("day"));
+        int part = checkpoint.getInteger("part", 0);
+        Path target = archiveFile(day, part);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        ClickRollupService.DayRebuild rollups = clickRollupService.rebuildDay(day);
+        long archived = 0;
+        try {
+            boolean recount = readEarlierParts(day, part, rollups);
+            Files.createDirectories(target.getParent());
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8));
+                 Stream<ClickEvent> events = mongoTemplate.stream(dayQuery(day, checkpoint.getString("snapshotId")),
+                         ClickEvent.class)) {
+                for (ClickEvent event : (Iterable<ClickEvent>) events::iterator) {
+                    rollups.add(event);
+                    writer.write(objectMapper.writeValueAsString(event));
+                    writer.newLine();
+                    if (++archived % EVENTS_PER_RENEWAL == 0) {
+                        renewLease(owner);
+                    }
+                }
+            }
+            if (recount) {
+                rollups.commit();
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to archive clicks for " + day, e);
+        }
+        // Counted in Mongo as well, so a lost file cannot make a later run reuse its part
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(dayId(day))),
+                new Update().max("parts", part + 1), CHECKPOINT_COLLECTION);
+
+        checkpoint.append("phase", PHASE_ARCHIVED)
+                .append("file", target.toString())
+                .append("archived", archived)
+                .append("updatedAt", LocalDateTime.now());
+        mongoTemplate.save(checkpoint, CHECKPOINT_COLLECTION);
+        log.info("Archived {} clicks for {} to {}", archived, day, target);
+        return checkpoint;
+    }
+
+    // False when an earlier part is missing, in which case the live rollups are kept as they are
+    private boolean readEarlierParts(LocalDate day, int part, ClickRollupService.DayRebuild rollups) throws IOException {
+        for (int earlier = 0; earlier < part; earlier++) {
+            Path file = archiveFile(day, earlier);
+            if (!Files.exists(file)) {
+                log.warn("Archive {} is missing, DAY rollups for {} are not recounted", file, day);
+                return false;
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        rollups.add(objectMapper.readValue(line, ClickEvent.class));
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private long delete(String owner, Document checkpoint) {
+        LocalDate day = LocalDate.parse(checkpoint.getString("day"));
+        Query batchQuery = dayQuery(day, checkpoint.getString("snapshotId")).limit(deleteBatchSize);
+        batchQuery.fields().include("_id");
+        String collection = mongoTemplate.getCollectionName(ClickEvent.class);
+        long deleted = 0;
+        while (true) {
+            // Stops between batches when the maintenance executor shuts down; the next run resumes here
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IllegalStateException("Click retention was interrupted while deleting " + day);
+            }
+            renewLease(owner);
+            List<Object> ids = new ArrayList<>(deleteBatchSize);
+            for (Document document : mongoTemplate.find(batchQuery, Document.class, collection)) {
+                ids.add(document.get("_id"));
+            }
+            if (ids.isEmpty()) {
+                break;
+            }
+            deleted += mongoTemplate.remove(Query.query(Criteria.where("_id").in(ids)), collection).getDeletedCount();
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(CHECKPOINT_ID)),
+                    new Update().inc("deleted", (long) ids.size()).set("updatedAt", LocalDateTime.now()),
+                    CHECKPOINT_COLLECTION);
+            pause();
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(CHECKPOINT_ID)),
+                new Update().set("phase", PHASE_DONE).set("updatedAt", LocalDateTime.now()), CHECKPOINT_COLLECTION);
+        return deleted;
+    }
+
+    private Query dayQuery(LocalDate day, String snapshotId) {
+        return Query.query(Criteria.where("timestamp").gte(localStartOf(day)).lt(localStartOf(day.plusDays(1)))
+                .and("_id").lte(new ObjectId(snapshotId)));
+    }
+
+    private static String dayId(LocalDate day) {
+        return "day-" + day;
+    }
+
+    // A later run for an already archived day gets its own part rather than overwriting
+    Path archiveFile(LocalDate day, int part) {
+        Path directory = archivePath.resolve(String.format("%04d/%02d", day.getYear(), day.getMonthValue()));
+        return directory.resolve(part == 0 ? "clicks-" + day + ".ndjson.gz" : "clicks-" + day + "." + part + ".ndjson.gz");
+    }
+
+    private void pause() {
+        if (batchPauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(batchPauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Taken over once expired, so an instance that died mid-run does not block retention for good
+    private boolean acquireLease(String owner) {
+        Date now = new Date();
+        Query query = Query.query(Criteria.where("_id").is(LEASE_ID).and("expiresAt").lt(now));
+        try {
+            mongoTemplate.upsert(query, new Update().set("owner", owner)
+                    .set("expiresAt", new Date(now.getTime() + leaseMs)), CHECKPOINT_COLLECTION);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private void renewLease(String owner) {
+        long matched = mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(LEASE_ID).and("owner").is(owner)),
+                Update.update("expiresAt", new Date(System.currentTimeMillis() + leaseMs)), CHECKPOINT_COLLECTION)
+                .getMatchedCount();
+        if (matched == 0) {
+            throw new IllegalStateException("Click retention lease was taken over by another instance");
+        }
+    }
+
+    private void releaseLease(String owner) {
+        try {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(LEASE_ID).and("owner").is(owner)),
+                    CHECKPOINT_COLLECTION);
+        } catch (Exception e) {
+            log.warn("Failed to release the click retention lease, it lapses on its own: {}", e.getMessage());
+        }
+    }
+
+    // Click timestamps are stored in the server zone
+    private static LocalDateTime localStartOf(LocalDate dayUtc) {
+        return LocalDateTime.ofInstant(dayUtc.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneId.systemDefault());
+    }
+}
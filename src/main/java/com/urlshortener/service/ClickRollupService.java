@@ -0,0 +1,319 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.model.ClickRollup;
+import com.urlshortener.util.MongoKeys;
+import com.urlshortener.util.RollupQueryPlanner;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+@Slf4j
+@Service
+public class ClickRollupService implements ClickBatchListener {
+
+    private static final int MAX_REFERRER_LENGTH = 200;
+
+    private static final List<ClickRollup.Granularity> TIME_TIERS = List.of(
+            ClickRollup.Granularity.MINUTE, ClickRollup.Granularity.HOUR,
+            ClickRollup.Granularity.DAY, ClickRollup.Granularity.MONTH);
+
+    private final MongoTemplate mongoTemplate;
+    private final RollupQueryPlanner planner;
+
+    public ClickRollupService(MongoTemplate mongoTemplate,
+                              @Value("${app.rollups.retention-days.minute:2}") int minuteRetentionDays,
+                              @Value("${app.rollups.retention-days.hour:90}") int hourRetentionDays,
+                              @Value("${app.rollups.retention-days.day:0}") int dayRetentionDays) {
+        this.mongoTemplate = mongoTemplate;
+        Map<ClickRollup.Granularity, Duration> retention = new EnumMap<>(ClickRollup.Granularity.class);
+        putRetention(retention, ClickRollup.Granularity.MINUTE, minuteRetentionDays);
+        putRetention(retention, ClickRollup.Granularity.HOUR, hourRetentionDays);
+        putRetention(retention, ClickRollup.Granularity.DAY, dayRetentionDays);
+        this.planner = new RollupQueryPlanner(retention);
+    }
+
+    @Override
+    public boolean isRebuiltFromHistory() {
+        return true;
+    }
+
+    @Override
+    public void onBatch(List<ClickEvent> events) {
+        Map<String, RollupDelta> deltas = new HashMap<>();
+        LocalDateTime nowUtc = LocalDateTime.now(ZoneOffset.UTC);
+        for (ClickEvent event : events) {
+            if (event.getUrlId() == null || event.getTimestamp() == null) {
+                continue;
+            }
+            LocalDateTime utc = ClickRollup.toUtc(event.getTimestamp());
+            for (ClickRollup.Granularity tier : TIME_TIERS) {
+                // Replayed or backfilled events skip tiers that would be pruned straight away
+                if (planner.retains(tier, utc, nowUtc)) {
+                    addTo(deltas, event, utc, tier, ClickRollup.bucketFor(tier, utc));
+                }
+            }
+            addTo(deltas, event, utc, ClickRollup.Granularity.TOTAL, ClickRollup.TOTAL_BUCKET);
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ClickRollup.class);
+        deltas.forEach((id, delta) -> ops.upsert(Query.query(Criteria.where("_id").is(id)), delta.toUpdate(now)));
+        ops.execute();
+    }
+
+    public ClickRollup getTotal(String urlId) {
+        return mongoTemplate.findById(
+                ClickRollup.idFor(urlId, ClickRollup.Granularity.TOTAL, ClickRollup.TOTAL_BUCKET), ClickRollup.class);
+    }
+
+    public long getTotalClicksForUser(String userId) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("userId").is(userId).and("granularity").is(ClickRollup.Granularity.TOTAL)),
+                Aggregation.group().sum("totalClicks").as("total"));
+        Document result = mongoTemplate.aggregate(aggregation, ClickRollup.class, Document.class).getUniqueMappedResult();
+        return result != null ? ((Number) result.get("total")).longValue() : 0L;
+    }
+
+    /**
+     * Clicks per UTC day in the range, keyed yyyy-MM-dd. The planner covers the range with whole
+     * days plus edge hours and minutes, so the range is honoured to the minute while rollups
+     * are kept; past the minute and hour retention the edges widen to the enclosing hour or day.
+     */
+    public SortedMap<String, Long> getClicksByDate(String ownerField, String ownerId, LocalDateTime start, LocalDateTime end) {
+        SortedMap<String, Long> clicksByDate = new TreeMap<>();
+        List<RollupQueryPlanner.Segment> segments =
+                plan(start, end, ClickRollup.Granularity.MINUTE, ClickRollup.Granularity.DAY);
+        for (ClickRollup rollup : findSegments(ownerField, ownerId, segments, "bucket", "totalClicks")) {
+            clicksByDate.merge(rollup.getBucket().substring(0, 10), rollup.getTotalClicks(), Long::sum);
+        }
+        clicksByDate.values().removeIf(clicks -> clicks == 0);
+        return clicksByDate;
+    }
+
+    public List<RollupQueryPlanner.Segment> plan(LocalDateTime start, LocalDateTime end,
+                                                 ClickRollup.Granularity finest, ClickRollup.Granularity coarsest) {
+        return planner.plan(ClickRollup.toUtc(start), ClickRollup.toUtc(end), LocalDateTime.now(ZoneOffset.UTC),
+                finest, coarsest);
+    }
+
+    public boolean retains(ClickRollup.Granularity tier, LocalDateTime utc) {
+        return planner.retains(tier, utc, LocalDateTime.now(ZoneOffset.UTC));
+    }
+
+    /**
+     * One query for all planned segments; each segment is a bucket range on the owner's
+     * (owner, granularity, bucket) index.
+     */
+    public List<ClickRollup> findSegments(String ownerField, String ownerId, List<RollupQueryPlanner.Segment> segments,
+                                          String... fields) {
+        if (segments.isEmpty()) {
+            return List.of();
+        }
+        Criteria[] ranges = segments.stream()
+                .map(segment -> Criteria.where("granularity").is(segment.getGranularity())
+                        .and("bucket").gte(segment.getFirstBucket()).lte(segment.getLastBucket()))
+                .toArray(Criteria[]::new);
+        Query query = Query.query(Criteria.where(ownerField).is(ownerId).orOperator(ranges));
+        query.fields().include(fields).include("granularity");
+        return mongoTemplate.find(query, ClickRollup.class);
+    }
+
+    @Scheduled(cron = "${app.rollups.prune-cron:0 30 3 * * *}")
+    public void pruneExpiredTiers() {
+        LocalDateTime nowUtc = LocalDateTime.now(ZoneOffset.UTC);
+        for (ClickRollup.Granularity tier : TIME_TIERS) {
+            LocalDateTime cutoff = planner.retainedSince(tier, nowUtc);
+            if (cutoff == null) {
+                continue;
+            }
+            // Buckets before the one holding the cutoff have aged out entirely
+            String firstKept = ClickRollup.bucketFor(tier, RollupQueryPlanner.floor(cutoff, tier));
+            long removed = mongoTemplate.remove(Query.query(Criteria.where("granularity").is(tier)
+                    .and("bucket").lt(firstKept)), ClickRollup.class).getDeletedCount();
+            if (removed > 0) {
+                log.info("Pruned {} {} rollups older than {}", removed, tier, firstKept);
+            }
+        }
+    }
+
+    /**
+     * Recomputes one UTC day's DAY rollups from its raw events, ahead of those events being
+     * deleted. Counters are overwritten rather than incremented, so a resumed run cannot
+     * double count, and visitor sketches on the same documents are left alone.
+     */
+    public DayRebuild rebuildDay(LocalDate dayUtc) {
+        return new DayRebuild(ClickRollup.dayBucket(dayUtc));
+    }
+
+    public void deleteAll() {
+        mongoTemplate.remove(new Query(), ClickRollup.class);
+    }
+
+    private static void addTo(Map<String, RollupDelta> deltas, ClickEvent event, LocalDateTime utc,
+                              ClickRollup.Granularity granularity, String bucket) {
+        deltas.computeIfAbsent(ClickRollup.idFor(event.getUrlId(), granularity, bucket),
+                        id -> new RollupDelta(event.getUrlId(), event.getUserId(), granularity, bucket))
+                .add(event, utc.getHour());
+    }
+
+    private static void putRetention(Map<ClickRollup.Granularity, Duration> retention,
+                                     ClickRollup.Granularity tier, int days) {
+        if (days > 0) {
+            retention.put(tier, Duration.ofDays(days));
+        }
+    }
+
+    static String normalizeReferrer(String referer) {
+        if (referer == null || referer.isBlank()) {
+            return null;
+        }
+        int cut = referer.length();
+        int query = referer.indexOf('?');
+        int fragment = referer.indexOf('#');
+        if (query >= 0) {
+            cut = query;
+        }
+        if (fragment >= 0 && fragment < cut) {
+            cut = fragment;
+        }
+        String normalized = referer.substring(0, Math.min(cut, MAX_REFERRER_LENGTH));
+        return normalized.isBlank() ? null : normalized;
+    }
+
+    public final class DayRebuild {
+
+        private final String bucket;
+        private final Map<String, RollupDelta> deltas = new HashMap<>();
+
+        private DayRebuild(String bucket) {
+            this.bucket = bucket;
+        }
+
+        public void add(ClickEvent event) {
+            if (event.getUrlId() != null && event.getTimestamp() != null) {
+                LocalDateTime utc = ClickRollup.toUtc(event.getTimestamp());
+                addTo(deltas, event, utc, ClickRollup.Granularity.DAY, bucket);
+            }
+        }
+
+        public int commit() {
+            if (deltas.isEmpty()) {
+                return 0;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ClickRollup.class);
+            deltas.forEach((id, delta) -> ops.upsert(Query.query(Criteria.where("_id").is(id)), delta.toReplacement(now)));
+            ops.execute();
+            return deltas.size();
+        }
+    }
+
+    private static final class RollupDelta {
+
+        private final String urlId;
+        private final String userId;
+        private final ClickRollup.Granularity granularity;
+        private final String bucket;
+
+        private long totalClicks;
+        private final Map<String, Long> countries = new LinkedHashMap<>();
+        private final Map<String, Long> browsers = new LinkedHashMap<>();
+        private final Map<String, Long> devices = new LinkedHashMap<>();
+        private final Map<String, Long> referrers = new LinkedHashMap<>();
+        private final Map<String, Long> hours = new LinkedHashMap<>();
+
+        private RollupDelta(String urlId, String userId, ClickRollup.Granularity granularity, String bucket) {
+            this.urlId = urlId;
+            this.userId = userId;
+            this.granularity = granularity;
+            this.bucket = bucket;
+        }
+
+        private void add(ClickEvent event, int hour) {
+            totalClicks++;
+            // Minute buckets only feed short-range click counts
+            if (granularity == ClickRollup.Granularity.MINUTE) {
+                return;
+            }
+            countries.merge(orUnknown(event.getCountry()), 1L, Long::sum);
+            browsers.merge(orUnknown(event.getBrowser()), 1L, Long::sum);
+            devices.merge(orUnknown(event.getDeviceType()), 1L, Long::sum);
+            // Long-bucket referrers are unbounded; HeavyHitterService tracks their top list instead
+            boolean longBucket = granularity == ClickRollup.Granularity.MONTH || granularity == ClickRollup.Granularity.TOTAL;
+            String referrer = !longBucket ? normalizeReferrer(event.getReferer()) : null;
+            if (referrer != null) {
+                referrers.merge(referrer, 1L, Long::sum);
+            }
+            hours.merge(Integer.toString(hour), 1L, Long::sum);
+        }
+
+        private Update toUpdate(LocalDateTime now) {
+            Update update = new Update()
+                    .setOnInsert("urlId", urlId)
+                    .setOnInsert("userId", userId)
+                    .setOnInsert("granularity", granularity)
+                    .setOnInsert("bucket", bucket)
+                    .inc("totalClicks", totalClicks)
+                    .set("updatedAt", now);
+            incAll(update, "countries", countries);
+            incAll(update, "browsers", browsers);
+            incAll(update, "devices", devices);
+            incAll(update, "referrers", referrers);
+            incAll(update, "hours", hours);
+            return update;
+        }
+
+        private Update toReplacement(LocalDateTime now) {
+            return new Update()
+                    .setOnInsert("urlId", urlId)
+                    .setOnInsert("userId", userId)
+                    .setOnInsert("granularity", granularity)
+                    .setOnInsert("bucket", bucket)
+                    .set("totalClicks", totalClicks)
+                    .set("countries", encodeKeys(countries))
+                    .set("browsers", encodeKeys(browsers))
+                    .set("devices", encodeKeys(devices))
+                    .set("referrers", encodeKeys(referrers))
+                    .set("hours", encodeKeys(hours))
+                    .set("updatedAt", now);
+        }
+
+        private static Map<String, Long> encodeKeys(Map<String, Long> counts) {
+            Map<String, Long> encoded = new LinkedHashMap<>();
+            counts.forEach((key, count) -> encoded.put(MongoKeys.encode(key), count));
+            return encoded;
+        }
+
+        private static void incAll(Update update, String field, Map<String, Long> counts) {
+            counts.forEach((key, count) -> update.inc(field + "." + MongoKeys.encode(key), count));
+        }
+
+        private static String orUnknown(String value) {
+            return value != null && !value.isEmpty() ? value : "Unknown";
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.urlshortener.service;
+
+import com.urlshortener.dto.response.ClickStreamUpdate;
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.util.BoundedRingBuffer;
+import com.urlshortener.util.Referers;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process fan-out of freshly written clicks to Server-Sent Events subscribers. Ingestion
+ * only bumps per-link counters and offers a click summary to each matching subscriber's
+ * bounded buffer, dropping the oldest summary when it is full. A flusher then coalesces
+ * whatever accumulated into at most one event per subscriber per flush interval.
+ */
+@Slf4j
+@Service
+public class ClickStreamService implements ClickBatchListener {
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong subscriberCount = new AtomicLong();
+    private final Executor executor;
+    private final int bufferSize;
+    private final long timeoutMs;
+    private final long heartbeatMs;
+    private final int maxSubscribersPerUser;
+
+    public ClickStreamService(@Qualifier("taskExecutor") Executor executor,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.click-stream.buffer-size:100}") int bufferSize,
+                              @Value("${app.click-stream.timeout-ms:1800000}") long timeoutMs,
+                              @Value("${app.click-stream.heartbeat-ms:15000}") long heartbeatMs,
+                              @Value("${app.click-stream.max-subscribers-per-user:5}") int maxSubscribersPerUser) {
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        this.timeoutMs = timeoutMs;
+        this.heartbeatMs = heartbeatMs;
+        this.maxSubscribersPerUser = maxSubscribersPerUser;
+
+        Gauge.builder("urlshortener.click.stream.subscribers", subscriberCount, AtomicLong::get)
+                .description("Open live click stream connections")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Streams clicks on all of the user's links, or only on urlId when it is given. Past the
+     * per-user limit the oldest connection of that user is closed.
+     */
+    public SseEmitter subscribe(String userId, String urlId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(userId, urlId, emitter);
+        Set<Subscriber> userSubscribers = subscribers.computeIfAbsent(userId, id -> new CopyOnWriteArraySet<>());
+        userSubscribers.add(subscriber);
+        subscriberCount.incrementAndGet();
+        while (userSubscribers.size() > maxSubscribersPerUser) {
+            Subscriber oldest = userSubscribers.iterator().next();
+            remove(oldest);
+            oldest.emitter.complete();
+        }
+
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        try {
+            // Commits the response so the client sees the stream open straight away
+            emitter.send(SseEmitter.event().comment("connected"));
+        } catch (IOException e) {
+            remove(subscriber);
+        }
+        return emitter;
+    }
+
+    @Override
+    public void onBatch(List<ClickEvent> events) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        for (ClickEvent event : events) {
+            Set<Subscriber> userSubscribers = event.getUserId() != null ? subscribers.get(event.getUserId()) : null;
+            if (userSubscribers == null || event.getUrlId() == null) {
+                continue;
+            }
+            ClickStreamUpdate.ClickSummary summary = ClickStreamUpdate.ClickSummary.builder()
+                    .urlId(event.getUrlId())
+                    .timestamp(event.getTimestamp())
+                    .country(event.getCountry())
+                    .city(event.getCity())
+                    .deviceType(event.getDeviceType())
+                    .browser(event.getBrowser())
+                    .refererDomain(Referers.domain(event.getReferer()))
+                    .build();
+            for (Subscriber subscriber : userSubscribers) {
+                subscriber.accept(summary);
+            }
+        }
+    }
+
+    // Sends happen on the task executor so a slow client never holds up the others, and a
+    // subscriber whose previous send is still in progress just coalesces into the next tick
+    @Scheduled(fixedRateString = "${app.click-stream.flush-interval-ms:500}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        for (Set<Subscriber> userSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : userSubscribers) {
+                if (subscriber.isDue(now) && subscriber.sending.compareAndSet(false, true)) {
+                    try {
+                        executor.execute(() -> subscriber.send(now));
+                    } catch (RejectedExecutionException e) {
+                        subscriber.sending.set(false);
+                    }
+                }
+            }
+        }
+    }
+
+    public long getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    private void remove(Subscriber subscriber) {
+        Set<Subscriber> userSubscribers = subscribers.get(subscriber.userId);
+        if (userSubscribers != null && userSubscribers.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+            if (userSubscribers.isEmpty()) {
+                subscribers.remove(subscriber.userId, userSubscribers);
+            }
+        }
+    }
+
+    private final class Subscriber {
+
+        private final String userId;
+        private final String urlId;
+        private final SseEmitter emitter;
+        private final BoundedRingBuffer<ClickStreamUpdate.ClickSummary> buffer;
+        private final Map<String, LongAdder> clicksByUrl = new ConcurrentHashMap<>();
+        private final LongAdder dropped = new LongAdder();
+        private final AtomicBoolean pending = new AtomicBoolean();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile long lastSentAt = System.currentTimeMillis();
+
+        private Subscriber(String userId, String urlId, SseEmitter emitter) {
+            this.userId = userId;
+            this.urlId = urlId;
+            this.emitter = emitter;
+            this.buffer = new BoundedRingBuffer<>(bufferSize);
+        }
+
+        private void accept(ClickStreamUpdate.ClickSummary summary) {
+            if (urlId != null && !urlId.equals(summary.getUrlId())) {
+                return;
+            }
+            clicksByUrl.computeIfAbsent(summary.getUrlId(), id -> new LongAdder()).increment();
+            while (!buffer.offer(summary)) {
+                if (buffer.poll() != null) {
+                    dropped.increment();
+                }
+            }
+            pending.set(true);
+        }
+
+        private boolean isDue(long now) {
+            return pending.get() || now - lastSentAt >= heartbeatMs;
+        }
+
+        private void send(long now) {
+            try {
+                if (!pending.getAndSet(false)) {
+                    emitter.send(SseEmitter.event().comment("keepalive"));
+                } else {
+                    Map<String, Long> counts = new HashMap<>();
+                    clicksByUrl.forEach((id, adder) -> {
+                        long clicks = adder.sumThenReset();
+                        if (clicks > 0) {
+                            counts.put(id, clicks);
+                        }
+                    });
+                    List<ClickStreamUpdate.ClickSummary> recent = new ArrayList<>();
+                    buffer.drainTo(recent, bufferSize);
+                    emitter.send(SseEmitter.event().name("clicks").data(ClickStreamUpdate.builder()
+                            .clicksByUrl(counts)
+                            .recentClicks(recent)
+                            .droppedClicks(dropped.sumThenReset())
+                            .build()));
+                }
+                lastSentAt = now;
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Dropping live click stream subscriber {}: {}", userId, e.getMessage());
+                remove(this);
+            } finally {
+                sending.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.urlshortener.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Client for the remote geolocation API's multi-address endpoint on a shared, pooled
+ * {@link HttpClient} with connect and request timeouts. Concurrent lookups for the same
+ * address share one request, the number of requests in flight is capped, and a circuit
+ * breaker fails fast to {@link GeoLocationService.GeoLocation#unknown()} after consecutive
+ * failures or when the provider reports its rate limit exhausted, letting one trial request
+ * through per cool-down.
+ */
+@Slf4j
+@Service
+public class GeoApiClient {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final TypeReference<List<Map<String, Object>>> JSON_ARRAY = new TypeReference<>() {
+    };
+
+    private final String batchUrl;
+    private final int batchSize;
+    private final Duration requestTimeout;
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Semaphore permits;
+    private final Map<String, CompletableFuture<GeoLocationService.GeoLocation>> inFlight = new ConcurrentHashMap<>();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+
+    public GeoApiClient(@Value("${external.geo-api.batch-url}") String batchUrl,
+                        @Value("${external.geo-api.batch-size:100}") int batchSize,
+                        @Value("${external.geo-api.connect-timeout-ms:500}") long connectTimeoutMs,
+                        @Value("${external.geo-api.request-timeout-ms:1000}") long requestTimeoutMs,
+                        @Value("${external.geo-api.max-in-flight:32}") int maxInFlight,
+                        @Value("${external.geo-api.failure-threshold:5}") int failureThreshold,
+                        @Value("${external.geo-api.open-duration-ms:30000}") long openDurationMs) {
+        this.batchUrl = batchUrl;
+        this.batchSize = batchSize;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+        this.permits = new Semaphore(maxInFlight);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+    }
+
+    /**
+     * Resolves many addresses with one batch request per batch-size addresses. Addresses
+     * already being looked up join those requests instead. Never completes exceptionally;
+     * every failure resolves to an unknown location.
+     */
+    public CompletableFuture<Map<String, GeoLocationService.GeoLocation>> lookupBatch(Collection<String> ipAddresses) {
+        Map<String, CompletableFuture<GeoLocationService.GeoLocation>> lookups = new LinkedHashMap<>();
+        Map<String, CompletableFuture<GeoLocationService.GeoLocation>> owned = new LinkedHashMap<>();
+        for (String ipAddress : ipAddresses) {
+            if (lookups.containsKey(ipAddress)) {
+                continue;
+            }
+            CompletableFuture<GeoLocationService.GeoLocation> request = new CompletableFuture<>();
+            CompletableFuture<GeoLocationService.GeoLocation> existing = inFlight.putIfAbsent(ipAddress, request);
+            if (existing != null) {
+                lookups.put(ipAddress, existing);
+            } else {
+                lookups.put(ipAddress, request);
+                owned.put(ipAddress, request);
+            }
+        }
+
+        List<String> pending = new ArrayList<>(owned.keySet());
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<String> chunk = pending.subList(from, Math.min(pending.size(), from + batchSize));
+            CompletableFuture<Map<String, GeoLocationService.GeoLocation>> results;
+            if (!allowRequest()) {
+                results = CompletableFuture.completedFuture(Map.of());
+            } else if (!permits.tryAcquire()) {
+                releaseTrial();
+                results = CompletableFuture.completedFuture(Map.of());
+            } else {
+                results = sendBatch(chunk).whenComplete((located, error) -> permits.release());
+            }
+            results.whenComplete((located, error) -> {
+                for (String ipAddress : chunk) {
+                    CompletableFuture<GeoLocationService.GeoLocation> request = owned.get(ipAddress);
+                    inFlight.remove(ipAddress, request);
+                    GeoLocationService.GeoLocation location = located != null ? located.get(ipAddress) : null;
+                    request.complete(location != null ? location : GeoLocationService.GeoLocation.unknown());
+                }
+            });
+        }
+
+        return CompletableFuture.allOf(lookups.values().toArray(new CompletableFuture[0]))
+                .thenApply(done -> {
+                    Map<String, GeoLocationService.GeoLocation> locations = new LinkedHashMap<>();
+                    lookups.forEach((ipAddress, lookup) -> locations.put(ipAddress, lookup.join()));
+                    return locations;
+                });
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", getState());
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+
+    private CompletableFuture<Map<String, GeoLocationService.GeoLocation>> sendBatch(List<String> ipAddresses) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(batchUrl))
+                    .timeout(requestTimeout)
+                    .header("Accept", "application/json")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(ipAddresses)))
+                    .build();
+        } catch (Exception e) {
+            releaseTrial();
+            return CompletableFuture.completedFuture(Map.of());
+        }
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        onFailure();
+                        log.warn("Geolocation batch of {} failed: {}", ipAddresses.size(), error.getMessage());
+                        return Map.of();
+                    }
+                    return handleBatchResponse(ipAddresses.size(), response);
+                });
+    }
+
+    private Map<String, GeoLocationService.GeoLocation> handleBatchResponse(int requested, HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            onFailure();
+            log.warn("Geolocation batch of {} returned HTTP {}", requested, response.statusCode());
+            return Map.of();
+        }
+        rateLimitReset(response).ifPresentOrElse(this::openFor, this::onSuccess);
+        Map<String, GeoLocationService.GeoLocation> locations = new HashMap<>();
+        try {
+            for (Map<String, Object> entry : objectMapper.readValue(response.body(), JSON_ARRAY)) {
+                if (entry.get("query") instanceof String ipAddress && "success".equals(entry.get("status"))) {
+                    locations.put(ipAddress, GeoLocationService.GeoLocation.fromApiResponse(entry));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Unreadable geolocation batch response: {}", e.getMessage());
+        }
+        return locations;
+    }
+
+    // ip-api reports the requests left in the window (X-Rl) and seconds until it resets (X-Ttl)
+    private static Optional<Long> rateLimitReset(HttpResponse<?> response) {
+        String remaining = response.headers().firstValue("X-Rl").orElse(null);
+        if (!"0".equals(remaining)) {
+            return Optional.empty();
+        }
+        long seconds = response.headers().firstValueAsLong("X-Ttl").orElse(60);
+        return Optional.of(seconds * 1000);
+    }
+
+    private synchronized boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        return false;
+    }
+
+    // A trial that never reached the provider must not leave the breaker stuck half-open
+    private synchronized void releaseTrial() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    private synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    private synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            openFor(openDurationMs);
+        }
+    }
+
+    private synchronized void openFor(long durationMs) {
+        if (state != State.OPEN) {
+            log.warn("Geolocation API circuit opened for {} ms", durationMs);
+        }
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + durationMs;
+    }
+}
@@ -0,0 +1,205 @@
+package com.urlshortener.service;
+
+import com.urlshortener.exception.BadRequestException;
+import com.urlshortener.util.IpAddresses;
+import com.urlshortener.util.IpRangeTable;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Local IP geolocation from a range database file, so clicks are enriched without a remote
+ * call. The file is CSV (optionally gzipped), one range per line:
+ * {@code start,end,countryCode,country,region,city,latitude,longitude,timezone,isp}
+ * with IPv4 or IPv6 literals as the ends; trailing columns may be omitted. The file is
+ * polled for changes and a new table is swapped in atomically once fully loaded.
+ */
+@Slf4j
+@Service
+public class GeoDatabaseService {
+
+    private final String path;
+    private volatile IpRangeTable<GeoLocationService.GeoLocation> table;
+    private volatile long loadedModifiedAt;
+
+    public GeoDatabaseService(MeterRegistry meterRegistry,
+                              @Value("${app.geo.database.path:}") String path) {
+        this.path = path;
+
+        Gauge.builder("urlshortener.geo.database.ranges", this, service -> service.table != null ? service.table.size() : 0)
+                .description("IP ranges in the loaded geolocation database")
+                .register(meterRegistry);
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reloadIfChanged();
+    }
+
+    @Scheduled(fixedDelayString = "${app.geo.database.refresh-interval-ms:60000}",
+            initialDelayString = "${app.geo.database.refresh-interval-ms:60000}")
+    public void reloadIfChanged() {
+        if (!isConfigured()) {
+            return;
+        }
+        try {
+            Path file = Paths.get(path);
+            if (Files.exists(file) && Files.getLastModifiedTime(file).toMillis() != loadedModifiedAt) {
+                reload();
+            }
+        } catch (Exception e) {
+            log.warn("Failed to load geolocation database {}, keeping the current one: {}", path, e.getMessage());
+        }
+    }
+
+    public synchronized Map<String, Object> reload() throws IOException {
+        if (!isConfigured()) {
+            throw new BadRequestException("No geolocation database is configured");
+        }
+        Path file = Paths.get(path);
+        long modifiedAt = Files.getLastModifiedTime(file).toMillis();
+        long started = System.currentTimeMillis();
+        IpRangeTable.Builder<GeoLocationService.GeoLocation> builder = IpRangeTable.builder();
+        int skipped = 0;
+
+        try (InputStream input = open(file);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                List<String> columns = splitCsv(line);
+                byte[] start = IpAddresses.parse(column(columns, 0));
+                byte[] end = IpAddresses.parse(column(columns, 1));
+                if (start == null || end == null || start.length != end.length) {
+                    skipped++;
+                    continue;
+                }
+                builder.add(start, end, toLocation(columns));
+            }
+        }
+
+        IpRangeTable<GeoLocationService.GeoLocation> loaded = builder.build();
+        table = loaded;
+        loadedModifiedAt = modifiedAt;
+        log.info("Loaded geolocation database {}: {} ranges, {} distinct locations, {} lines skipped in {} ms",
+                path, loaded.size(), loaded.distinctValues(), skipped, System.currentTimeMillis() - started);
+        return getStats();
+    }
+
+    /**
+     * Null when no database is loaded or the address is not covered, so the caller can fall
+     * back to another source.
+     */
+    public GeoLocationService.GeoLocation lookup(byte[] address) {
+        IpRangeTable<GeoLocationService.GeoLocation> current = table;
+        return current != null ? current.lookup(address) : null;
+    }
+
+    public boolean isLoaded() {
+        return table != null;
+    }
+
+    public Map<String, Object> getStats() {
+        IpRangeTable<GeoLocationService.GeoLocation> current = table;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("path", path);
+        stats.put("loaded", current != null);
+        stats.put("ranges", current != null ? current.size() : 0);
+        stats.put("locations", current != null ? current.distinctValues() : 0);
+        stats.put("sizeBytes", current != null ? current.sizeBytes() : 0);
+        return stats;
+    }
+
+    private boolean isConfigured() {
+        return path != null && !path.isBlank();
+    }
+
+    private static InputStream open(Path file) throws IOException {
+        InputStream input = Files.newInputStream(file);
+        return file.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(input, 1 << 16) : input;
+    }
+
+    private static GeoLocationService.GeoLocation toLocation(List<String> columns) {
+        GeoLocationService.GeoLocation unknown = GeoLocationService.GeoLocation.unknown();
+        return GeoLocationService.GeoLocation.builder()
+                .countryCode(orDefault(column(columns, 2), unknown.getCountryCode()))
+                .country(orDefault(column(columns, 3), unknown.getCountry()))
+                .region(orDefault(column(columns, 4), unknown.getRegion()))
+                .city(orDefault(column(columns, 5), unknown.getCity()))
+                .latitude(parseDouble(column(columns, 6)))
+                .longitude(parseDouble(column(columns, 7)))
+                .timezone(orDefault(column(columns, 8), unknown.getTimezone()))
+                .isp(orDefault(column(columns, 9), unknown.getIsp()))
+                .build();
+    }
+
+    private static String column(List<String> columns, int index) {
+        return index < columns.size() ? columns.get(index) : null;
+    }
+
+    private static String orDefault(String value, String fallback) {
+        return value != null && !value.isEmpty() ? value : fallback;
+    }
+
+    private static double parseDouble(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static List<String> splitCsv(String line) {
+        List<String> columns = new ArrayList<>(10);
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                columns.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        columns.add(current.toString().trim());
+        return columns;
+    }
+}
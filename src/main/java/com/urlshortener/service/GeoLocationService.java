@@ -1,67 +1,125 @@
 package com.urlshortener.service;
 
+import com.urlshortener.util.CidrMatcher;
+import com.urlshortener.util.IpAddresses;
+import com.urlshortener.util.NetworkPrefixCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Resolves client addresses to locations. Reserved ranges are answered without a lookup, the
+ * local range database answers exactly, and remote API answers are cached per network block
+ * (/24 or /48), since neighbouring addresses of a carrier or CGNAT pool share a location.
+ */
 @Slf4j
 @Service
 public class GeoLocationService {
 
-    @Value("${external.geo-api.url}")
-    private String geoApiUrl;
+    private static final GeoLocation UNKNOWN = GeoLocation.unknown();
 
-    @Value("${external.geo-api.enabled:true}")
-    private boolean geoApiEnabled;
+    private final GeoDatabaseService geoDatabaseService;
+    private final GeoApiClient geoApiClient;
+    private final NetworkPrefixCache<GeoLocation> cache;
+    private final boolean geoApiEnabled;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    public GeoLocationService(GeoDatabaseService geoDatabaseService,
+                              GeoApiClient geoApiClient,
+                              MeterRegistry meterRegistry,
+                              @Value("${external.geo-api.enabled:true}") boolean geoApiEnabled,
+                              @Value("${app.geo.cache.max-entries:200000}") int cacheMaxEntries,
+                              @Value("${app.geo.cache.expire-after-minutes:60}") long cacheExpireAfterMinutes) {
+        this.geoDatabaseService = geoDatabaseService;
+        this.geoApiClient = geoApiClient;
+        this.geoApiEnabled = geoApiEnabled;
+        this.cache = new NetworkPrefixCache<>(cacheMaxEntries, Duration.ofMinutes(cacheExpireAfterMinutes));
 
-    @Cacheable(value = "geolocations", key = "#ipAddress")
-    public GeoLocation getLocation(String ipAddress) {
-        if (!geoApiEnabled || isLocalIP(ipAddress)) {
-            return GeoLocation.unknown();
-        }
-
-        try {
-            String url = geoApiUrl + ipAddress;
-            @SuppressWarnings("unchecked")
-            Map<String, Object> response = restTemplate.getForObject(url, Map.class);
+        Gauge.builder("urlshortener.geo.cache.size", cache, NetworkPrefixCache::size)
+                .description("Network blocks held in the geolocation cache")
+                .register(meterRegistry);
+        Gauge.builder("urlshortener.geo.cache.hit.ratio", cache, NetworkPrefixCache::hitRatio)
+                .description("Share of geolocation cache lookups answered from the cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("urlshortener.geo.cache.requests", cache, NetworkPrefixCache::hitCount)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("urlshortener.geo.cache.requests", cache, NetworkPrefixCache::missCount)
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
 
-            if (response != null && "success".equals(response.get("status"))) {
-                return GeoLocation.builder()
-                        .country((String) response.get("country"))
-                        .countryCode((String) response.get("countryCode"))
-                        .region((String) response.get("regionName"))
-                        .city((String) response.get("city"))
-                        .timezone((String) response.get("timezone"))
-                        .isp((String) response.get("isp"))
-                        .latitude(response.get("lat") != null ? ((Number) response.get("lat")).doubleValue() : 0)
-                        .longitude(response.get("lon") != null ? ((Number) response.get("lon")).doubleValue() : 0)
-                        .build();
+    /**
+     * Resolves a whole click batch at once: local and cached answers first, then a single
+     * batched API call for whatever distinct addresses remain.
+     */
+    public Map<String, GeoLocation> getLocations(Collection<String> ipAddresses) {
+        Map<String, GeoLocation> locations = new HashMap<>();
+        Map<String, byte[]> remote = new LinkedHashMap<>();
+        for (String ipAddress : ipAddresses) {
+            if (ipAddress == null || locations.containsKey(ipAddress) || remote.containsKey(ipAddress)) {
+                continue;
+            }
+            byte[] address = IpAddresses.parse(ipAddress);
+            GeoLocation resolved = resolveLocally(address);
+            if (resolved != null) {
+                locations.put(ipAddress, resolved);
+            } else {
+                remote.put(ipAddress, address);
             }
-        } catch (Exception e) {
-            log.warn("Failed to get geolocation for IP {}: {}", ipAddress, e.getMessage());
         }
 
-        return GeoLocation.unknown();
+        if (!remote.isEmpty()) {
+            geoApiClient.lookupBatch(remote.keySet()).join().forEach((ipAddress, location) -> {
+                locations.put(ipAddress, location);
+                remember(remote.get(ipAddress), location);
+            });
+        }
+        return locations;
+    }
+
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", cache.size());
+        stats.put("hits", cache.hitCount());
+        stats.put("misses", cache.missCount());
+        stats.put("hitRatio", cache.hitRatio());
+        return stats;
+    }
+
+    // Null means only the remote API can answer
+    private GeoLocation resolveLocally(byte[] address) {
+        if (address == null || CidrMatcher.RESERVED.matches(address)) {
+            return GeoLocation.unknown();
+        }
+        // The local database answers first and exactly; the cache only holds API answers
+        GeoLocation local = geoDatabaseService.lookup(address);
+        if (local != null) {
+            return local;
+        }
+        if (!geoApiEnabled) {
+            return GeoLocation.unknown();
+        }
+        return cache.get(address);
     }
 
-    private boolean isLocalIP(String ipAddress) {
-        return ipAddress == null ||
-                ipAddress.equals("127.0.0.1") ||
-                ipAddress.equals("0:0:0:0:0:0:0:1") ||
-                ipAddress.equals("::1") ||
-                ipAddress.startsWith("192.168.") ||
-                ipAddress.startsWith("10.") ||
-                ipAddress.startsWith("172.");
+    // Unknown answers are usually failures or an open circuit, so they are retried later
+    private void remember(byte[] address, GeoLocation location) {
+        if (location != null && !UNKNOWN.equals(location)) {
+            cache.put(address, location);
+        }
     }
 
     @Data
@@ -78,6 +136,19 @@ public class GeoLocationService {
         private double latitude;
         private double longitude;
 
+        public static GeoLocation fromApiResponse(Map<String, Object> response) {
+            return GeoLocation.builder()
+                    .country((String) response.get("country"))
+                    .countryCode((String) response.get("countryCode"))
+                    .region((String) response.get("regionName"))
+                    .city((String) response.get("city"))
+                    .timezone((String) response.get("timezone"))
+                    .isp((String) response.get("isp"))
+                    .latitude(response.get("lat") != null ? ((Number) response.get("lat")).doubleValue() : 0)
+                    .longitude(response.get("lon") != null ? ((Number) response.get("lon")).doubleValue() : 0)
+                    .build();
+        }
+
         public static GeoLocation unknown() {
             return GeoLocation.builder()
                     .country("Unknown")
@@ -0,0 +1,179 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.model.HeavyHitters;
+import com.urlshortener.util.SpaceSaving;
+import com.urlshortener.util.VersionedUpsert;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class HeavyHitterService implements ClickBatchListener {
+
+    private final MongoTemplate mongoTemplate;
+    private final int capacity;
+
+    private final ConcurrentHashMap<String, Summaries> pending = new ConcurrentHashMap<>();
+
+    public HeavyHitterService(MongoTemplate mongoTemplate,
+                              @Value("${app.heavy-hitters.capacity:64}") int capacity) {
+        this.mongoTemplate = mongoTemplate;
+        this.capacity = capacity;
+    }
+
+    @Getter
+    public static class Summaries {
+        private final String userId;
+        private final SpaceSaving countries;
+        private final SpaceSaving browsers;
+        private final SpaceSaving referrers;
+
+        private Summaries(String userId, int capacity) {
+            this.userId = userId;
+            this.countries = new SpaceSaving(capacity);
+            this.browsers = new SpaceSaving(capacity);
+            this.referrers = new SpaceSaving(capacity);
+        }
+
+        private void add(ClickEvent event) {
+            countries.offer(orUnknown(event.getCountry()));
+            browsers.offer(orUnknown(event.getBrowser()));
+            String referrer = ClickRollupService.normalizeReferrer(event.getReferer());
+            if (referrer != null) {
+                referrers.offer(referrer);
+            }
+        }
+
+        private void merge(Summaries other) {
+            countries.merge(other.countries);
+            browsers.merge(other.browsers);
+            referrers.merge(other.referrers);
+        }
+
+        private static String orUnknown(String value) {
+            return value != null && !value.isEmpty() ? value : "Unknown";
+        }
+    }
+
+    @Override
+    public boolean isRebuiltFromHistory() {
+        return true;
+    }
+
+    @Override
+    public void onBatch(List<ClickEvent> events) {
+        for (ClickEvent event : events) {
+            if (event.getUrlId() == null) {
+                continue;
+            }
+            pending.compute(event.getUrlId(), (urlId, summaries) -> {
+                if (summaries == null) {
+                    summaries = new Summaries(event.getUserId(), capacity);
+                }
+                summaries.add(event);
+                return summaries;
+            });
+        }
+    }
+
+    public Summaries getSummaries(String urlId) {
+        Summaries merged = new Summaries(null, capacity);
+        HeavyHitters stored = mongoTemplate.findById(urlId, HeavyHitters.class);
+        if (stored != null) {
+            merged.merge(fromDocument(stored));
+        }
+        pending.computeIfPresent(urlId, (id, summaries) -> {
+            merged.merge(summaries);
+            return summaries;
+        });
+        return merged;
+    }
+
+    @Scheduled(fixedDelayString = "${app.heavy-hitters.flush-interval-ms:10000}")
+    public synchronized void flush() {
+        LocalDateTime now = LocalDateTime.now();
+        for (String urlId : pending.keySet()) {
+            Summaries summaries = pending.remove(urlId);
+            if (summaries == null) {
+                continue;
+            }
+            try {
+                mergeIntoStored(urlId, summaries, now);
+            } catch (Exception e) {
+                log.warn("Failed to flush heavy hitters for url {}: {}", urlId, e.getMessage());
+                pending.merge(urlId, summaries, (current, failed) -> {
+                    current.merge(failed);
+                    return current;
+                });
+            }
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        flush();
+    }
+
+    public synchronized void deleteAll() {
+        pending.clear();
+        mongoTemplate.remove(new Query(), HeavyHitters.class);
+    }
+
+    private void mergeIntoStored(String urlId, Summaries delta, LocalDateTime now) {
+        VersionedUpsert.merge(mongoTemplate, HeavyHitters.class, urlId, "version",
+                () -> mongoTemplate.findById(urlId, HeavyHitters.class),
+                HeavyHitters::getVersion,
+                (stored, version) -> {
+                    Summaries merged = new Summaries(delta.getUserId(), capacity);
+                    merged.merge(delta);
+                    if (stored != null) {
+                        merged.merge(fromDocument(stored));
+                    }
+                    return new Update()
+                            .set("capacity", capacity)
+                            .set("countries", toEntries(merged.getCountries()))
+                            .set("browsers", toEntries(merged.getBrowsers()))
+                            .set("referrers", toEntries(merged.getReferrers()))
+                            .set("updatedAt", now)
+                            .setOnInsert("userId", delta.getUserId());
+                });
+    }
+
+    private Summaries fromDocument(HeavyHitters document) {
+        Summaries summaries = new Summaries(document.getUserId(), capacity);
+        summaries.countries.merge(toSummary(document.getCountries(), document.getCapacity()));
+        summaries.browsers.merge(toSummary(document.getBrowsers(), document.getCapacity()));
+        summaries.referrers.merge(toSummary(document.getReferrers(), document.getCapacity()));
+        return summaries;
+    }
+
+    private SpaceSaving toSummary(List<HeavyHitters.Entry> entries, int storedCapacity) {
+        List<SpaceSaving.Counter> counters = entries == null ? List.of() : entries.stream()
+                .map(entry -> new SpaceSaving.Counter(entry.getItem(), entry.getCount(), entry.getError()))
+                .collect(Collectors.toList());
+        return SpaceSaving.of(storedCapacity > 0 ? storedCapacity : capacity, counters);
+    }
+
+    private static List<HeavyHitters.Entry> toEntries(SpaceSaving summary) {
+        return summary.counters().stream()
+                .map(counter -> HeavyHitters.Entry.builder()
+                        .item(counter.getItem())
+                        .count(counter.getCount())
+                        .error(counter.getError())
+                        .build())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,52 @@
+package com.urlshortener.service;
+
+import com.urlshortener.exception.BadRequestException;
+import com.urlshortener.exception.ResourceNotFoundException;
+import com.urlshortener.exception.UrlExpiredException;
+import com.urlshortener.model.RedirectEntry;
+import com.urlshortener.repository.UrlRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RedirectService {
+
+    private final UrlRepository urlRepository;
+    private final ShortCodeFilterService shortCodeFilterService;
+    private final RedirectTableService redirectTableService;
+
+    @Cacheable(value = "redirects", key = "#shortCode")
+    public RedirectEntry resolve(String shortCode) {
+        if (!shortCodeFilterService.mightExist(shortCode)) {
+            throw ResourceNotFoundException.withoutStackTrace("URL", "shortCode", shortCode);
+        }
+
+        RedirectEntry stored = redirectTableService.get(shortCode);
+        if (stored != null) {
+            return stored;
+        }
+
+        RedirectEntry entry = urlRepository.findByShortCode(shortCode)
+                .map(RedirectEntry::fromUrl)
+                .orElseThrow(() -> {
+                    shortCodeFilterService.recordMiss(shortCode);
+                    return ResourceNotFoundException.withoutStackTrace("URL", "shortCode", shortCode);
+                });
+        redirectTableService.put(entry);
+        return entry;
+    }
+
+    public void ensureRedirectable(RedirectEntry entry) {
+        if (!entry.isActive()) {
+            throw new BadRequestException("This URL has been deactivated");
+        }
+
+        if (entry.isExpired(System.currentTimeMillis())) {
+            throw new UrlExpiredException();
+        }
+    }
+}
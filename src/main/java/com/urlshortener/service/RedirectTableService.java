@@ -0,0 +1,119 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.RedirectEntry;
+import com.urlshortener.util.MappedRedirectTable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+public class RedirectTableService {
+
+    @Value("${app.redirect-table.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.redirect-table.path:./data/redirect-table}")
+    private String path;
+
+    @Value("${app.redirect-table.initial-capacity:1048576}")
+    private int initialCapacity;
+
+    @Value("${app.redirect-table.max-data-bytes:1073741824}")
+    private long maxDataBytes;
+
+    @Value("${app.redirect-table.max-age-minutes:60}")
+    private long maxAgeMinutes;
+
+    @Value("${app.redirect-cache.expire-after-write-minutes:60}")
+    private long redirectCacheExpireAfterWriteMinutes;
+
+    private volatile MappedRedirectTable table;
+
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+
+        Path directory = Paths.get(path);
+        try {
+            table = MappedRedirectTable.open(directory, initialCapacity, maxDataBytes);
+            log.info("Redirect table opened at {} with {} entries", directory.toAbsolutePath(), table.size());
+        } catch (Exception e) {
+            log.warn("Redirect table unavailable at {}, falling back to the database: {}", directory, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        MappedRedirectTable current = table;
+        if (current != null) {
+            table = null;
+            current.close();
+        }
+    }
+
+    public RedirectEntry get(String shortCode) {
+        MappedRedirectTable current = table;
+        if (current == null) {
+            return null;
+        }
+        // Changes made through this instance are put or removed straight away, so the max age only
+        // bounds how long a deactivation or deletion made on another instance can go unseen. It is
+        // capped at the redirects cache expiry so the table never widens that window
+        long maxAge = Math.min(maxAgeMinutes, redirectCacheExpireAfterWriteMinutes);
+        long minStoredAt = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(maxAge);
+        try {
+            return current.get(shortCode, minStoredAt);
+        } catch (Exception e) {
+            log.warn("Failed to read redirect entry for {}, using the database: {}", shortCode, e.getMessage());
+            return null;
+        }
+    }
+
+    public void put(RedirectEntry entry) {
+        MappedRedirectTable current = table;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.put(entry, System.currentTimeMillis());
+        } catch (Exception e) {
+            log.warn("Failed to store redirect entry for {}: {}", entry.getShortCode(), e.getMessage());
+        }
+    }
+
+    public void remove(String shortCode) {
+        MappedRedirectTable current = table;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.remove(shortCode);
+        } catch (Exception e) {
+            log.warn("Failed to remove redirect entry for {}: {}", shortCode, e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        MappedRedirectTable current = table;
+        stats.put("enabled", current != null);
+        if (current != null) {
+            stats.put("entries", current.size());
+            stats.put("capacity", current.capacity());
+            stats.put("dataBytesUsed", current.dataBytesUsed());
+            stats.put("dataBytesMapped", current.dataBytesMapped());
+        }
+        return stats;
+    }
+}
@@ -1,14 +1,22 @@
 package com.urlshortener.service;
 
+import com.urlshortener.model.RedirectEntry;
 import com.urlshortener.model.Url;
 import com.urlshortener.repository.UrlRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Slf4j
 @Service
@@ -16,26 +24,42 @@ import java.util.List;
 public class ScheduledTasks {
 
     private final UrlRepository urlRepository;
+    private final MongoTemplate mongoTemplate;
+    private final RedirectTableService redirectTableService;
+    private final UserDashboardService userDashboardService;
+    private final ClickRetentionService clickRetentionService;
 
     @Scheduled(cron = "0 0 * * * *")
     public void deactivateExpiredUrls() {
         log.info("Running scheduled task: Deactivating expired URLs");
 
         List<Url> expiredUrls = urlRepository.findExpiredUrls(LocalDateTime.now());
+        Set<String> affectedUsers = new HashSet<>();
 
         for (Url url : expiredUrls) {
             url.setActive(false);
-            urlRepository.save(url);
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(url.getId())),
+                    Update.update("isActive", false), Url.class);
+            redirectTableService.put(RedirectEntry.fromUrl(url));
+            affectedUsers.add(url.getUserId());
             log.debug("Deactivated expired URL: {}", url.getShortCode());
         }
+        affectedUsers.forEach(userDashboardService::onUrlsExpired);
 
         if (!expiredUrls.isEmpty()) {
             log.info("Deactivated {} expired URLs", expiredUrls.size());
         }
     }
 
+    // Retiring a backlog of days can take hours, so it must not hold the scheduler thread
+    @Async("maintenanceExecutor")
     @Scheduled(cron = "0 0 0 * * MON")
     public void weeklyCleanup() {
         log.info("Running weekly cleanup task");
+        try {
+            clickRetentionService.run();
+        } catch (Exception e) {
+            log.warn("Click retention stopped, it resumes from its checkpoint on the next run: {}", e.getMessage());
+        }
     }
 }
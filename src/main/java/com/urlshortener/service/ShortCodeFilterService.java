@@ -0,0 +1,220 @@
+package com.urlshortener.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.urlshortener.model.Url;
+import com.urlshortener.util.CountingBloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class ShortCodeFilterService {
+
+    private static final long ID_OVERLAP_SECONDS = 60;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final double falsePositiveRate;
+    private final long minimumExpectedInsertions;
+
+    private final Cache<String, Boolean> recentMisses;
+    private final Cache<String, Boolean> recentlyAdded;
+
+    private volatile CountingBloomFilter filter;
+    private volatile CountingBloomFilter building;
+    private volatile ObjectId lastSeenId;
+    // Ids inside the overlap window that refresh has already applied; the scan returns them
+    // again until lastSeenId moves on, however long that takes
+    private final NavigableSet<ObjectId> windowIds = new TreeSet<>();
+
+    public ShortCodeFilterService(
+            MongoTemplate mongoTemplate,
+            @Value("${app.short-code-filter.enabled:true}") boolean enabled,
+            @Value("${app.short-code-filter.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${app.short-code-filter.expected-insertions:1000000}") long minimumExpectedInsertions,
+            @Value("${app.short-code-filter.negative-cache-size:10000}") long negativeCacheSize,
+            @Value("${app.short-code-filter.negative-cache-ttl-seconds:60}") long negativeCacheTtlSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.falsePositiveRate = falsePositiveRate;
+        this.minimumExpectedInsertions = minimumExpectedInsertions;
+        this.recentMisses = Caffeine.newBuilder()
+                .maximumSize(negativeCacheSize)
+                .expireAfterWrite(negativeCacheTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        this.recentlyAdded = Caffeine.newBuilder()
+                .expireAfterWrite(ID_OVERLAP_SECONDS * 2, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    public boolean mightExist(String shortCode) {
+        if (recentMisses.getIfPresent(shortCode) != null) {
+            return false;
+        }
+        CountingBloomFilter current = filter;
+        return current == null || current.mightContain(shortCode);
+    }
+
+    public void recordMiss(String shortCode) {
+        recentMisses.put(shortCode, Boolean.TRUE);
+    }
+
+    public void add(String shortCode) {
+        recentMisses.invalidate(shortCode);
+        recentlyAdded.put(shortCode, Boolean.TRUE);
+
+        CountingBloomFilter current = filter;
+        if (current != null) {
+            current.add(shortCode);
+        }
+        CountingBloomFilter next = building;
+        if (next != null) {
+            next.add(shortCode);
+        }
+    }
+
+    /**
+     * Call only after the url document was actually deleted. Decrementing a code the filter
+     * never counted would zero counters shared with live codes and turn them into false 404s.
+     */
+    public synchronized void remove(String id, String shortCode) {
+        // A filter that is still being built may not contain the code yet; decrementing it
+        // there could zero a counter shared with a live code, so removals only hit the live one
+        CountingBloomFilter current = filter;
+        if (current != null && isCounted(id, shortCode)) {
+            current.remove(shortCode);
+        }
+    }
+
+    // Codes created here are added straight away; codes from other instances only once refresh has seen their id
+    private boolean isCounted(String id, String shortCode) {
+        if (recentlyAdded.getIfPresent(shortCode) != null || !ObjectId.isValid(id)) {
+            return true;
+        }
+        ObjectId objectId = new ObjectId(id);
+        return windowIds.contains(objectId)
+                || (lastSeenId != null && objectId.compareTo(windowStart(lastSeenId)) <= 0);
+    }
+
+    public synchronized Map<String, Object> rebuild() {
+        long startedAt = System.currentTimeMillis();
+        long expected = Math.max(minimumExpectedInsertions,
+                mongoTemplate.estimatedCount(Url.class) * 2);
+        CountingBloomFilter next = CountingBloomFilter.create(expected, falsePositiveRate);
+        building = next;
+
+        try {
+            Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id")).cursorBatchSize(1000);
+            query.fields().include("shortCode");
+
+            long count = 0;
+            ObjectId maxId = null;
+            Deque<ObjectId> tail = new ArrayDeque<>();
+            try (Stream<Url> urls = mongoTemplate.stream(query, Url.class)) {
+                for (Url url : (Iterable<Url>) urls::iterator) {
+                    next.add(url.getShortCode());
+                    maxId = new ObjectId(url.getId());
+                    tail.addLast(maxId);
+                    ObjectId windowStart = windowStart(maxId);
+                    while (tail.peekFirst().compareTo(windowStart) <= 0) {
+                        tail.pollFirst();
+                    }
+                    count++;
+                }
+            }
+
+            filter = next;
+            lastSeenId = maxId;
+            windowIds.clear();
+            windowIds.addAll(tail);
+            recentMisses.invalidateAll();
+            log.info("Short code filter built with {} codes in {} ms", count, System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            log.warn("Failed to build short code filter: {}", e.getMessage());
+        } finally {
+            building = null;
+        }
+        return getStats();
+    }
+
+    @Scheduled(fixedDelayString = "${app.short-code-filter.refresh-interval-ms:5000}")
+    public synchronized void refresh() {
+        CountingBloomFilter current = filter;
+        if (current == null) {
+            return;
+        }
+
+        // Catch up on codes created by other instances. ObjectIds are only roughly ordered
+        // across processes, so the scan overlaps the last minute and skips ids it already saw.
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id")).cursorBatchSize(1000);
+        if (lastSeenId != null) {
+            ObjectId windowStart = windowStart(lastSeenId);
+            windowIds.headSet(windowStart, true).clear();
+            query.addCriteria(Criteria.where("_id").gt(windowStart));
+        }
+        query.fields().include("shortCode");
+
+        try (Stream<Url> urls = mongoTemplate.stream(query, Url.class)) {
+            for (Url url : (Iterable<Url>) urls::iterator) {
+                ObjectId id = new ObjectId(url.getId());
+                if (lastSeenId == null || id.compareTo(lastSeenId) > 0) {
+                    lastSeenId = id;
+                }
+                // Codes this instance created were added already; only their ids need recording
+                if (windowIds.add(id) && recentlyAdded.asMap().remove(url.getShortCode()) == null) {
+                    add(url.getShortCode());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to refresh short code filter: {}", e.getMessage());
+        }
+    }
+
+    private static ObjectId windowStart(ObjectId id) {
+        long from = id.getDate().getTime() - TimeUnit.SECONDS.toMillis(ID_OVERLAP_SECONDS);
+        return new ObjectId(new Date(from), 0);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        CountingBloomFilter current = filter;
+        stats.put("enabled", enabled);
+        stats.put("ready", current != null);
+        if (current != null) {
+            stats.put("expectedInsertions", current.getExpectedInsertions());
+            stats.put("falsePositiveRate", current.getFalsePositiveRate());
+            stats.put("counters", current.getNumCounters());
+            stats.put("hashFunctions", current.getNumHashes());
+            stats.put("memoryBytes", current.getMemoryBytes());
+        }
+        stats.put("recentMisses", recentMisses.estimatedSize());
+        return stats;
+    }
+}
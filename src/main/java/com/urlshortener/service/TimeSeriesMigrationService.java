@@ -0,0 +1,279 @@
+package com.urlshortener.service;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import com.urlshortener.exception.BadRequestException;
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.repository.ClickEventCodec;
+import com.urlshortener.repository.ClickEventStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+/**
+ * One-shot copy of the standard click_events collection into the time-series collection.
+ * The source _id range is cut into chunks by ObjectId creation time and the chunks are
+ * copied on a worker pool in the background; progress is read back through the status.
+ * Each chunk checkpoints its last copied _id, so an interrupted run resumes where it
+ * stopped. Time-series collections have no unique _id, so the last _id of a batch is
+ * recorded before it is inserted; on resume, events up to that _id that already reached
+ * the target are skipped instead of being inserted a second time.
+ */
+@Slf4j
+@Service
+public class TimeSeriesMigrationService {
+
+    private static final String CHECKPOINT_COLLECTION = "click_events_ts_migration";
+
+    private final MongoTemplate mongoTemplate;
+    private final ClickEventCodec clickEventCodec;
+    private final ClickEventStorage clickEventStorage;
+    private final Executor executor;
+    private final int chunks;
+    private final int batchSize;
+
+    private CompletableFuture<Void> run;
+    private volatile Map<String, Object> lastRun;
+
+    public TimeSeriesMigrationService(MongoTemplate mongoTemplate,
+                                      ClickEventCodec clickEventCodec,
+                                      ClickEventStorage clickEventStorage,
+                                      @Qualifier("clickMigrationExecutor") Executor executor,
+                                      @Value("${app.click-events.time-series.migration.chunks:64}") int chunks,
+                                      @Value("${app.click-events.time-series.migration.batch-size:1000}") int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.clickEventCodec = clickEventCodec;
+        this.clickEventStorage = clickEventStorage;
+        this.executor = executor;
+        this.chunks = chunks;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Starts copying the chunks that are not done yet and returns without waiting; a call
+     * while a run is in progress only returns the status.
+     */
+    public synchronized Map<String, Object> migrate() {
+        if (!clickEventStorage.isTimeSeries()) {
+            throw new BadRequestException("Click events are not stored in the time-series collection");
+        }
+        if (isRunning()) {
+            return getStatus();
+        }
+        long started = System.currentTimeMillis();
+        List<Document> plan = loadOrCreatePlan();
+        List<CompletableFuture<Long>> copies = new ArrayList<>();
+        for (Document chunk : plan) {
+            if (!chunk.getBoolean("done", false)) {
+                copies.add(CompletableFuture.supplyAsync(() -> copyChunk(chunk), executor));
+            }
+        }
+        run = CompletableFuture.allOf(copies.toArray(CompletableFuture[]::new))
+                .whenComplete((ignored, error) -> finishRun(copies, started, error));
+        return getStatus();
+    }
+
+    public synchronized boolean isRunning() {
+        return run != null && !run.isDone();
+    }
+
+    public Map<String, Object> getStatus() {
+        List<Document> plan = mongoTemplate.findAll(Document.class, CHECKPOINT_COLLECTION);
+        long copied = 0;
+        int done = 0;
+        for (Document chunk : plan) {
+            copied += chunk.get("copied", 0L);
+            done += chunk.getBoolean("done", false) ? 1 : 0;
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("chunks", plan.size());
+        status.put("chunksDone", done);
+        status.put("copied", copied);
+        status.put("running", isRunning());
+        if (lastRun != null) {
+            status.put("lastRun", lastRun);
+        }
+        return status;
+    }
+
+    private void finishRun(List<CompletableFuture<Long>> copies, long started, Throwable error) {
+        long copied = 0;
+        for (CompletableFuture<Long> copy : copies) {
+            if (!copy.isCompletedExceptionally()) {
+                copied += copy.join();
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("chunks", copies.size());
+        result.put("copied", copied);
+        result.put("elapsedMs", System.currentTimeMillis() - started);
+        if (error != null) {
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            result.put("error", cause.getMessage());
+            log.error("Time-series migration stopped after copying {} click events, rerun to resume: {}",
+                    copied, cause.getMessage());
+        } else {
+            log.info("Copied {} click events into {} in {} chunks", copied,
+                    ClickEventStorage.TIME_SERIES_COLLECTION, copies.size());
+        }
+        lastRun = result;
+    }
+
+    // The last chunk is open-ended so events written by instances not yet switched over
+    // are still picked up by a later run
+    private List<Document> loadOrCreatePlan() {
+        List<Document> plan = mongoTemplate.find(new Query().with(Sort.by("_id")), Document.class, CHECKPOINT_COLLECTION);
+        if (!plan.isEmpty()) {
+            return plan;
+        }
+        ObjectId first = boundaryId(Sort.Direction.ASC);
+        ObjectId last = boundaryId(Sort.Direction.DESC);
+        if (first == null || last == null) {
+            return plan;
+        }
+        long from = first.getTimestamp() & 0xFFFFFFFFL;
+        long span = Math.max(1, ((last.getTimestamp() & 0xFFFFFFFFL) - from + chunks) / chunks);
+        for (int i = 0; i < chunks; i++) {
+            Document chunk = new Document("_id", i)
+                    .append("from", minIdAt(from + i * span))
+                    .append("to", i == chunks - 1 ? null : minIdAt(from + (i + 1) * span))
+                    .append("copied", 0L)
+                    .append("done", false);
+            plan.add(chunk);
+        }
+        mongoTemplate.insert(plan, CHECKPOINT_COLLECTION);
+        return plan;
+    }
+
+    private long copyChunk(Document chunk) {
+        Object chunkId = chunk.get("_id");
+        ObjectId lastId = chunk.getObjectId("lastId");
+        Criteria range = lastId != null
+                ? Criteria.where("_id").gt(lastId)
+                : Criteria.where("_id").gte(chunk.getObjectId("from"));
+        ObjectId to = chunk.getObjectId("to");
+        if (to != null) {
+            range = range.lt(to);
+        }
+        // Set when the previous run stopped between inserting a batch and checkpointing it
+        ObjectId inFlightTo = chunk.getObjectId("inFlightTo");
+        Query query = Query.query(range).with(Sort.by("_id"));
+        query.cursorBatchSize(batchSize);
+
+        MongoCollection<Document> target = mongoTemplate.getCollection(ClickEventStorage.TIME_SERIES_COLLECTION);
+        long copied = 0;
+        List<Document> batch = new ArrayList<>(batchSize);
+        try (Stream<Document> source = mongoTemplate.stream(query, Document.class, ClickEventStorage.STANDARD_COLLECTION)) {
+            for (Document document : (Iterable<Document>) source::iterator) {
+                batch.add(document);
+                if (batch.size() == batchSize) {
+                    copied += copyBatch(chunkId, batch, target, inFlightTo);
+                    inFlightTo = pastInFlight(batch, inFlightTo);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            copied += copyBatch(chunkId, batch, target, inFlightTo);
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(chunkId)),
+                new Update().set("done", to != null), CHECKPOINT_COLLECTION);
+        return copied;
+    }
+
+    private int copyBatch(Object chunkId, List<Document> batch, MongoCollection<Document> target, ObjectId inFlightTo) {
+        List<ClickEvent> events = new ArrayList<>(batch.size());
+        for (Document document : batch) {
+            events.add(clickEventCodec.fromDocument(document));
+        }
+        clickEventCodec.prepare(events);
+        List<Document> converted = new ArrayList<>(events.size());
+        for (ClickEvent event : events) {
+            if (event.getTimestamp() != null) {
+                converted.add(clickEventCodec.toDocument(event));
+            }
+        }
+        Object batchLastId = batch.get(batch.size() - 1).get("_id");
+        Query checkpoint = Query.query(Criteria.where("_id").is(chunkId));
+        List<Document> missing = inFlightTo != null && ((ObjectId) batch.get(0).get("_id")).compareTo(inFlightTo) <= 0
+                ? withoutCopied(converted, target)
+                : converted;
+        if (!missing.isEmpty()) {
+            mongoTemplate.updateFirst(checkpoint, new Update().set("inFlightTo", batchLastId), CHECKPOINT_COLLECTION);
+            target.insertMany(missing, new InsertManyOptions().ordered(false));
+        }
+        mongoTemplate.updateFirst(checkpoint,
+                new Update().set("lastId", batchLastId).unset("inFlightTo").inc("copied", (long) converted.size()),
+                CHECKPOINT_COLLECTION);
+        return converted.size();
+    }
+
+    // Looked up by _id within the batch's own timestamp range, so only the matching buckets are read
+    private List<Document> withoutCopied(List<Document> converted, MongoCollection<Document> target) {
+        if (converted.isEmpty()) {
+            return converted;
+        }
+        List<Object> ids = new ArrayList<>(converted.size());
+        Date from = null;
+        Date to = null;
+        for (Document document : converted) {
+            ids.add(document.get("_id"));
+            Date timestamp = document.getDate("timestamp");
+            from = from == null || timestamp.before(from) ? timestamp : from;
+            to = to == null || timestamp.after(to) ? timestamp : to;
+        }
+        Set<Object> present = new HashSet<>();
+        Document filter = new Document("timestamp", new Document("$gte", from).append("$lte", to))
+                .append("_id", new Document("$in", ids));
+        for (Document document : target.find(filter).projection(new Document("_id", 1)).into(new ArrayList<>())) {
+            present.add(document.get("_id"));
+        }
+        if (present.isEmpty()) {
+            return converted;
+        }
+        List<Document> missing = new ArrayList<>(converted.size() - present.size());
+        for (Document document : converted) {
+            if (!present.contains(document.get("_id"))) {
+                missing.add(document);
+            }
+        }
+        log.info("Skipped {} click events already copied before the migration was interrupted", present.size());
+        return missing;
+    }
+
+    private static ObjectId pastInFlight(List<Document> batch, ObjectId inFlightTo) {
+        return inFlightTo != null && ((ObjectId) batch.get(batch.size() - 1).get("_id")).compareTo(inFlightTo) < 0
+                ? inFlightTo
+                : null;
+    }
+
+    private ObjectId boundaryId(Sort.Direction direction) {
+        Query query = new Query().with(Sort.by(direction, "_id")).limit(1);
+        query.fields().include("_id");
+        Document document = mongoTemplate.findOne(query, Document.class, ClickEventStorage.STANDARD_COLLECTION);
+        return document != null ? document.getObjectId("_id") : null;
+    }
+
+    private static ObjectId minIdAt(long epochSecond) {
+        return new ObjectId(String.format("%08x%016x", epochSecond, 0L));
+    }
+}
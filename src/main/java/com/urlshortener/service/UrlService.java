@@ -9,6 +9,7 @@ import com.urlshortener.exception.DuplicateResourceException;
 import com.urlshortener.exception.ForbiddenException;
 import com.urlshortener.exception.ResourceNotFoundException;
 import com.urlshortener.exception.UrlExpiredException;
+import com.urlshortener.model.RedirectEntry;
 import com.urlshortener.model.Url;
 import com.urlshortener.model.User;
 import com.urlshortener.repository.UrlRepository;
@@ -22,6 +23,10 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -35,10 +40,15 @@ import java.util.List;
 public class UrlService {
 
     private final UrlRepository urlRepository;
+    private final MongoTemplate mongoTemplate;
     private final ShortCodeGenerator shortCodeGenerator;
     private final QrCodeService qrCodeService;
     private final PasswordEncoder passwordEncoder;
     private final UserService userService;
+    private final ClickCounterService clickCounterService;
+    private final ShortCodeFilterService shortCodeFilterService;
+    private final RedirectTableService redirectTableService;
+    private final UserDashboardService userDashboardService;
 
     @Value("${app.base-url}")
     private String baseUrl;
@@ -87,13 +97,16 @@ public class UrlService {
         }
 
         Url savedUrl = urlRepository.save(url);
+        shortCodeFilterService.add(shortCode);
 
         if (request.isGenerateQrCode()) {
             String qrPath = qrCodeService.generateQrCode(baseUrl + "/r/" + shortCode, shortCode);
             savedUrl.setQrCodePath(qrPath);
-            savedUrl = urlRepository.save(savedUrl);
+            updateFields(savedUrl, new Update().set("qrCodePath", qrPath));
         }
 
+        redirectTableService.put(RedirectEntry.fromUrl(savedUrl));
+        userDashboardService.onUrlCreated(savedUrl);
         log.info("URL created: {} -> {} by user: {}", shortCode, request.getOriginalUrl(), userEmail);
         return UrlResponse.fromUrl(savedUrl, baseUrl);
     }
@@ -135,12 +148,8 @@ public class UrlService {
         return url.isPasswordProtected();
     }
 
-    @CacheEvict(value = "urls", key = "#shortCode")
-    @Transactional
     public void incrementClickCount(String shortCode) {
-        Url url = findByShortCode(shortCode);
-        url.incrementClickCount();
-        urlRepository.save(url);
+        clickCounterService.increment(shortCode);
     }
 
     public PageResponse<UrlResponse> getUserUrls(String userEmail, int page, int size,
@@ -169,56 +178,85 @@ public class UrlService {
         return PageResponse.from(responsePage);
     }
 
-    @CacheEvict(value = "urls", key = "#shortCode")
+    @CacheEvict(value = {"urls", "redirects"}, key = "#shortCode")
     @Transactional
     public UrlResponse updateUrl(String shortCode, UpdateUrlRequest request, String userEmail) {
         Url url = findByShortCode(shortCode);
         validateOwnership(url, userEmail);
 
+        Update update = new Update();
         if (request.getOriginalUrl() != null && !request.getOriginalUrl().isBlank()) {
             url.setOriginalUrl(request.getOriginalUrl());
+            update.set("originalUrl", url.getOriginalUrl());
         }
         if (request.getTitle() != null) {
             url.setTitle(request.getTitle());
+            update.set("title", url.getTitle());
         }
         if (request.getDescription() != null) {
             url.setDescription(request.getDescription());
+            update.set("description", url.getDescription());
         }
         if (request.getTags() != null) {
             url.setTags(request.getTags());
+            update.set("tags", url.getTags());
         }
         if (request.getExpiresAt() != null) {
             url.setExpiresAt(request.getExpiresAt());
+            update.set("expiresAt", url.getExpiresAt());
         }
         if (request.getIsActive() != null) {
             url.setActive(request.getIsActive());
-        }
-        if (request.getPassword() != null && !request.getPassword().isBlank()) {
-            url.setPassword(passwordEncoder.encode(request.getPassword()));
-            url.setPasswordProtected(true);
+            update.set("isActive", url.isActive());
         }
         if (Boolean.TRUE.equals(request.getRemovePassword())) {
             url.setPassword(null);
             url.setPasswordProtected(false);
+            update.unset("password").set("isPasswordProtected", false);
+        } else if (request.getPassword() != null && !request.getPassword().isBlank()) {
+            url.setPassword(passwordEncoder.encode(request.getPassword()));
+            url.setPasswordProtected(true);
+            update.set("password", url.getPassword()).set("isPasswordProtected", true);
         }
 
-        url.setUpdatedAt(LocalDateTime.now());
-        Url updatedUrl = urlRepository.save(url);
+        updateFields(url, update);
+        redirectTableService.put(RedirectEntry.fromUrl(url));
+        userDashboardService.onUrlChanged(url);
 
         log.info("URL updated: {} by user: {}", shortCode, userEmail);
-        return UrlResponse.fromUrl(updatedUrl, baseUrl);
+        return UrlResponse.fromUrl(url, baseUrl);
     }
 
-    @CacheEvict(value = "urls", key = "#shortCode")
+    @CacheEvict(value = {"urls", "redirects"}, key = "#shortCode")
     @Transactional
     public void deleteUrl(String shortCode, String userEmail) {
         Url url = findByShortCode(shortCode);
         validateOwnership(url, userEmail);
 
-        urlRepository.delete(url);
+        removeUrl(url);
         log.info("URL deleted: {} by user: {}", shortCode, userEmail);
     }
 
+    @CacheEvict(value = {"urls", "redirects"}, key = "#shortCode")
+    @Transactional
+    public void deleteUrlAsAdmin(String shortCode) {
+        Url url = findByShortCode(shortCode);
+        removeUrl(url);
+        log.info("URL deleted: {} by admin", shortCode);
+    }
+
+    private void removeUrl(Url url) {
+        // A stale cached url or a concurrent delete finds nothing left to remove, and must not
+        // decrement filter counters a second time
+        long deleted = mongoTemplate.remove(Query.query(Criteria.where("_id").is(url.getId())), Url.class)
+                .getDeletedCount();
+        if (deleted == 1) {
+            shortCodeFilterService.remove(url.getId(), url.getShortCode());
+        }
+        redirectTableService.remove(url.getShortCode());
+        userDashboardService.onUrlChanged(url);
+    }
+
     public UrlResponse generateQrCode(String shortCode, String userEmail) {
         Url url = findByShortCode(shortCode);
         validateOwnership(url, userEmail);
@@ -226,13 +264,19 @@ public class UrlService {
         if (url.getQrCodePath() == null) {
             String qrPath = qrCodeService.generateQrCode(baseUrl + "/r/" + shortCode, shortCode);
             url.setQrCodePath(qrPath);
-            url.setUpdatedAt(LocalDateTime.now());
-            url = urlRepository.save(url);
+            updateFields(url, new Update().set("qrCodePath", qrPath));
         }
 
         return UrlResponse.fromUrl(url, baseUrl);
     }
 
+    // Only the changed fields are written, so a concurrent $inc of clickCount is never replaced
+    private void updateFields(Url url, Update update) {
+        url.setUpdatedAt(LocalDateTime.now());
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(url.getId())),
+                update.set("updatedAt", url.getUpdatedAt()), Url.class);
+    }
+
     private void validateOwnership(Url url, String userEmail) {
         User user = userService.findByEmail(userEmail);
         if (!url.getUserId().equals(user.getId())) {
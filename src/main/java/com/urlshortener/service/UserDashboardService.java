@@ -0,0 +1,251 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.model.ClickRollup;
+import com.urlshortener.model.Url;
+import com.urlshortener.model.UserDashboard;
+import com.urlshortener.repository.UrlRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps one {@link UserDashboard} document per user so the dashboard is a single lookup.
+ * Clicks and url lifecycle events update it in place; a background sweep recomputes each
+ * document from urls and click rollups in turn, which repairs any drift from races or
+ * failed updates.
+ */
+@Slf4j
+@Service
+public class UserDashboardService implements ClickBatchListener {
+
+    public static final int LIST_SIZE = 5;
+    public static final int HISTORY_DAYS = 30;
+
+    private final MongoTemplate mongoTemplate;
+    private final UrlRepository urlRepository;
+    private final ClickRollupService clickRollupService;
+    private final int reconcileBatchSize;
+
+    public UserDashboardService(MongoTemplate mongoTemplate,
+                                UrlRepository urlRepository,
+                                ClickRollupService clickRollupService,
+                                @Value("${app.user-dashboard.reconcile-batch-size:100}") int reconcileBatchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.urlRepository = urlRepository;
+        this.clickRollupService = clickRollupService;
+        this.reconcileBatchSize = reconcileBatchSize;
+    }
+
+    public UserDashboard getDashboard(String userId) {
+        UserDashboard dashboard = mongoTemplate.findById(userId, UserDashboard.class);
+        return dashboard != null ? dashboard : reconcile(userId);
+    }
+
+    public void onUrlCreated(Url url) {
+        Update update = new Update()
+                .inc("totalUrls", 1)
+                .inc("activeUrls", url.isActive() ? 1 : 0)
+                .inc("expiredUrls", url.isExpired() ? 1 : 0)
+                .set("updatedAt", LocalDateTime.now());
+        update.push("recentUrls")
+                .sort(Sort.by(Sort.Direction.DESC, "createdAt"))
+                .slice(LIST_SIZE)
+                .each(UserDashboard.UrlSnapshot.fromUrl(url));
+        apply(url.getUserId(), update);
+    }
+
+    /**
+     * Edits and deletes can move a url in or out of either list, so the url half of the
+     * document is recomputed; these are rare next to clicks and creates.
+     */
+    public void onUrlChanged(Url url) {
+        refreshUrlState(url.getUserId());
+    }
+
+    /**
+     * Called once per user by the expiry sweep. The counts are recomputed with the same
+     * queries as the unmaterialized dashboard, so a url already counted as expired when it
+     * was created, or deactivated by hand before it expired, is not counted twice.
+     */
+    public void onUrlsExpired(String userId) {
+        refreshUrlState(userId);
+    }
+
+    private void refreshUrlState(String userId) {
+        if (userId == null) {
+            return;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Update update = loadUrlState(userId, now).toUpdate().set("updatedAt", now);
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(userId)), update, UserDashboard.class);
+        } catch (Exception e) {
+            log.warn("Failed to refresh dashboard for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onBatch(List<ClickEvent> events) {
+        Map<String, ClickDelta> deltas = new HashMap<>();
+        for (ClickEvent event : events) {
+            if (event.getUserId() == null || event.getTimestamp() == null) {
+                continue;
+            }
+            deltas.computeIfAbsent(event.getUserId(), userId -> new ClickDelta()).add(event);
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        // No upserts: a user without a document gets one built from rollups on first read
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserDashboard.class);
+        deltas.forEach((userId, delta) ->
+                ops.updateOne(Query.query(Criteria.where("_id").is(userId)), delta.toUpdate(now)));
+        ops.execute();
+    }
+
+    @Scheduled(fixedDelayString = "${app.user-dashboard.reconcile-interval-ms:300000}")
+    public void reconcileOldest() {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "reconciledAt")).limit(reconcileBatchSize);
+        query.fields().include("_id");
+        int reconciled = 0;
+        for (UserDashboard dashboard : mongoTemplate.find(query, UserDashboard.class)) {
+            try {
+                reconcile(dashboard.getId());
+                reconciled++;
+            } catch (Exception e) {
+                log.warn("Failed to reconcile dashboard for user {}: {}", dashboard.getId(), e.getMessage());
+            }
+        }
+        if (reconciled > 0) {
+            log.debug("Reconciled {} user dashboards", reconciled);
+        }
+    }
+
+    /**
+     * Rebuilds the document from source. Click increments landing between the reads and the
+     * save are lost until the next pass, which the sweep bounds to one reconcile interval.
+     */
+    public UserDashboard reconcile(String userId) {
+        LocalDateTime now = LocalDateTime.now();
+        UrlState urls = loadUrlState(userId, now);
+
+        UserDashboard dashboard = UserDashboard.builder()
+                .id(userId)
+                .totalUrls(urls.totalUrls)
+                .activeUrls(urls.activeUrls)
+                .expiredUrls(urls.expiredUrls)
+                .recentUrls(urls.recentUrls)
+                .topPerformingUrls(urls.topPerformingUrls)
+                .totalClicks(clickRollupService.getTotalClicksForUser(userId))
+                .clicksByDay(new TreeMap<>(clickRollupService.getClicksByDate("userId", userId, now.minusDays(HISTORY_DAYS), now)))
+                .reconciledAt(now)
+                .updatedAt(now)
+                .build();
+        return mongoTemplate.save(dashboard);
+    }
+
+    public void deleteAll() {
+        mongoTemplate.remove(new Query(), UserDashboard.class);
+    }
+
+    private void apply(String userId, Update update) {
+        if (userId == null) {
+            return;
+        }
+        try {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(userId)), update, UserDashboard.class);
+        } catch (Exception e) {
+            log.warn("Failed to update dashboard for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private UrlState loadUrlState(String userId, LocalDateTime now) {
+        Long expired = urlRepository.countByUserIdAndExpired(userId, now);
+        return new UrlState(
+                urlRepository.countByUserId(userId),
+                urlRepository.countByUserIdAndIsActive(userId, true),
+                expired != null ? expired : 0L,
+                toSnapshots(urlRepository.findTop5ByUserIdOrderByCreatedAtDesc(userId)),
+                toSnapshots(urlRepository.findTop5ByUserIdOrderByClickCountDesc(userId)));
+    }
+
+    private static List<UserDashboard.UrlSnapshot> toSnapshots(List<Url> urls) {
+        return urls.stream().map(UserDashboard.UrlSnapshot::fromUrl).collect(Collectors.toList());
+    }
+
+    private static final class UrlState {
+
+        private final long totalUrls;
+        private final long activeUrls;
+        private final long expiredUrls;
+        private final List<UserDashboard.UrlSnapshot> recentUrls;
+        private final List<UserDashboard.UrlSnapshot> topPerformingUrls;
+
+        private UrlState(long totalUrls, long activeUrls, long expiredUrls,
+                         List<UserDashboard.UrlSnapshot> recentUrls, List<UserDashboard.UrlSnapshot> topPerformingUrls) {
+            this.totalUrls = totalUrls;
+            this.activeUrls = activeUrls;
+            this.expiredUrls = expiredUrls;
+            this.recentUrls = recentUrls;
+            this.topPerformingUrls = topPerformingUrls;
+        }
+
+        private Update toUpdate() {
+            return new Update()
+                    .set("totalUrls", totalUrls)
+                    .set("activeUrls", activeUrls)
+                    .set("expiredUrls", expiredUrls)
+                    .set("recentUrls", recentUrls)
+                    .set("topPerformingUrls", topPerformingUrls);
+        }
+    }
+
+    private static final class ClickDelta {
+
+        private long totalClicks;
+        private final Map<String, Long> days = new HashMap<>();
+        private final Map<String, Long> urls = new HashMap<>();
+
+        private void add(ClickEvent event) {
+            totalClicks++;
+            days.merge(ClickRollup.dayBucket(ClickRollup.toUtc(event.getTimestamp())), 1L, Long::sum);
+            if (event.getUrlId() != null) {
+                urls.merge(event.getUrlId(), 1L, Long::sum);
+            }
+        }
+
+        private Update toUpdate(LocalDateTime now) {
+            Update update = new Update()
+                    .inc("totalClicks", totalClicks)
+                    .set("updatedAt", now);
+            days.forEach((day, clicks) -> update.inc("clicksByDay." + day, clicks));
+
+            // Bumps the listed urls in place; a url climbing into the top list waits for the reconciler
+            int index = 0;
+            for (Map.Entry<String, Long> url : urls.entrySet()) {
+                String filter = "u" + index++;
+                update.inc("recentUrls.$[" + filter + "].clickCount", url.getValue())
+                        .inc("topPerformingUrls.$[" + filter + "].clickCount", url.getValue())
+                        .filterArray(Criteria.where(filter + ".urlId").is(url.getKey()));
+            }
+            return update;
+        }
+    }
+}
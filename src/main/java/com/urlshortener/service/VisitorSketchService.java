@@ -0,0 +1,168 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.model.ClickRollup;
+import com.urlshortener.util.Hashing;
+import com.urlshortener.util.HyperLogLog;
+import com.urlshortener.util.RollupQueryPlanner;
+import com.urlshortener.util.VersionedUpsert;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VisitorSketchService implements ClickBatchListener {
+
+    public static final int PRECISION = 12;
+
+    private final MongoTemplate mongoTemplate;
+    private final ClickRollupService clickRollupService;
+
+    private final ConcurrentHashMap<String, PendingSketch> pending = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isRebuiltFromHistory() {
+        return true;
+    }
+
+    @Override
+    public void onBatch(List<ClickEvent> events) {
+        for (ClickEvent event : events) {
+            if (event.getUrlId() == null || event.getIpAddress() == null || event.getTimestamp() == null) {
+                continue;
+            }
+            long hash = Hashing.hash64(event.getIpAddress());
+            LocalDateTime utc = ClickRollup.toUtc(event.getTimestamp());
+            if (clickRollupService.retains(ClickRollup.Granularity.DAY, utc)) {
+                offer(event, ClickRollup.Granularity.DAY, ClickRollup.dayBucket(utc), hash);
+            }
+            offer(event, ClickRollup.Granularity.MONTH, ClickRollup.bucketFor(ClickRollup.Granularity.MONTH, utc), hash);
+            offer(event, ClickRollup.Granularity.TOTAL, ClickRollup.TOTAL_BUCKET, hash);
+        }
+    }
+
+    public HyperLogLog getLifetimeSketch(String urlId) {
+        String id = ClickRollup.idFor(urlId, ClickRollup.Granularity.TOTAL, ClickRollup.TOTAL_BUCKET);
+        Query query = Query.query(Criteria.where("_id").is(id));
+        query.fields().include("visitorSketch");
+        return mergeWithPending(mongoTemplate.find(query, ClickRollup.class), List.of(id));
+    }
+
+    /**
+     * Whole months in the range merge one month sketch each, so a year costs about a dozen
+     * sketches plus the edge days rather than 365.
+     */
+    public HyperLogLog getSketchForRange(String urlId, LocalDateTime start, LocalDateTime end) {
+        List<RollupQueryPlanner.Segment> segments =
+                clickRollupService.plan(start, end, ClickRollup.Granularity.DAY, ClickRollup.Granularity.MONTH);
+        List<ClickRollup> rollups = clickRollupService.findSegments("urlId", urlId, segments, "visitorSketch");
+
+        List<String> pendingIds = pending.values().stream()
+                .filter(sketch -> sketch.urlId.equals(urlId) && segments.stream().anyMatch(segment ->
+                        segment.getGranularity() == sketch.granularity && segment.contains(sketch.bucket)))
+                .map(sketch -> ClickRollup.idFor(sketch.urlId, sketch.granularity, sketch.bucket))
+                .toList();
+        return mergeWithPending(rollups, pendingIds);
+    }
+
+    @Scheduled(fixedDelayString = "${app.visitor-sketch.flush-interval-ms:10000}")
+    public void flush() {
+        for (String id : pending.keySet()) {
+            PendingSketch sketch = pending.remove(id);
+            if (sketch == null) {
+                continue;
+            }
+            try {
+                mergeIntoRollup(id, sketch);
+            } catch (Exception e) {
+                log.warn("Failed to flush visitor sketch {}: {}", id, e.getMessage());
+                pending.merge(id, sketch, (current, failed) -> {
+                    current.sketch.merge(failed.sketch);
+                    return current;
+                });
+            }
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        flush();
+    }
+
+    private void offer(ClickEvent event, ClickRollup.Granularity granularity, String bucket, long hash) {
+        pending.compute(ClickRollup.idFor(event.getUrlId(), granularity, bucket), (id, sketch) -> {
+            if (sketch == null) {
+                sketch = new PendingSketch(event.getUrlId(), event.getUserId(), granularity, bucket);
+            }
+            sketch.sketch.offer(hash);
+            return sketch;
+        });
+    }
+
+    private HyperLogLog mergeWithPending(List<ClickRollup> rollups, List<String> pendingIds) {
+        HyperLogLog merged = new HyperLogLog(PRECISION);
+        for (ClickRollup rollup : rollups) {
+            if (rollup.getVisitorSketch() != null) {
+                merged.merge(HyperLogLog.fromBytes(rollup.getVisitorSketch()));
+            }
+        }
+        for (String id : pendingIds) {
+            pending.computeIfPresent(id, (key, sketch) -> {
+                merged.merge(sketch.sketch);
+                return sketch;
+            });
+        }
+        return merged;
+    }
+
+    private void mergeIntoRollup(String id, PendingSketch pendingSketch) {
+        VersionedUpsert.merge(mongoTemplate, ClickRollup.class, id, "visitorSketchVersion",
+                () -> {
+                    Query current = Query.query(Criteria.where("_id").is(id));
+                    current.fields().include("visitorSketch", "visitorSketchVersion");
+                    return mongoTemplate.findOne(current, ClickRollup.class);
+                },
+                ClickRollup::getVisitorSketchVersion,
+                (existing, version) -> {
+                    HyperLogLog merged = new HyperLogLog(PRECISION);
+                    merged.merge(pendingSketch.sketch);
+                    if (existing != null && existing.getVisitorSketch() != null) {
+                        merged.merge(HyperLogLog.fromBytes(existing.getVisitorSketch()));
+                    }
+                    return new Update()
+                            .set("visitorSketch", merged.toBytes())
+                            .setOnInsert("urlId", pendingSketch.urlId)
+                            .setOnInsert("userId", pendingSketch.userId)
+                            .setOnInsert("granularity", pendingSketch.granularity)
+                            .setOnInsert("bucket", pendingSketch.bucket);
+                });
+    }
+
+    private static final class PendingSketch {
+
+        private final String urlId;
+        private final String userId;
+        private final ClickRollup.Granularity granularity;
+        private final String bucket;
+        private final HyperLogLog sketch = new HyperLogLog(PRECISION);
+
+        private PendingSketch(String urlId, String userId, ClickRollup.Granularity granularity, String bucket) {
+            this.urlId = urlId;
+            this.userId = userId;
+            this.granularity = granularity;
+            this.bucket = bucket;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickRollup;
+import com.urlshortener.model.RedirectEntry;
+import com.urlshortener.model.Url;
+import com.urlshortener.repository.ClickEventRepository;
+import com.urlshortener.repository.UrlRepository;
+import com.urlshortener.util.Hashing;
+import com.urlshortener.util.HyperLogLog;
+import com.urlshortener.util.JwtUtil;
+import com.urlshortener.util.MongoKeys;
+import com.urlshortener.util.SpaceSaving;
+import com.urlshortener.util.UserAgentParser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WarmupService {
+
+    private static final String WARMUP_SUBJECT = "warmup@urlshortener.local";
+
+    private static final List<String> SAMPLE_USER_AGENTS = List.of(
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 17_1 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.1 Mobile/15E148 Safari/604.1",
+            "Mozilla/5.0 (Linux; Android 14; Pixel 8) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Mobile Safari/537.36",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.1 Safari/605.1.15",
+            "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)"
+    );
+
+    private final UrlRepository urlRepository;
+    private final ClickEventRepository clickEventRepository;
+    private final RedirectService redirectService;
+    private final RedirectTableService redirectTableService;
+    private final CacheManager cacheManager;
+    private final JwtUtil jwtUtil;
+    private final UserAgentParser userAgentParser;
+    private final ClickRollupService clickRollupService;
+
+    @Value("${app.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.warmup.top-n:1000}")
+    private int topN;
+
+    @Value("${app.warmup.recent-hours:24}")
+    private int recentHours;
+
+    @Value("${app.warmup.jit-iterations:10000}")
+    private int jitIterations;
+
+    @Value("${app.warmup.time-budget-seconds:60}")
+    private long timeBudgetSeconds;
+
+    private volatile boolean complete;
+    private volatile String phase = "pending";
+
+    public boolean isComplete() {
+        return complete || !enabled;
+    }
+
+    public String getPhase() {
+        return enabled ? phase : "disabled";
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+
+        Thread thread = new Thread(this::runWarmup, "Warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void runWarmup() {
+        long startedAt = System.currentTimeMillis();
+        long deadline = startedAt + TimeUnit.SECONDS.toMillis(timeBudgetSeconds);
+        List<String> warmedCodes = new ArrayList<>();
+
+        try {
+            phase = "cache";
+            warmedCodes.addAll(preloadTopUrls());
+            if (System.currentTimeMillis() < deadline) {
+                warmedCodes.addAll(preloadRecentlyClickedUrls());
+            }
+
+            phase = "jit";
+            int iterations = warmCodePaths(warmedCodes, deadline);
+
+            log.info("Warm-up finished in {} ms: {} URLs cached, {} code path iterations",
+                    System.currentTimeMillis() - startedAt, warmedCodes.size(), iterations);
+        } catch (Exception e) {
+            log.warn("Warm-up aborted, continuing cold: {}", e.getMessage());
+        } finally {
+            phase = "complete";
+            complete = true;
+        }
+    }
+
+    private List<String> preloadTopUrls() {
+        List<Url> urls = urlRepository.findByIsActiveOrderByClickCountDesc(true, PageRequest.of(0, topN));
+        return cacheUrls(urls);
+    }
+
+    private List<String> preloadRecentlyClickedUrls() {
+        List<String> urlIds = clickEventRepository
+                .getTopUrlsSince(LocalDateTime.now().minusHours(recentHours), topN)
+                .stream()
+                .map(ClickEventRepository.FieldCount::get_id)
+                .filter(Objects::nonNull)
+                .map(Object::toString)
+                .collect(Collectors.toList());
+        return cacheUrls(urlRepository.findAllById(urlIds));
+    }
+
+    private List<String> cacheUrls(Iterable<Url> urls) {
+        Cache urlCache = cacheManager.getCache("urls");
+        Cache redirectCache = cacheManager.getCache("redirects");
+        List<String> shortCodes = new ArrayList<>();
+
+        for (Url url : urls) {
+            RedirectEntry entry = RedirectEntry.fromUrl(url);
+            if (urlCache != null) {
+                urlCache.put(url.getShortCode(), url);
+            }
+            if (redirectCache != null) {
+                redirectCache.put(url.getShortCode(), entry);
+            }
+            redirectTableService.put(entry);
+            shortCodes.add(url.getShortCode());
+        }
+        return shortCodes;
+    }
+
+    private int warmCodePaths(List<String> shortCodes, long deadline) {
+        HyperLogLog visitors = new HyperLogLog(VisitorSketchService.PRECISION);
+        SpaceSaving browsers = new SpaceSaving(64);
+        int iterations = 0;
+        while (iterations < jitIterations && System.currentTimeMillis() < deadline) {
+            if (!shortCodes.isEmpty()) {
+                RedirectEntry entry = redirectService.resolve(shortCodes.get(iterations % shortCodes.size()));
+                if (entry.isActive() && !entry.isExpired(System.currentTimeMillis())) {
+                    redirectService.ensureRedirectable(entry);
+                }
+            }
+
+            String token = jwtUtil.generateToken(WARMUP_SUBJECT);
+            if (jwtUtil.validateToken(token)) {
+                jwtUtil.extractEmail(token);
+            }
+
+            UserAgentParser.ParsedUserAgent parsedUA =
+                    userAgentParser.parseUncached(SAMPLE_USER_AGENTS.get(iterations % SAMPLE_USER_AGENTS.size()));
+            warmAnalyticsPath(iterations, parsedUA, visitors, browsers);
+            iterations++;
+        }
+        return iterations;
+    }
+
+    // The in-memory half of a rollup analytics read; the Mongo fetches are left to real traffic
+    private void warmAnalyticsPath(int iteration, UserAgentParser.ParsedUserAgent parsedUA,
+                                   HyperLogLog visitors, SpaceSaving browsers) {
+        LocalDateTime end = LocalDateTime.now();
+        clickRollupService.plan(end.minusDays(1 + iteration % 365), end,
+                ClickRollup.Granularity.MINUTE, ClickRollup.Granularity.MONTH);
+
+        HyperLogLog sketch = new HyperLogLog(VisitorSketchService.PRECISION);
+        sketch.offer(Hashing.hash64(Integer.toString(iteration)));
+        visitors.merge(HyperLogLog.fromBytes(sketch.toBytes()));
+        visitors.cardinality();
+
+        SpaceSaving delta = new SpaceSaving(64);
+        delta.offer(MongoKeys.decode(MongoKeys.encode(parsedUA.getBrowser())));
+        browsers.merge(SpaceSaving.of(64, delta.counters()));
+        browsers.top(10);
+    }
+}
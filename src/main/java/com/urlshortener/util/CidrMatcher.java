@@ -0,0 +1,81 @@
+package com.urlshortener.util;
+
+/**
+ * Binary radix tree of CIDR blocks, one tree per address family. A lookup walks at most one
+ * node per prefix bit and stops at the first block that contains the address.
+ */
+public final class CidrMatcher {
+
+    /**
+     * Special-purpose ranges from the IANA IPv4 and IPv6 registries that never carry public
+     * client traffic: private, loopback, link-local, shared CGNAT space, documentation,
+     * benchmarking, multicast and reserved blocks.
+     */
+    public static final CidrMatcher RESERVED = new CidrMatcher(
+            "0.0.0.0/8", "10.0.0.0/8", "100.64.0.0/10", "127.0.0.0/8", "169.254.0.0/16", "172.16.0.0/12",
+            "192.0.0.0/24", "192.0.2.0/24", "192.168.0.0/16", "198.18.0.0/15", "198.51.100.0/24",
+            "203.0.113.0/24", "224.0.0.0/4", "240.0.0.0/4",
+            "::/128", "::1/128", "100::/64", "2001:db8::/32", "fc00::/7", "fe80::/10", "ff00::/8");
+
+    private final Node v4 = new Node();
+    private final Node v6 = new Node();
+
+    public CidrMatcher(String... blocks) {
+        for (String block : blocks) {
+            add(block);
+        }
+    }
+
+    private void add(String block) {
+        int slash = block.indexOf('/');
+        byte[] network = IpAddresses.parse(slash >= 0 ? block.substring(0, slash) : block);
+        if (network == null) {
+            throw new IllegalArgumentException("Invalid CIDR block: " + block);
+        }
+        int bits = network.length * 8;
+        int prefix = slash >= 0 ? Integer.parseInt(block.substring(slash + 1)) : bits;
+        if (prefix < 0 || prefix > bits) {
+            throw new IllegalArgumentException("Invalid CIDR prefix length: " + block);
+        }
+
+        Node node = network.length == 4 ? v4 : v6;
+        for (int i = 0; i < prefix && !node.terminal; i++) {
+            node = bit(network, i) == 0
+                    ? (node.zero != null ? node.zero : (node.zero = new Node()))
+                    : (node.one != null ? node.one : (node.one = new Node()));
+        }
+        node.terminal = true;
+    }
+
+    public boolean matches(String address) {
+        return matches(IpAddresses.parse(address));
+    }
+
+    public boolean matches(byte[] address) {
+        if (address == null) {
+            return false;
+        }
+        Node node = address.length == 4 ? v4 : v6;
+        int bits = address.length * 8;
+        for (int i = 0; node != null; i++) {
+            if (node.terminal) {
+                return true;
+            }
+            if (i == bits) {
+                return false;
+            }
+            node = bit(address, i) == 0 ? node.zero : node.one;
+        }
+        return false;
+    }
+
+    private static int bit(byte[] address, int index) {
+        return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+
+    private static final class Node {
+        private Node zero;
+        private Node one;
+        private boolean terminal;
+    }
+}
@@ -0,0 +1,310 @@
+package com.urlshortener.util;
+
+import lombok.Value;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of length-prefixed, CRC32-checked records spread over fixed-size
+ * memory-mapped segment files. A single reader consumes records from a checkpointed
+ * position; segments that lie wholly behind the checkpoint are deleted.
+ */
+public class ClickJournal implements Closeable {
+
+    private static final int MAGIC = 0x434A524E;
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int ROLL_MARKER = -1;
+    private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+    private static final String SEGMENT_PREFIX = "clicks-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    @Value
+    public static class Position {
+        long segmentId;
+        int offset;
+    }
+
+    @Value
+    public static class Batch {
+        List<byte[]> records;
+        Position next;
+        int corrupt;
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final ConcurrentSkipListMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+    private final CRC32 appendCrc = new CRC32();
+
+    private long writeSegmentId;
+    private MappedByteBuffer writeSegment;
+    private int writeOffset;
+    private volatile Position committed;
+    private volatile Position checkpoint;
+
+    private ClickJournal(Path directory, int segmentSize, int maxSegments) {
+        this.directory = directory;
+        this.segmentSize = Math.max(MIN_SEGMENT_SIZE, segmentSize);
+        this.maxSegments = Math.max(2, maxSegments);
+    }
+
+    public static ClickJournal open(Path directory, int segmentSize, int maxSegments) throws IOException {
+        Files.createDirectories(directory);
+        ClickJournal journal = new ClickJournal(directory, segmentSize, maxSegments);
+        journal.recover();
+        return journal;
+    }
+
+    public synchronized boolean append(byte[] payload) throws IOException {
+        int needed = RECORD_HEADER_SIZE + payload.length;
+        if (needed > segmentSize - SEGMENT_HEADER_SIZE - 4) {
+            throw new IllegalArgumentException("Journal record of " + payload.length + " bytes exceeds the segment size");
+        }
+        if (writeOffset + needed + 4 > writeSegment.capacity()) {
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            roll();
+        }
+
+        appendCrc.reset();
+        appendCrc.update(payload);
+        writeSegment.put(writeOffset + RECORD_HEADER_SIZE, payload);
+        writeSegment.putInt(writeOffset + 4, (int) appendCrc.getValue());
+        writeSegment.putInt(writeOffset, payload.length);
+        writeOffset += needed;
+        writeSegment.putInt(writeOffset, 0);
+
+        committed = new Position(writeSegmentId, writeOffset);
+        return true;
+    }
+
+    public Batch read(Position from, int maxRecords) {
+        List<byte[]> records = new ArrayList<>(Math.min(maxRecords, 1024));
+        Position end = committed;
+        CRC32 crc = new CRC32();
+        long segmentId = from.getSegmentId();
+        int offset = from.getOffset();
+        int corrupt = 0;
+
+        while (records.size() < maxRecords) {
+            if (segmentId > end.getSegmentId() || (segmentId == end.getSegmentId() && offset >= end.getOffset())) {
+                break;
+            }
+
+            MappedByteBuffer segment = segments.get(segmentId);
+            boolean sealed = segmentId < end.getSegmentId();
+            int limit = sealed ? segment != null ? segment.capacity() : 0 : end.getOffset();
+            int length = segment != null && offset + RECORD_HEADER_SIZE <= limit ? segment.getInt(offset) : ROLL_MARKER;
+
+            if (length <= 0 || offset + RECORD_HEADER_SIZE + length > limit) {
+                Long next = segments.higherKey(segmentId);
+                if (!sealed || next == null) {
+                    break;
+                }
+                segmentId = next;
+                offset = SEGMENT_HEADER_SIZE;
+                continue;
+            }
+
+            byte[] payload = new byte[length];
+            segment.get(offset + RECORD_HEADER_SIZE, payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() == segment.getInt(offset + 4)) {
+                records.add(payload);
+            } else {
+                corrupt++;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+
+        return new Batch(records, new Position(segmentId, offset), corrupt);
+    }
+
+    public void commit(Position position) throws IOException {
+        writeCheckpoint(position);
+        checkpoint = position;
+
+        Iterator<Map.Entry<Long, MappedByteBuffer>> it = segments.headMap(position.getSegmentId()).entrySet().iterator();
+        while (it.hasNext()) {
+            long id = it.next().getKey();
+            it.remove();
+            Files.deleteIfExists(segmentPath(id));
+        }
+    }
+
+    public Position getCheckpoint() {
+        return checkpoint;
+    }
+
+    public long pendingBytes() {
+        Position from = checkpoint;
+        Position end = committed;
+        long pending = 0;
+        ConcurrentNavigableMap<Long, MappedByteBuffer> range =
+                segments.subMap(from.getSegmentId(), true, end.getSegmentId(), true);
+        for (Map.Entry<Long, MappedByteBuffer> entry : range.entrySet()) {
+            long id = entry.getKey();
+            int start = id == from.getSegmentId() ? from.getOffset() : SEGMENT_HEADER_SIZE;
+            int stop = id == end.getSegmentId() ? end.getOffset() : entry.getValue().capacity();
+            pending += Math.max(0, stop - start);
+        }
+        return pending;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public void force() {
+        Map.Entry<Long, MappedByteBuffer> last = segments.lastEntry();
+        if (last != null) {
+            last.getValue().force();
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+        segments.clear();
+    }
+
+    private void recover() throws IOException {
+        Position saved = readCheckpoint();
+
+        List<Long> ids;
+        try (Stream<Path> files = Files.list(directory)) {
+            ids = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+
+        for (long id : ids) {
+            if (saved != null && id < saved.getSegmentId()) {
+                Files.deleteIfExists(segmentPath(id));
+            } else {
+                segments.put(id, openSegment(id));
+            }
+        }
+
+        if (segments.isEmpty()) {
+            long id = saved != null ? saved.getSegmentId() + 1 : 0;
+            segments.put(id, createSegment(id));
+            saved = null;
+        }
+        if (saved == null || !segments.containsKey(saved.getSegmentId())) {
+            saved = new Position(segments.firstKey(), SEGMENT_HEADER_SIZE);
+        }
+        checkpoint = saved;
+
+        writeSegmentId = segments.lastKey();
+        writeSegment = segments.lastEntry().getValue();
+        writeOffset = scanEnd(writeSegment, writeSegmentId == saved.getSegmentId() ? saved.getOffset() : SEGMENT_HEADER_SIZE);
+        writeSegment.putInt(writeOffset, 0);
+        committed = new Position(writeSegmentId, writeOffset);
+    }
+
+    private int scanEnd(MappedByteBuffer segment, int offset) {
+        CRC32 crc = new CRC32();
+        while (offset + RECORD_HEADER_SIZE + 4 <= segment.capacity()) {
+            int length = segment.getInt(offset);
+            if (length <= 0 || offset + RECORD_HEADER_SIZE + length + 4 > segment.capacity()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            segment.get(offset + RECORD_HEADER_SIZE, payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != segment.getInt(offset + 4)) {
+                break;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    private void roll() throws IOException {
+        writeSegment.putInt(writeOffset, ROLL_MARKER);
+        writeSegment.force();
+
+        long id = writeSegmentId + 1;
+        MappedByteBuffer segment = createSegment(id);
+        segments.put(id, segment);
+        writeSegmentId = id;
+        writeSegment = segment;
+        writeOffset = SEGMENT_HEADER_SIZE;
+        committed = new Position(id, writeOffset);
+    }
+
+    private MappedByteBuffer createSegment(long id) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(id),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            segment.putInt(0, MAGIC);
+            segment.putInt(4, VERSION);
+            segment.putLong(8, id);
+            return segment;
+        }
+    }
+
+    private MappedByteBuffer openSegment(long id) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (segment.capacity() < MIN_SEGMENT_SIZE || segment.getInt(0) != MAGIC
+                    || segment.getInt(4) != VERSION || segment.getLong(8) != id) {
+                throw new IOException("Corrupt journal segment " + segmentPath(id));
+            }
+            return segment;
+        }
+    }
+
+    private Position readCheckpoint() throws IOException {
+        Path path = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() != 16 || buffer.getInt() != MAGIC) {
+            return null;
+        }
+        return new Position(buffer.getLong(), buffer.getInt());
+    }
+
+    private void writeCheckpoint(Position position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putInt(MAGIC).putLong(position.getSegmentId()).putInt(position.getOffset());
+
+        Path target = directory.resolve(CHECKPOINT_FILE);
+        Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.write(temp, buffer.array(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+}
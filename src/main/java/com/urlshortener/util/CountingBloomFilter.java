@@ -0,0 +1,119 @@
+package com.urlshortener.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter with 4-bit counters so that elements can be removed again.
+ * Counters saturate at 15 and are never decremented afterwards, which can only
+ * leave a false positive behind, never a false negative.
+ */
+public class CountingBloomFilter {
+
+    private static final int COUNTERS_PER_WORD = 16;
+    private static final long COUNTER_MASK = 0xFL;
+    private static final long MAX_COUNT = 15;
+
+    private final AtomicLongArray words;
+    private final long numCounters;
+    private final int numHashes;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    private CountingBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        this.expectedInsertions = Math.max(1, expectedInsertions);
+        this.falsePositiveRate = falsePositiveRate;
+
+        double ln2 = Math.log(2);
+        long counters = (long) Math.ceil(-this.expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.numCounters = Math.max(COUNTERS_PER_WORD, Math.min(counters, Integer.MAX_VALUE));
+        this.numHashes = Math.max(1, (int) Math.round((double) numCounters / this.expectedInsertions * ln2));
+        this.words = new AtomicLongArray((int) ((numCounters + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD));
+    }
+
+    public static CountingBloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        return new CountingBloomFilter(expectedInsertions, falsePositiveRate);
+    }
+
+    public void add(String value) {
+        long hash = Hashing.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            update(index(h1, h2, i), 1);
+        }
+    }
+
+    public void remove(String value) {
+        long hash = Hashing.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            update(index(h1, h2, i), -1);
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash = Hashing.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long index = index(h1, h2, i);
+            if (counterAt(words.get((int) (index / COUNTERS_PER_WORD)), index) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getNumCounters() {
+        return numCounters;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    public long getMemoryBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    private long index(int h1, int h2, int i) {
+        int combined = h1 + i * h2;
+        if (combined < 0) {
+            combined = ~combined;
+        }
+        return combined % numCounters;
+    }
+
+    private void update(long index, int delta) {
+        int wordIndex = (int) (index / COUNTERS_PER_WORD);
+        int shift = (int) (index % COUNTERS_PER_WORD) * 4;
+        while (true) {
+            long word = words.get(wordIndex);
+            long count = (word >>> shift) & COUNTER_MASK;
+            if (count == MAX_COUNT || (delta < 0 && count == 0)) {
+                return;
+            }
+            long updated = (word & ~(COUNTER_MASK << shift)) | ((count + delta) << shift);
+            if (words.compareAndSet(wordIndex, word, updated)) {
+                return;
+            }
+        }
+    }
+
+    private static long counterAt(long word, long index) {
+        int shift = (int) (index % COUNTERS_PER_WORD) * 4;
+        return (word >>> shift) & COUNTER_MASK;
+    }
+}
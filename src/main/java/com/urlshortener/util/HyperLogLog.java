@@ -0,0 +1,192 @@
+package com.urlshortener.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog cardinality sketch over 64-bit hashes with 2^precision registers. The
+ * relative standard error is 1.04 / sqrt(2^precision), about 1.6% at precision 12.
+ * Small sketches stay in a sparse list of register updates and are serialized in a
+ * sparse form, so a url with a handful of visitors costs bytes rather than kilobytes.
+ */
+public class HyperLogLog {
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+    private static final int HEADER_SIZE = 3;
+
+    private final int precision;
+    private final int registerCount;
+    private final int sparseLimit;
+
+    private byte[] registers;
+    private int[] sparse;
+    private int sparseSize;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precision must be between 4 and 16");
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+        this.sparseLimit = registerCount / 8;
+        this.sparse = new int[8];
+    }
+
+    public void offer(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        update(index, Long.numberOfLeadingZeros(remaining) + 1);
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of precision " + other.precision + " and " + precision);
+        }
+        if (other.registers != null) {
+            for (int i = 0; i < registerCount; i++) {
+                if (other.registers[i] != 0) {
+                    update(i, other.registers[i]);
+                }
+            }
+        } else {
+            for (int i = 0; i < other.sparseSize; i++) {
+                update(other.sparse[i] >>> 8, other.sparse[i] & 0xFF);
+            }
+        }
+    }
+
+    public long cardinality() {
+        byte[] values = registers != null ? registers : denseCopy();
+        double sum = 0;
+        int zeros = 0;
+        for (byte value : values) {
+            sum += 1.0 / (1L << value);
+            if (value == 0) {
+                zeros++;
+            }
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / registerCount);
+        double estimate = alpha * registerCount * (double) registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeros > 0) {
+            estimate = registerCount * Math.log((double) registerCount / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public double standardError() {
+        return 1.04 / Math.sqrt(registerCount);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public boolean isEmpty() {
+        if (registers == null) {
+            return sparseSize == 0;
+        }
+        for (byte value : registers) {
+            if (value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public byte[] toBytes() {
+        byte[] values = registers != null ? registers : denseCopy();
+        int nonZero = 0;
+        for (byte value : values) {
+            if (value != 0) {
+                nonZero++;
+            }
+        }
+
+        if (nonZero * 3 + 4 < registerCount) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 4 + nonZero * 3);
+            buffer.put(FORMAT_VERSION).put((byte) precision).put(SPARSE).putInt(nonZero);
+            for (int i = 0; i < registerCount; i++) {
+                if (values[i] != 0) {
+                    buffer.putShort((short) i).put(values[i]);
+                }
+            }
+            return buffer.array();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + registerCount);
+        buffer.put(FORMAT_VERSION).put((byte) precision).put(DENSE).put(values);
+        return buffer.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.remaining() < HEADER_SIZE || buffer.get() != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported HyperLogLog encoding");
+        }
+        HyperLogLog sketch = new HyperLogLog(buffer.get());
+        byte format = buffer.get();
+        if (format == DENSE) {
+            sketch.registers = new byte[sketch.registerCount];
+            buffer.get(sketch.registers);
+            sketch.sparse = null;
+        } else {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                sketch.update(buffer.getShort() & 0xFFFF, buffer.get());
+            }
+        }
+        return sketch;
+    }
+
+    private void update(int index, int rank) {
+        if (registers != null) {
+            if (registers[index] < rank) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+
+        if (sparseSize == sparse.length) {
+            compactSparse();
+        }
+        if (sparseSize == sparse.length) {
+            if (sparseSize >= sparseLimit) {
+                registers = denseCopy();
+                sparse = null;
+                sparseSize = 0;
+                update(index, rank);
+                return;
+            }
+            sparse = Arrays.copyOf(sparse, Math.min(sparse.length * 2, sparseLimit));
+        }
+        sparse[sparseSize++] = index << 8 | rank;
+    }
+
+    private void compactSparse() {
+        // Entries sort by index then rank, so the last entry of each index holds its maximum
+        Arrays.sort(sparse, 0, sparseSize);
+        int size = 0;
+        for (int i = 0; i < sparseSize; i++) {
+            if (i + 1 < sparseSize && sparse[i + 1] >>> 8 == sparse[i] >>> 8) {
+                continue;
+            }
+            sparse[size++] = sparse[i];
+        }
+        sparseSize = size;
+    }
+
+    private byte[] denseCopy() {
+        byte[] values = new byte[registerCount];
+        for (int i = 0; i < sparseSize; i++) {
+            int index = sparse[i] >>> 8;
+            int rank = sparse[i] & 0xFF;
+            if (values[index] < rank) {
+                values[index] = (byte) rank;
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,84 @@
+package com.urlshortener.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+public final class IpAddresses {
+
+    private IpAddresses() {
+    }
+
+    /**
+     * Parses a literal IPv4 or IPv6 address without ever falling back to a DNS lookup.
+     * Returns null for anything that is not an address literal.
+     */
+    public static byte[] parse(String address) {
+        if (address == null || address.isEmpty()) {
+            return null;
+        }
+        if (address.indexOf(':') >= 0) {
+            return parseIPv6(address);
+        }
+        return parseIPv4(address);
+    }
+
+    public static String format(byte[] address) {
+        if (address == null) {
+            return null;
+        }
+        try {
+            return InetAddress.getByAddress(address).getHostAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static byte[] parseIPv4(String address) {
+        byte[] bytes = new byte[4];
+        int octet = 0;
+        int value = 0;
+        int digits = 0;
+
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return null;
+                }
+            } else if (c == '.' && digits > 0 && octet < 3) {
+                bytes[octet++] = (byte) value;
+                value = 0;
+                digits = 0;
+            } else {
+                return null;
+            }
+        }
+
+        if (octet != 3 || digits == 0) {
+            return null;
+        }
+        bytes[3] = (byte) value;
+        return bytes;
+    }
+
+    private static byte[] parseIPv6(String address) {
+        String literal = address;
+        if (literal.startsWith("[") && literal.endsWith("]")) {
+            literal = literal.substring(1, literal.length() - 1);
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            boolean valid = Character.digit(c, 16) >= 0 || c == ':' || c == '.' || c == '%';
+            if (!valid) {
+                return null;
+            }
+        }
+        try {
+            // A string containing ':' is only ever treated as an IPv6 literal, never resolved
+            return InetAddress.getByName(literal).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.urlshortener.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable table of non-overlapping IP ranges. IPv4 ranges are kept in sorted int arrays
+ * and IPv6 ranges in pairs of long arrays, all compared unsigned, so a lookup is a single
+ * binary search over primitives. Equal values are stored once and referenced by index.
+ */
+public final class IpRangeTable<V> {
+
+    private final int[] v4Starts;
+    private final int[] v4Ends;
+    private final int[] v4Values;
+    private final long[] v6StartHigh;
+    private final long[] v6StartLow;
+    private final long[] v6EndHigh;
+    private final long[] v6EndLow;
+    private final int[] v6Values;
+    private final Object[] values;
+
+    private IpRangeTable(Builder<V> builder) {
+        Integer[] v4Order = sortedOrder(builder.v4.size(), (a, b) ->
+                Integer.compareUnsigned(builder.v4.get(a)[0], builder.v4.get(b)[0]));
+        v4Starts = new int[v4Order.length];
+        v4Ends = new int[v4Order.length];
+        v4Values = new int[v4Order.length];
+        for (int i = 0; i < v4Order.length; i++) {
+            int[] range = builder.v4.get(v4Order[i]);
+            v4Starts[i] = range[0];
+            v4Ends[i] = range[1];
+            v4Values[i] = range[2];
+            if (i > 0 && Integer.compareUnsigned(v4Starts[i], v4Ends[i - 1]) <= 0) {
+                throw new IllegalArgumentException("Overlapping IPv4 ranges at " + Integer.toUnsignedString(v4Starts[i]));
+            }
+        }
+
+        Integer[] v6Order = sortedOrder(builder.v6.size(), (a, b) ->
+                compare(builder.v6.get(a)[0], builder.v6.get(a)[1], builder.v6.get(b)[0], builder.v6.get(b)[1]));
+        v6StartHigh = new long[v6Order.length];
+        v6StartLow = new long[v6Order.length];
+        v6EndHigh = new long[v6Order.length];
+        v6EndLow = new long[v6Order.length];
+        v6Values = new int[v6Order.length];
+        for (int i = 0; i < v6Order.length; i++) {
+            long[] range = builder.v6.get(v6Order[i]);
+            v6StartHigh[i] = range[0];
+            v6StartLow[i] = range[1];
+            v6EndHigh[i] = range[2];
+            v6EndLow[i] = range[3];
+            v6Values[i] = (int) range[4];
+            if (i > 0 && compare(v6StartHigh[i], v6StartLow[i], v6EndHigh[i - 1], v6EndLow[i - 1]) <= 0) {
+                throw new IllegalArgumentException("Overlapping IPv6 ranges at range " + i);
+            }
+        }
+        values = builder.values.toArray();
+    }
+
+    public static <V> Builder<V> builder() {
+        return new Builder<>();
+    }
+
+    public V lookup(String address) {
+        return lookup(IpAddresses.parse(address));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V lookup(byte[] address) {
+        if (address == null) {
+            return null;
+        }
+        if (address.length == 4) {
+            int ip = toInt(address);
+            int low = 0;
+            int high = v4Starts.length - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (Integer.compareUnsigned(v4Starts[mid], ip) <= 0) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found >= 0 && Integer.compareUnsigned(ip, v4Ends[found]) <= 0 ? (V) values[v4Values[found]] : null;
+        }
+        if (address.length == 16) {
+            long ipHigh = toLong(address, 0);
+            long ipLow = toLong(address, 8);
+            int low = 0;
+            int high = v6StartHigh.length - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (compare(v6StartHigh[mid], v6StartLow[mid], ipHigh, ipLow) <= 0) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found >= 0 && compare(ipHigh, ipLow, v6EndHigh[found], v6EndLow[found]) <= 0
+                    ? (V) values[v6Values[found]]
+                    : null;
+        }
+        return null;
+    }
+
+    public int size() {
+        return v4Starts.length + v6StartHigh.length;
+    }
+
+    public int distinctValues() {
+        return values.length;
+    }
+
+    public long sizeBytes() {
+        return 12L * v4Starts.length + 36L * v6StartHigh.length;
+    }
+
+    private static int compare(long highA, long lowA, long highB, long lowB) {
+        int high = Long.compareUnsigned(highA, highB);
+        return high != 0 ? high : Long.compareUnsigned(lowA, lowB);
+    }
+
+    private static Integer[] sortedOrder(int size, Comparator<Integer> comparator) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, comparator);
+        return order;
+    }
+
+    private static int toInt(byte[] address) {
+        return (address[0] & 0xFF) << 24 | (address[1] & 0xFF) << 16 | (address[2] & 0xFF) << 8 | (address[3] & 0xFF);
+    }
+
+    private static long toLong(byte[] address, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = value << 8 | (address[i] & 0xFF);
+        }
+        return value;
+    }
+
+    public static final class Builder<V> {
+
+        private final List<int[]> v4 = new ArrayList<>();
+        private final List<long[]> v6 = new ArrayList<>();
+        private final List<V> values = new ArrayList<>();
+        private final Map<V, Integer> valueIndexes = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds an inclusive range; both ends must be of the same family.
+         */
+        public Builder<V> add(byte[] start, byte[] end, V value) {
+            if (start == null || end == null || start.length != end.length) {
+                throw new IllegalArgumentException("Range ends must be addresses of the same family");
+            }
+            int index = valueIndexes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+            if (start.length == 4) {
+                int first = toInt(start);
+                int last = toInt(end);
+                if (Integer.compareUnsigned(first, last) > 0) {
+                    throw new IllegalArgumentException("Range start is after its end");
+                }
+                v4.add(new int[]{first, last, index});
+            } else {
+                long[] range = {toLong(start, 0), toLong(start, 8), toLong(end, 0), toLong(end, 8), index};
+                if (compare(range[0], range[1], range[2], range[3]) > 0) {
+                    throw new IllegalArgumentException("Range start is after its end");
+                }
+                v6.add(range);
+            }
+            return this;
+        }
+
+        public IpRangeTable<V> build() {
+            return new IpRangeTable<>(this);
+        }
+    }
+}
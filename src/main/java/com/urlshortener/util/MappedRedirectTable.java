@@ -0,0 +1,541 @@
+package com.urlshortener.util;
+
+import com.urlshortener.model.RedirectEntry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Off-heap open-addressing hash table from short code to redirect entry, backed by two
+ * memory-mapped files: an index of (hash, record offset) slots and an append-only data
+ * file of records. Updates append a new record and repoint the slot; the data file is
+ * compacted when it runs out of room. Compaction writes a fresh pair of files stamped with
+ * a new generation and swaps them in; a pair whose generations disagree after a crash is
+ * discarded on open, since the table only mirrors the database. The data file is mapped at
+ * a small size and remapped in doubling steps up to the configured maximum, and superseded
+ * mappings are released straight away rather than left to the garbage collector.
+ */
+public class MappedRedirectTable implements Closeable {
+
+    private static final int MAGIC = 0x52445442;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 16;
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+    private static final double MAX_LOAD_FACTOR = 0.7;
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final int INITIAL_DATA_BYTES = 1 << 20;
+
+    private static final int FLAG_ACTIVE = 1;
+    private static final int FLAG_PASSWORD_PROTECTED = 2;
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;  // mappings are then released when their buffers are collected
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final Path indexPath;
+    private final Path dataPath;
+    private final int maxDataBytes;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private MappedByteBuffer index;
+    private MappedByteBuffer data;
+    private int capacity;
+    private int size;
+    private int tombstones;
+    private long writePosition;
+    private long generation;
+    private boolean closed;
+
+    private MappedRedirectTable(Path directory, int initialCapacity, long maxDataBytes) throws IOException {
+        this.indexPath = directory.resolve("redirects.idx");
+        this.dataPath = directory.resolve("redirects.dat");
+        this.maxDataBytes = (int) Math.min(maxDataBytes, Integer.MAX_VALUE - 8);
+
+        Files.createDirectories(directory);
+        if (Files.exists(indexPath) && Files.exists(dataPath) && load()) {
+            return;
+        }
+
+        this.capacity = Integer.highestOneBit(Math.max(1024, Math.min(initialCapacity, MAX_CAPACITY)) - 1) << 1;
+        this.generation = 0;
+        this.index = createIndex(indexPath, capacity, generation);
+        this.data = createData(dataPath, generation, Math.min(INITIAL_DATA_BYTES, this.maxDataBytes));
+        this.size = 0;
+        this.tombstones = 0;
+        this.writePosition = HEADER_SIZE;
+        writeIndexHeader();
+        data.putLong(8, writePosition);
+    }
+
+    public static MappedRedirectTable open(Path directory, int initialCapacity, long maxDataBytes) throws IOException {
+        return new MappedRedirectTable(directory, initialCapacity, maxDataBytes);
+    }
+
+    public RedirectEntry get(String shortCode, long minStoredAtMillis) {
+        long hash = Hashing.hash64(shortCode);
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                return null;
+            }
+            int slot = findSlot(shortCode, hash);
+            if (slot < 0) {
+                return null;
+            }
+            int offset = (int) index.getLong(slotPosition(slot) + 8);
+            if (data.getLong(offset + 13) < minStoredAtMillis) {
+                return null;
+            }
+            return readEntry(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(RedirectEntry entry, long storedAtMillis) throws IOException {
+        byte[] record = encode(entry, storedAtMillis);
+        long hash = Hashing.hash64(entry.getShortCode());
+
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                throw new IOException("Redirect table is closed");
+            }
+            if (writePosition + record.length > maxDataBytes) {
+                compact();
+                if (writePosition + record.length > maxDataBytes) {
+                    throw new IOException("Redirect table data file is full");
+                }
+            }
+            ensureDataCapacity(writePosition + record.length);
+            int slot = findSlot(entry.getShortCode(), hash);
+            if (slot < 0 && size + tombstones + 1 > capacity * MAX_LOAD_FACTOR) {
+                if (size + 1 > capacity * MAX_LOAD_FACTOR && capacity >= MAX_CAPACITY) {
+                    throw new IOException("Redirect table index is full");
+                }
+                resize(size + 1 > capacity * MAX_LOAD_FACTOR / 2 ? Math.min(capacity << 1, MAX_CAPACITY) : capacity);
+            }
+            int insertAt = slot < 0 ? insertionSlot(hash) : slot;
+
+            int offset = (int) writePosition;
+            data.put(offset, record);
+            writePosition += record.length;
+            data.putLong(8, writePosition);
+
+            if (slot < 0) {
+                slot = insertAt;
+                if (index.getLong(slotPosition(slot) + 8) == TOMBSTONE) {
+                    tombstones--;
+                }
+                size++;
+                index.putLong(slotPosition(slot), hash);
+            }
+            index.putLong(slotPosition(slot) + 8, offset);
+            writeIndexHeader();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(String shortCode) {
+        long hash = Hashing.hash64(shortCode);
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            int slot = findSlot(shortCode, hash);
+            if (slot < 0) {
+                return false;
+            }
+            index.putLong(slotPosition(slot) + 8, TOMBSTONE);
+            size--;
+            tombstones++;
+            writeIndexHeader();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int capacity() {
+        lock.readLock().lock();
+        try {
+            return capacity;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long dataBytesUsed() {
+        lock.readLock().lock();
+        try {
+            return writePosition;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long dataBytesMapped() {
+        lock.readLock().lock();
+        try {
+            return closed ? 0 : data.capacity();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void force() {
+        lock.writeLock().lock();
+        try {
+            if (!closed) {
+                index.force();
+                data.force();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            index.force();
+            data.force();
+            closed = true;
+            unmap(index);
+            unmap(data);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean load() throws IOException {
+        MappedByteBuffer loadedIndex;
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            loadedIndex = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        int loadedCapacity = loadedIndex.capacity() >= HEADER_SIZE ? loadedIndex.getInt(8) : 0;
+        if (loadedIndex.capacity() < HEADER_SIZE || loadedIndex.getInt(0) != MAGIC || loadedIndex.getInt(4) != VERSION
+                || loadedIndex.capacity() != HEADER_SIZE + (long) loadedCapacity * SLOT_SIZE) {
+            unmap(loadedIndex);
+            return false;
+        }
+
+        MappedByteBuffer loadedData;
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                unmap(loadedIndex);
+                return false;
+            }
+            loadedData = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(channel.size(), maxDataBytes));
+        }
+        long loadedWritePosition = loadedData.getLong(8);
+        // A crash between the two renames of a compaction leaves files from different generations
+        if (loadedData.getInt(0) != MAGIC || loadedWritePosition < HEADER_SIZE
+                || loadedWritePosition > loadedData.capacity() || loadedData.getLong(16) != loadedIndex.getLong(20)) {
+            unmap(loadedIndex);
+            unmap(loadedData);
+            return false;
+        }
+
+        this.index = loadedIndex;
+        this.data = loadedData;
+        this.capacity = loadedCapacity;
+        this.size = loadedIndex.getInt(12);
+        this.tombstones = loadedIndex.getInt(16);
+        this.writePosition = loadedWritePosition;
+        this.generation = loadedData.getLong(16);
+        return true;
+    }
+
+    private int findSlot(String shortCode, long hash) {
+        int mask = capacity - 1;
+        int slot = (int) hash & mask;
+        for (int probes = 0; probes < capacity; probes++) {
+            int position = slotPosition(slot);
+            long offset = index.getLong(position + 8);
+            if (offset == EMPTY) {
+                return -1;
+            }
+            if (offset != TOMBSTONE && index.getLong(position) == hash && keyMatches((int) offset, shortCode)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int insertionSlot(long hash) throws IOException {
+        int mask = capacity - 1;
+        int slot = (int) hash & mask;
+        for (int probes = 0; probes < capacity; probes++) {
+            long offset = index.getLong(slotPosition(slot) + 8);
+            if (offset == EMPTY || offset == TOMBSTONE) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        throw new IOException("Redirect table index is full");
+    }
+
+    private void resize(int newCapacity) throws IOException {
+        Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        MappedByteBuffer newIndex = createIndex(tempPath, newCapacity, generation);
+
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slotPosition(slot);
+            long offset = index.getLong(position + 8);
+            if (offset != EMPTY && offset != TOMBSTONE) {
+                place(newIndex, newCapacity, index.getLong(position), offset);
+            }
+        }
+
+        newIndex.force();
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        unmap(index);
+        this.index = newIndex;
+        this.capacity = newCapacity;
+        this.tombstones = 0;
+        writeIndexHeader();
+    }
+
+    private void compact() throws IOException {
+        long newGeneration = generation + 1;
+        Path tempDataPath = dataPath.resolveSibling(dataPath.getFileName() + ".tmp");
+        Path tempIndexPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        MappedByteBuffer newData = createData(tempDataPath, newGeneration, data.capacity());
+        MappedByteBuffer newIndex = createIndex(tempIndexPath, capacity, newGeneration);
+        int newWritePosition = HEADER_SIZE;
+        byte[] buffer = new byte[4096];
+
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slotPosition(slot);
+            long offset = index.getLong(position + 8);
+            if (offset == EMPTY || offset == TOMBSTONE) {
+                continue;
+            }
+            int length = data.getInt((int) offset);
+            if (buffer.length < length) {
+                buffer = new byte[length];
+            }
+            data.get((int) offset, buffer, 0, length);
+            newData.put(newWritePosition, buffer, 0, length);
+            place(newIndex, capacity, index.getLong(position), newWritePosition);
+            newWritePosition += length;
+        }
+
+        newData.putLong(8, newWritePosition);
+        newIndex.putInt(12, size);
+        newData.force();
+        newIndex.force();
+        Files.move(tempDataPath, dataPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(tempIndexPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        unmap(data);
+        unmap(index);
+        this.data = newData;
+        this.index = newIndex;
+        this.generation = newGeneration;
+        this.writePosition = newWritePosition;
+        this.tombstones = 0;
+        writeIndexHeader();
+    }
+
+    private void ensureDataCapacity(long required) throws IOException {
+        if (required <= data.capacity()) {
+            return;
+        }
+        long newSize = data.capacity();
+        while (newSize < required) {
+            newSize = Math.min(newSize << 1, maxDataBytes);
+        }
+        data.force();
+        MappedByteBuffer grown;
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            grown = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+        }
+        unmap(data);
+        this.data = grown;
+    }
+
+    private static void place(MappedByteBuffer target, int slots, long hash, long offset) {
+        int mask = slots - 1;
+        int slot = (int) hash & mask;
+        while (target.getLong(slotPosition(slot) + 8) != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        target.putLong(slotPosition(slot), hash);
+        target.putLong(slotPosition(slot) + 8, offset);
+    }
+
+    private MappedByteBuffer createIndex(Path path, int slots, long generation) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * SLOT_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, slots);
+            buffer.putLong(20, generation);
+            return buffer;
+        }
+    }
+
+    private static MappedByteBuffer createData(Path path, long generation, long bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, HEADER_SIZE);
+            buffer.putLong(16, generation);
+            return buffer;
+        }
+    }
+
+    private void writeIndexHeader() {
+        index.putInt(8, capacity);
+        index.putInt(12, size);
+        index.putInt(16, tombstones);
+    }
+
+    private static int slotPosition(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // Record layout: length(4) flags(1) expiresAt(8) storedAt(8) shortCode targetUrl urlId userId,
+    // each string as a 4-byte length followed by UTF-8 bytes (-1 for null)
+    private static byte[] encode(RedirectEntry entry, long storedAtMillis) {
+        byte[][] strings = {
+                bytes(entry.getShortCode()), bytes(entry.getTargetUrl()),
+                bytes(entry.getUrlId()), bytes(entry.getUserId())
+        };
+        int length = 4 + 1 + 8 + 8;
+        for (byte[] string : strings) {
+            length += 4 + (string != null ? string.length : 0);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(length);
+        int flags = (entry.isActive() ? FLAG_ACTIVE : 0) | (entry.isPasswordProtected() ? FLAG_PASSWORD_PROTECTED : 0);
+        buffer.put((byte) flags);
+        buffer.putLong(entry.getExpiresAtMillis());
+        buffer.putLong(storedAtMillis);
+        for (byte[] string : strings) {
+            if (string == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(string.length);
+                buffer.put(string);
+            }
+        }
+        return buffer.array();
+    }
+
+    private boolean keyMatches(int offset, String shortCode) {
+        for (int i = 0; i < shortCode.length(); i++) {
+            if (shortCode.charAt(i) > 0x7F) {
+                return shortCode.equals(readString(offset + 21));
+            }
+        }
+        if (data.getInt(offset + 21) != shortCode.length()) {
+            return false;
+        }
+        for (int i = 0; i < shortCode.length(); i++) {
+            if (data.get(offset + 25 + i) != (byte) shortCode.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private RedirectEntry readEntry(int offset) {
+        int flags = data.get(offset + 4);
+        long expiresAt = data.getLong(offset + 5);
+
+        int position = offset + 21;
+        String shortCode = readString(position);
+        position += 4 + Math.max(0, data.getInt(position));
+        String targetUrl = readString(position);
+        position += 4 + Math.max(0, data.getInt(position));
+        String urlId = readString(position);
+        position += 4 + Math.max(0, data.getInt(position));
+        String userId = readString(position);
+
+        return RedirectEntry.builder()
+                .shortCode(shortCode)
+                .targetUrl(targetUrl)
+                .urlId(urlId)
+                .userId(userId)
+                .active((flags & FLAG_ACTIVE) != 0)
+                .passwordProtected((flags & FLAG_PASSWORD_PROTECTED) != 0)
+                .expiresAtMillis(expiresAt)
+                .build();
+    }
+
+    private String readString(int position) {
+        int length = data.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        data.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    // Callers hold the write lock or own the buffer outright, so no reader can touch it afterwards
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // left to the garbage collector
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.urlshortener.util;
+
+/**
+ * Escapes arbitrary strings (referrer URLs, browser names) for use as keys of a
+ * MongoDB sub-document, where '.' and a leading '$' would be read as path syntax.
+ */
+public final class MongoKeys {
+
+    private MongoKeys() {
+    }
+
+    public static String encode(String key) {
+        if (key.indexOf('%') < 0 && key.indexOf('.') < 0 && key.indexOf('$') < 0) {
+            return key;
+        }
+        StringBuilder encoded = new StringBuilder(key.length() + 8);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            switch (c) {
+                case '%' -> encoded.append("%25");
+                case '.' -> encoded.append("%2E");
+                case '$' -> encoded.append("%24");
+                default -> encoded.append(c);
+            }
+        }
+        return encoded.toString();
+    }
+
+    public static String decode(String key) {
+        if (key.indexOf('%') < 0) {
+            return key;
+        }
+        StringBuilder decoded = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '%' && i + 2 < key.length()) {
+                String code = key.substring(i + 1, i + 3);
+                switch (code) {
+                    case "25" -> { decoded.append('%'); i += 2; continue; }
+                    case "2E" -> { decoded.append('.'); i += 2; continue; }
+                    case "24" -> { decoded.append('$'); i += 2; continue; }
+                    default -> { }
+                }
+            }
+            decoded.append(c);
+        }
+        return decoded.toString();
+    }
+}
@@ -0,0 +1,200 @@
+package com.urlshortener.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache keyed by network block rather than exact address: the /24 for IPv4 and the
+ * /48 for IPv6, so every address a carrier rotates through inside one block shares an
+ * entry. Keys are packed into longs and held in open-addressing arrays. Each segment keeps
+ * two generations; when the current one fills up it becomes the previous one and the old
+ * previous generation is dropped, and entries read from the previous generation are copied
+ * forward, which approximates LRU without per-entry bookkeeping. Entries expire a fixed time
+ * after they were written, so a block that moves to another location is looked up again.
+ */
+public final class NetworkPrefixCache<V> {
+
+    private static final int SEGMENTS = 16;
+    // Marks occupied slots so the all-zero key can still mean "empty"
+    private static final long PRESENT = 1L << 63;
+    private static final long IPV6 = 1L << 62;
+
+    private final Segment<V>[] segments;
+    private final long expireAfterNanos;
+    private final LongSupplier nanoTime;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public NetworkPrefixCache(int maxEntries, Duration expireAfterWrite) {
+        this(maxEntries, expireAfterWrite, System::nanoTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    NetworkPrefixCache(int maxEntries, Duration expireAfterWrite, LongSupplier nanoTime) {
+        this.expireAfterNanos = expireAfterWrite.toNanos();
+        this.nanoTime = nanoTime;
+        int perGeneration = Math.max(16, maxEntries / SEGMENTS / 2);
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(perGeneration);
+        }
+    }
+
+    /**
+     * Packed /24 or /48 key of an address, or 0 when the address is not IPv4 or IPv6.
+     */
+    public static long prefixKey(byte[] address) {
+        if (address == null) {
+            return 0;
+        }
+        if (address.length == 4) {
+            return PRESENT | (address[0] & 0xFFL) << 16 | (address[1] & 0xFFL) << 8 | (address[2] & 0xFFL);
+        }
+        if (address.length == 16) {
+            long key = 0;
+            for (int i = 0; i < 6; i++) {
+                key = key << 8 | (address[i] & 0xFFL);
+            }
+            return PRESENT | IPV6 | key;
+        }
+        return 0;
+    }
+
+    public V get(byte[] address) {
+        long key = prefixKey(address);
+        V value = key != 0 ? segmentFor(key).get(key, nanoTime.getAsLong() - expireAfterNanos) : null;
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    public void put(byte[] address, V value) {
+        long key = prefixKey(address);
+        if (key != 0 && value != null) {
+            segmentFor(key).put(key, value, nanoTime.getAsLong());
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private Segment<V> segmentFor(long key) {
+        return segments[(int) (Hashing.mix64(key) >>> 60) & (SEGMENTS - 1)];
+    }
+
+    private static final class Segment<V> {
+
+        private final int capacity;
+        private Generation<V> current;
+        private Generation<V> previous;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            this.current = new Generation<>(capacity);
+            this.previous = new Generation<>(capacity);
+        }
+
+        // Entries written at or before writtenBefore count as missing
+        private synchronized V get(long key, long writtenBefore) {
+            int slot = current.find(key);
+            if (slot >= 0) {
+                return current.value(slot, writtenBefore);
+            }
+            slot = previous.find(key);
+            V value = slot >= 0 ? previous.value(slot, writtenBefore) : null;
+            if (value != null) {
+                // Copied forward with its original write time, so reads never extend its life
+                putCurrent(key, value, previous.writtenAt[slot]);
+            }
+            return value;
+        }
+
+        private synchronized void put(long key, V value, long writtenAt) {
+            putCurrent(key, value, writtenAt);
+        }
+
+        private synchronized long size() {
+            return current.size + previous.size;
+        }
+
+        private void putCurrent(long key, V value, long writtenAt) {
+            if (current.size >= capacity && current.find(key) < 0) {
+                previous = current;
+                current = new Generation<>(capacity);
+            }
+            current.put(key, value, writtenAt);
+        }
+    }
+
+    // Open addressing with linear probing at no more than 50% load; entries are never removed
+    private static final class Generation<V> {
+
+        private final long[] keys;
+        private final Object[] values;
+        private final long[] writtenAt;
+        private final int mask;
+        private int size;
+
+        private Generation(int capacity) {
+            int slots = Integer.highestOneBit(Math.max(2, capacity * 2) - 1) << 1;
+            this.keys = new long[slots];
+            this.values = new Object[slots];
+            this.writtenAt = new long[slots];
+            this.mask = slots - 1;
+        }
+
+        private int find(long key) {
+            for (int slot = slot(key); keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V value(int slot, long writtenBefore) {
+            return writtenAt[slot] - writtenBefore > 0 ? (V) values[slot] : null;
+        }
+
+        private void put(long key, V value, long writtenAt) {
+            int slot = slot(key);
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = value;
+            this.writtenAt[slot] = writtenAt;
+        }
+
+        private int slot(long key) {
+            return (int) Hashing.mix64(key) & mask;
+        }
+    }
+}
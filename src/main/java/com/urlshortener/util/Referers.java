@@ -0,0 +1,29 @@
+package com.urlshortener.util;
+
+public final class Referers {
+
+    private Referers() {
+    }
+
+    /**
+     * Host part of a referer header, lowercased and without a leading "www.".
+     * Returns null when there is no referer.
+     */
+    public static String domain(String referer) {
+        if (referer == null || referer.isBlank()) {
+            return null;
+        }
+        int start = referer.indexOf("://");
+        start = start >= 0 ? start + 3 : 0;
+        int end = start;
+        while (end < referer.length()) {
+            char c = referer.charAt(end);
+            if (c == '/' || c == ':' || c == '?' || c == '#') {
+                break;
+            }
+            end++;
+        }
+        String host = referer.substring(start, end).toLowerCase();
+        return host.startsWith("www.") ? host.substring(4) : host;
+    }
+}
@@ -0,0 +1,141 @@
+package com.urlshortener.util;
+
+import com.urlshortener.model.ClickRollup;
+import com.urlshortener.model.ClickRollup.Granularity;
+import lombok.Value;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a UTC time range into the fewest rollup buckets across the minute, hour, day and
+ * month tiers: whole months in the middle, then edge days, edge hours and edge minutes.
+ * Each tier contributes at most two contiguous bucket ranges. Range ends older than a
+ * tier's retention are widened to the next coarser tier that still holds them.
+ */
+public class RollupQueryPlanner {
+
+    private static final List<Granularity> TIERS = List.of(
+            Granularity.MINUTE, Granularity.HOUR, Granularity.DAY, Granularity.MONTH);
+
+    @Value
+    public static class Segment {
+        Granularity granularity;
+        // Half-open [start, end) in UTC
+        LocalDateTime start;
+        LocalDateTime end;
+        String firstBucket;
+        String lastBucket;
+
+        public boolean contains(String bucket) {
+            return bucket.compareTo(firstBucket) >= 0 && bucket.compareTo(lastBucket) <= 0;
+        }
+    }
+
+    private final Map<Granularity, Duration> retention;
+
+    /**
+     * @param retention how long each tier is kept; tiers without an entry are kept forever
+     */
+    public RollupQueryPlanner(Map<Granularity, Duration> retention) {
+        this.retention = new EnumMap<>(Granularity.class);
+        this.retention.putAll(retention);
+    }
+
+    /**
+     * Plans the inclusive range [from, to], both in UTC, using tiers between {@code finest}
+     * and {@code coarsest}. Segments are returned in time order.
+     */
+    public List<Segment> plan(LocalDateTime from, LocalDateTime to, LocalDateTime now,
+                              Granularity finest, Granularity coarsest) {
+        int lowest = TIERS.indexOf(finest);
+        int highest = TIERS.indexOf(coarsest);
+        if (lowest < 0 || highest < lowest) {
+            throw new IllegalArgumentException("Unsupported tiers " + finest + ".." + coarsest);
+        }
+        List<Segment> segments = new ArrayList<>();
+        if (to.isBefore(from)) {
+            return segments;
+        }
+
+        LocalDateTime start = floor(from, availableTier(from, now, lowest, highest));
+        Granularity endTier = availableTier(to, now, lowest, highest);
+        LocalDateTime end = plus(floor(to, endTier), endTier, 1);
+
+        cover(start, end, lowest, highest, segments);
+        segments.sort(Comparator.comparing(Segment::getStart));
+        return segments;
+    }
+
+    public boolean retains(Granularity granularity, LocalDateTime utc, LocalDateTime now) {
+        LocalDateTime since = retainedSince(granularity, now);
+        return since == null || !utc.isBefore(since);
+    }
+
+    /**
+     * Oldest instant the tier still holds, or null when the tier is kept forever.
+     */
+    public LocalDateTime retainedSince(Granularity granularity, LocalDateTime now) {
+        Duration kept = retention.get(granularity);
+        return kept != null ? now.minus(kept) : null;
+    }
+
+    public static LocalDateTime floor(LocalDateTime time, Granularity granularity) {
+        return switch (granularity) {
+            case MINUTE -> time.truncatedTo(ChronoUnit.MINUTES);
+            case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+            case DAY -> time.truncatedTo(ChronoUnit.DAYS);
+            case MONTH -> time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+            case TOTAL -> throw new IllegalArgumentException("TOTAL has no time buckets");
+        };
+    }
+
+    private static LocalDateTime ceil(LocalDateTime time, Granularity granularity) {
+        LocalDateTime floor = floor(time, granularity);
+        return floor.equals(time) ? time : plus(floor, granularity, 1);
+    }
+
+    private static LocalDateTime plus(LocalDateTime time, Granularity granularity, long amount) {
+        return switch (granularity) {
+            case MINUTE -> time.plusMinutes(amount);
+            case HOUR -> time.plusHours(amount);
+            case DAY -> time.plusDays(amount);
+            case MONTH -> time.plusMonths(amount);
+            case TOTAL -> throw new IllegalArgumentException("TOTAL has no time buckets");
+        };
+    }
+
+    private Granularity availableTier(LocalDateTime time, LocalDateTime now, int lowest, int highest) {
+        for (int i = lowest; i < highest; i++) {
+            if (retains(TIERS.get(i), time, now)) {
+                return TIERS.get(i);
+            }
+        }
+        return TIERS.get(highest);
+    }
+
+    // Takes the coarsest whole buckets that fit, then covers the two leftover edges with finer tiers
+    private static void cover(LocalDateTime start, LocalDateTime end, int lowest, int highest, List<Segment> segments) {
+        if (!start.isBefore(end)) {
+            return;
+        }
+        for (int i = highest; i >= lowest; i--) {
+            Granularity tier = TIERS.get(i);
+            LocalDateTime first = ceil(start, tier);
+            LocalDateTime last = floor(end, tier);
+            if (first.isBefore(last)) {
+                segments.add(new Segment(tier, first, last,
+                        ClickRollup.bucketFor(tier, first), ClickRollup.bucketFor(tier, plus(last, tier, -1))));
+                cover(start, first, lowest, i, segments);
+                cover(last, end, lowest, i, segments);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.urlshortener.util;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Space-Saving heavy-hitters summary holding at most {@code capacity} counters. For every
+ * tracked item, {@code count - error <= true count <= count}, and any item whose true count
+ * exceeds total / capacity is guaranteed to be tracked. Summaries merge with the
+ * mergeable-summaries rule, so per-instance deltas can be folded into a stored summary.
+ */
+public class SpaceSaving {
+
+    @Value
+    public static class Counter {
+        String item;
+        long count;
+        long error;
+    }
+
+    private static final Comparator<Counter> BY_COUNT_DESC =
+            Comparator.comparingLong(Counter::getCount).reversed().thenComparing(Counter::getItem);
+
+    private final int capacity;
+    private final Map<String, long[]> counters;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public static SpaceSaving of(int capacity, List<Counter> counters) {
+        SpaceSaving summary = new SpaceSaving(capacity);
+        counters.stream()
+                .sorted(BY_COUNT_DESC)
+                .limit(capacity)
+                .forEach(counter -> summary.counters.put(counter.getItem(), new long[]{counter.getCount(), counter.getError()}));
+        return summary;
+    }
+
+    public void offer(String item) {
+        offer(item, 1);
+    }
+
+    public void offer(String item, long increment) {
+        long[] counter = counters.get(item);
+        if (counter != null) {
+            counter[0] += increment;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(item, new long[]{increment, 0});
+            return;
+        }
+
+        String minItem = null;
+        long[] min = null;
+        for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+            if (min == null || entry.getValue()[0] < min[0]) {
+                minItem = entry.getKey();
+                min = entry.getValue();
+            }
+        }
+        counters.remove(minItem);
+        counters.put(item, new long[]{min[0] + increment, min[0]});
+    }
+
+    public void merge(SpaceSaving other) {
+        long thisFloor = errorBound();
+        long otherFloor = other.errorBound();
+
+        Set<String> items = new HashSet<>(counters.keySet());
+        items.addAll(other.counters.keySet());
+
+        List<Counter> merged = new ArrayList<>(items.size());
+        for (String item : items) {
+            long[] mine = counters.get(item);
+            long[] theirs = other.counters.get(item);
+            long count = (mine != null ? mine[0] : thisFloor) + (theirs != null ? theirs[0] : otherFloor);
+            long error = (mine != null ? mine[1] : thisFloor) + (theirs != null ? theirs[1] : otherFloor);
+            merged.add(new Counter(item, count, error));
+        }
+
+        counters.clear();
+        merged.sort(BY_COUNT_DESC);
+        for (Counter counter : merged.subList(0, Math.min(capacity, merged.size()))) {
+            counters.put(counter.getItem(), new long[]{counter.getCount(), counter.getError()});
+        }
+    }
+
+    public List<Counter> top(int limit) {
+        List<Counter> top = counters();
+        return top.subList(0, Math.min(limit, top.size()));
+    }
+
+    public List<Counter> counters() {
+        List<Counter> all = new ArrayList<>(counters.size());
+        counters.forEach((item, counter) -> all.add(new Counter(item, counter[0], counter[1])));
+        all.sort(BY_COUNT_DESC);
+        return all;
+    }
+
+    /**
+     * Upper bound on how far any count may overestimate, and on the true count of any item
+     * that is not tracked. Zero until the summary has evicted anything.
+     */
+    public long errorBound() {
+        if (counters.size() < capacity) {
+            return 0;
+        }
+        long min = Long.MAX_VALUE;
+        for (long[] counter : counters.values()) {
+            min = Math.min(min, counter[0]);
+        }
+        return min;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return counters.size();
+    }
+}
@@ -1,24 +1,56 @@
 package com.urlshortener.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.Builder;
-import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import ua_parser.Client;
 import ua_parser.Parser;
 
+import java.util.Locale;
+
+/**
+ * Parses user agent strings with uap-java. Real traffic repeats a small set of browser
+ * strings, so results are memoized in a Caffeine cache bounded by the approximate memory of
+ * its keys; {@link ParsedUserAgent} is immutable, so one instance is safely shared by every caller.
+ */
 @Component
 public class UserAgentParser {
 
+    // Rough per-entry cost of the cached result and cache node on top of the key's chars
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
     private final Parser parser;
+    private final Cache<String, ParsedUserAgent> cache;
 
-    public UserAgentParser() {
+    public UserAgentParser(MeterRegistry meterRegistry,
+                           @Value("${app.user-agent-cache.max-weight-bytes:16777216}") long maxWeightBytes) {
         this.parser = new Parser();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((String userAgent, ParsedUserAgent parsed) -> 2 * userAgent.length() + ENTRY_OVERHEAD_BYTES)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userAgents");
     }
 
     public ParsedUserAgent parse(String userAgentString) {
         if (userAgentString == null || userAgentString.isEmpty()) {
             return ParsedUserAgent.unknown();
         }
+        return cache.get(userAgentString, this::parseUncached);
+    }
+
+    /**
+     * Always runs the full regex set; used to warm up the parser itself.
+     */
+    public ParsedUserAgent parseUncached(String userAgentString) {
+        if (userAgentString == null || userAgentString.isEmpty()) {
+            return ParsedUserAgent.unknown();
+        }
 
         try {
             Client client = parser.parse(userAgentString);
@@ -29,9 +61,10 @@ public class UserAgentParser {
             String osVersion = client.os.major;
             String device = client.device.family;
 
-            boolean isMobile = isMobileDevice(userAgentString, device);
-            boolean isBot = isBot(userAgentString);
-            String deviceType = determineDeviceType(userAgentString, device, isMobile);
+            String ua = userAgentString.toLowerCase(Locale.ROOT);
+            boolean isMobile = isMobileDevice(ua, device);
+            boolean isBot = isBot(ua);
+            String deviceType = determineDeviceType(ua, isBot, isMobile);
 
             return ParsedUserAgent.builder()
                     .browser(browser)
@@ -47,26 +80,24 @@ public class UserAgentParser {
         }
     }
 
-    private boolean isMobileDevice(String userAgent, String device) {
-        String ua = userAgent.toLowerCase();
+    // The helpers below take the user agent already lowercased
+
+    private boolean isMobileDevice(String ua, String device) {
         return ua.contains("mobile") || ua.contains("android") ||
                 ua.contains("iphone") || ua.contains("ipad") ||
                 ua.contains("windows phone") || "iPhone".equalsIgnoreCase(device) ||
                 "Android".equalsIgnoreCase(device);
     }
 
-    private boolean isBot(String userAgent) {
-        String ua = userAgent.toLowerCase();
+    private boolean isBot(String ua) {
         return ua.contains("bot") || ua.contains("crawler") ||
                 ua.contains("spider") || ua.contains("scraper") ||
                 ua.contains("curl") || ua.contains("wget") ||
                 ua.contains("python") || ua.contains("java/");
     }
 
-    private String determineDeviceType(String userAgent, String device, boolean isMobile) {
-        String ua = userAgent.toLowerCase();
-
-        if (isBot(ua)) {
+    private String determineDeviceType(String ua, boolean isBot, boolean isMobile) {
+        if (isBot) {
             return "Bot";
         }
         if (ua.contains("tablet") || ua.contains("ipad")) {
@@ -78,27 +109,29 @@ public class UserAgentParser {
         return "Desktop";
     }
 
-    @Data
+    @lombok.Value
     @Builder
     public static class ParsedUserAgent {
-        private String browser;
-        private String browserVersion;
-        private String operatingSystem;
-        private String osVersion;
-        private String deviceType;
-        private boolean isMobile;
-        private boolean isBot;
+        private static final ParsedUserAgent UNKNOWN = ParsedUserAgent.builder()
+                .browser("Unknown")
+                .browserVersion("")
+                .operatingSystem("Unknown")
+                .osVersion("")
+                .deviceType("Unknown")
+                .isMobile(false)
+                .isBot(false)
+                .build();
+
+        String browser;
+        String browserVersion;
+        String operatingSystem;
+        String osVersion;
+        String deviceType;
+        boolean isMobile;
+        boolean isBot;
 
         public static ParsedUserAgent unknown() {
-            return ParsedUserAgent.builder()
-                    .browser("Unknown")
-                    .browserVersion("")
-                    .operatingSystem("Unknown")
-                    .osVersion("")
-                    .deviceType("Unknown")
-                    .isMobile(false)
-                    .isBot(false)
-                    .build();
+            return UNKNOWN;
         }
     }
 }
@@ -0,0 +1,57 @@
+package com.urlshortener.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Arrays;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Read-merge-write of one document guarded by a version counter. The upsert only matches
+ * the version that was read, so a concurrent writer from another instance makes it collide
+ * on _id instead of overwriting, and the merge is redone against the newer document.
+ */
+@Slf4j
+public final class VersionedUpsert {
+
+    public static final int MAX_ATTEMPTS = 5;
+
+    private VersionedUpsert() {
+    }
+
+    /**
+     * @param read    loads the current document, or null when there is none yet
+     * @param version the stored version of a loaded document, 0 when never written
+     * @param merge   builds the update from the loaded document (may be null) and its version;
+     *                the version field itself is set here
+     */
+    public static <T> void merge(MongoTemplate mongoTemplate, Class<T> type, Object id, String versionField,
+                                 Supplier<T> read, ToLongFunction<T> version, BiFunction<T, Long, Update> merge) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            T existing = read.get();
+            long current = existing != null ? version.applyAsLong(existing) : 0;
+
+            Criteria expected = Criteria.where("_id").is(id);
+            if (current == 0) {
+                expected = expected.and(versionField).in(Arrays.asList(null, 0L));
+            } else {
+                expected = expected.and(versionField).is(current);
+            }
+            Update update = merge.apply(existing, current).set(versionField, current + 1);
+
+            try {
+                mongoTemplate.upsert(Query.query(expected), update, type);
+                return;
+            } catch (DuplicateKeyException e) {
+                log.debug("{} {} changed concurrently, retrying", type.getSimpleName(), id);
+            }
+        }
+        throw new IllegalStateException("Gave up after " + MAX_ATTEMPTS + " concurrent updates");
+    }
+}
@@ -0,0 +1,46 @@
+package com.urlshortener.config;
+
+import com.urlshortener.model.ClickEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MongoConfigTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private IndexOperations indexOperations;
+
+    private final MongoConfig mongoConfig = new MongoConfig();
+
+    @Test
+    void dropSupersededClickEventIndex_RemovesOnlyTheOldIndexWhenEnabled() throws Exception {
+        when(mongoTemplate.indexOps(ClickEvent.class)).thenReturn(indexOperations);
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(
+                new IndexInfo(List.of(), "url_timestamp_id_idx", false, false, null),
+                new IndexInfo(List.of(), MongoConfig.SUPERSEDED_CLICK_EVENT_INDEX, false, false, null)));
+
+        mongoConfig.dropSupersededClickEventIndex(mongoTemplate, true).run();
+
+        verify(indexOperations).dropIndex(MongoConfig.SUPERSEDED_CLICK_EVENT_INDEX);
+        verify(indexOperations, never()).dropIndex("url_timestamp_id_idx");
+    }
+
+    @Test
+    void dropSupersededClickEventIndex_LeavesIndexesAloneByDefault() throws Exception {
+        mongoConfig.dropSupersededClickEventIndex(mongoTemplate, false).run();
+
+        verifyNoInteractions(mongoTemplate);
+    }
+}
@@ -0,0 +1,85 @@
+package com.urlshortener.repository;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClickDictionaryTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private IndexOperations indexOperations;
+
+    @Mock
+    private MongoCollection<Document> collection;
+
+    private ClickDictionary dictionary;
+
+    @BeforeEach
+    void setUp() {
+        dictionary = new ClickDictionary(mongoTemplate);
+    }
+
+    @Test
+    void encode_LooksUpStoredCodesOnceWithoutRegistering() {
+        when(mongoTemplate.indexOps(ClickDictionary.COLLECTION)).thenReturn(indexOperations);
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(ClickDictionary.COLLECTION)))
+                .thenReturn(List.of(new Document("_id", "US").append("code", 1)));
+
+        assertEquals(1, dictionary.encode("US"));
+        assertEquals(1, dictionary.encode("US"));
+        assertEquals("US", dictionary.decode(1));
+
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Document.class), eq(ClickDictionary.COLLECTION));
+        verify(mongoTemplate, never()).findAll(Document.class, ClickDictionary.COLLECTION);
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Document.class), anyString());
+    }
+
+    @Test
+    void encode_RegistersNewValuesAndKeepsCodesWrittenByOtherInstances() {
+        when(mongoTemplate.indexOps(ClickDictionary.COLLECTION)).thenReturn(indexOperations);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Document.class), eq("click_dictionary_sequence"))).thenReturn(new Document("next", 7));
+        when(mongoTemplate.getCollection(ClickDictionary.COLLECTION)).thenReturn(collection);
+        // Another instance registered DE first, under a different code
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(ClickDictionary.COLLECTION)))
+                .thenReturn(List.of(), List.of(new Document("_id", "DE").append("code", 3)));
+
+        assertEquals(3, dictionary.encode("DE"));
+        assertEquals(3, dictionary.encode("DE"));
+
+        verify(collection).insertMany(eq(List.of(new Document("_id", "DE").append("code", 6))),
+                any(InsertManyOptions.class));
+    }
+
+    @Test
+    void decode_LooksUpCodesRegisteredAfterLoad() {
+        when(mongoTemplate.findOne(any(Query.class), eq(Document.class), eq(ClickDictionary.COLLECTION)))
+                .thenReturn(new Document("_id", "FR").append("code", 9));
+
+        assertEquals("FR", dictionary.decode(9));
+        assertEquals("FR", dictionary.decode(9));
+
+        verify(mongoTemplate, times(1)).findOne(any(Query.class), eq(Document.class), eq(ClickDictionary.COLLECTION));
+    }
+}
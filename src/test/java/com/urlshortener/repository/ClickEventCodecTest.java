@@ -0,0 +1,156 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.model.ClickEvent;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ClickEventCodecTest {
+
+    @Mock
+    private ClickDictionary dictionary;
+
+    private final List<String> codes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(dictionary.encode(nullable(String.class))).thenAnswer(invocation -> {
+            String value = invocation.getArgument(0);
+            if (value == null) {
+                return null;
+            }
+            if (!codes.contains(value)) {
+                codes.add(value);
+            }
+            return codes.indexOf(value);
+        });
+        when(dictionary.decode(anyInt())).thenAnswer(invocation -> codes.get(invocation.<Integer>getArgument(0)));
+        when(dictionary.userAgentHash(anyString())).thenReturn(42L);
+        when(dictionary.userAgent(42L)).thenReturn("Mozilla/5.0");
+    }
+
+    private static ClickEvent event() {
+        return ClickEvent.builder()
+                .id(new ObjectId().toHexString())
+                .urlId("url1")
+                .userId("user1")
+                .ipAddress("203.0.113.7")
+                .userAgent("Mozilla/5.0")
+                .referer("https://example.com/page")
+                .country("DE")
+                .city("Berlin")
+                .region("Berlin")
+                .isp("Example Telecom")
+                .deviceType("Desktop")
+                .browser("Firefox")
+                .browserVersion("121.0")
+                .operatingSystem("Linux")
+                .isMobile(true)
+                .timestamp(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS))
+                .build();
+    }
+
+    // What the server returns for query.fields().include(fields)
+    private static Document project(Document stored, String... fields) {
+        Set<String> included = Set.of(fields);
+        Document projected = new Document();
+        stored.forEach((key, value) -> {
+            if (key.equals("_id") || included.contains(key)) {
+                projected.put(key, value);
+            }
+        });
+        return projected;
+    }
+
+    @Test
+    void compactDocument_RoundTripsThroughAProjection() {
+        ClickEventCodec codec = new ClickEventCodec(dictionary, ClickEventCodec.Format.V2);
+        ClickEvent event = event();
+
+        Document projected = project(codec.toDocument(event), ClickEventCodec.storedFields(
+                "urlId", "ipAddress", "country", "browser", "operatingSystem", "deviceType", "referer", "timestamp"));
+        ClickEvent read = codec.fromDocument(projected);
+
+        assertEquals(event.getId(), read.getId());
+        assertEquals("url1", read.getUrlId());
+        assertEquals("203.0.113.7", read.getIpAddress());
+        assertEquals("DE", read.getCountry());
+        assertEquals("Firefox", read.getBrowser());
+        assertEquals("Linux", read.getOperatingSystem());
+        assertEquals("Desktop", read.getDeviceType());
+        assertEquals("https://example.com/page", read.getReferer());
+        assertEquals(event.getTimestamp(), read.getTimestamp());
+        assertNull(read.getCity());
+    }
+
+    @Test
+    void legacyDocument_RoundTripsThroughAProjection() {
+        ClickEventCodec codec = new ClickEventCodec(dictionary, ClickEventCodec.Format.V1);
+        ClickEvent event = event();
+
+        Document projected = project(codec.toDocument(event), ClickEventCodec.storedFields("country", "referer"));
+        ClickEvent read = codec.fromDocument(projected);
+
+        assertEquals("DE", read.getCountry());
+        assertEquals("https://example.com/page", read.getReferer());
+        verifyNoInteractions(dictionary);
+    }
+
+    @Test
+    void compactDocument_RoundTripsEveryProperty() {
+        ClickEventCodec codec = new ClickEventCodec(dictionary, ClickEventCodec.Format.V2);
+        ClickEvent event = event();
+
+        Document stored = codec.toDocument(event);
+
+        assertEquals(ClickEventCodec.COMPACT_VERSION, stored.get(ClickEventCodec.VERSION));
+        assertFalse(stored.containsKey("country"));
+        assertEquals(event, codec.fromDocument(stored));
+    }
+
+    @Test
+    void compactDocument_KeepsHighCardinalityDimensionsAsStrings() {
+        ClickEventCodec codec = new ClickEventCodec(dictionary, ClickEventCodec.Format.V2);
+
+        Document stored = codec.toDocument(event());
+
+        assertEquals("Berlin", stored.get("ci"));
+        assertEquals("Example Telecom", stored.get("is"));
+        assertFalse(codes.contains("Berlin"));
+        assertFalse(codes.contains("Example Telecom"));
+    }
+
+    @Test
+    void compactDocument_DecodesCitiesWrittenAsCodes() {
+        ClickEventCodec codec = new ClickEventCodec(dictionary, ClickEventCodec.Format.V2);
+        codes.add("Munich");
+        Document stored = codec.toDocument(event()).append("ci", codes.indexOf("Munich"));
+
+        assertEquals("Munich", codec.fromDocument(stored).getCity());
+    }
+
+    @Test
+    void storedFields_AlwaysIncludesTheVersion() {
+        List<String> fields = List.of(ClickEventCodec.storedFields("urlId", "country"));
+
+        assertEquals(List.of(ClickEventCodec.VERSION, "urlId", "country", "c"), fields);
+    }
+}
@@ -0,0 +1,71 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickEvent;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsRebuildFenceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private AnalyticsRebuildFence fence;
+
+    @BeforeEach
+    void setUp() {
+        fence = new AnalyticsRebuildFence(mongoTemplate, 60_000);
+    }
+
+    private static ClickEvent event(ObjectId id) {
+        return ClickEvent.builder().id(id.toHexString()).urlId("url123").build();
+    }
+
+    @Test
+    void admitted_FollowsThePhases() {
+        ObjectId before = new ObjectId(new Date(System.currentTimeMillis() - 1000));
+        ObjectId snapshot = new ObjectId();
+        ObjectId after = new ObjectId(new Date(System.currentTimeMillis() + 1000));
+        List<ClickEvent> events = List.of(event(before), event(after));
+
+        assertEquals(events, fence.admitted(events));
+
+        fence.clearing();
+        assertTrue(fence.admitted(events).isEmpty());
+
+        fence.replaying(snapshot);
+        assertEquals(List.of(events.get(1)), fence.admitted(events));
+
+        fence.open();
+        assertEquals(events, fence.admitted(events));
+    }
+
+    @Test
+    void poll_AdoptsAnotherInstancesFenceUntilItsLeaseLapses() {
+        ObjectId snapshot = new ObjectId();
+        Document stored = new Document("_id", "fence").append("phase", "REPLAYING").append("snapshot", snapshot)
+                .append("expiresAt", new Date(System.currentTimeMillis() + 60_000));
+        when(mongoTemplate.findById(eq("fence"), eq(Document.class), eq(AnalyticsRebuildFence.COLLECTION)))
+                .thenReturn(stored);
+
+        fence.poll();
+        assertEquals(AnalyticsRebuildFence.Phase.REPLAYING, fence.getPhase());
+
+        stored.put("expiresAt", new Date(System.currentTimeMillis() - 1));
+        fence.poll();
+        assertEquals(AnalyticsRebuildFence.Phase.OPEN, fence.getPhase());
+    }
+}
@@ -0,0 +1,109 @@
+package com.urlshortener.service;
+
+import com.urlshortener.dto.response.AnalyticsResponse;
+import com.urlshortener.model.Url;
+import com.urlshortener.repository.ClickEventRepository;
+import com.urlshortener.repository.UrlRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsServiceTest {
+
+    @Mock
+    private ClickEventRepository clickEventRepository;
+
+    @Mock
+    private UrlRepository urlRepository;
+
+    @Mock
+    private ClickIngestionService clickIngestionService;
+
+    @Mock
+    private ClickRollupService clickRollupService;
+
+    @Mock
+    private VisitorSketchService visitorSketchService;
+
+    @Mock
+    private HeavyHitterService heavyHitterService;
+
+    @Mock
+    private UserService userService;
+
+    @InjectMocks
+    private AnalyticsService analyticsService;
+
+    private final LocalDateTime start = LocalDateTime.now().minusDays(30);
+    private final LocalDateTime end = LocalDateTime.now();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(analyticsService, "analyticsQueryExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(analyticsService, "parallelTimeoutMs", 10_000L);
+
+        Url url = Url.builder().id("url123").shortCode("abc123").userId("user123").build();
+        when(urlRepository.findById("url123")).thenReturn(Optional.of(url));
+    }
+
+    @Test
+    void getUrlAnalytics_FacetModeMapsSinglePipelineResult() {
+        ReflectionTestUtils.setField(analyticsService, "queryMode", AnalyticsService.QueryMode.FACET);
+        Document facets = new Document()
+                .append("total", List.of(new Document("count", 5)))
+                .append("visitors", List.of(new Document("count", 3)))
+                .append("visitorsInRange", List.of(new Document("count", 2)))
+                .append("clicksByDate", List.of(new Document("_id", "2024-01-01").append("count", 5)))
+                .append("countries", List.of(
+                        new Document("_id", "US").append("count", 4),
+                        new Document("_id", null).append("count", 1)))
+                .append("browsers", List.of())
+                .append("devices", List.of(new Document("_id", "Desktop").append("count", 5)))
+                .append("referrers", List.of())
+                .append("hours", List.of(new Document("_id", 13).append("count", 5)));
+        when(clickEventRepository.getUrlAnalyticsFacets("url123", start, end)).thenReturn(facets);
+
+        AnalyticsResponse response = analyticsService.getUrlAnalytics("url123", start, end);
+
+        assertEquals(5, response.getTotalClicks());
+        assertEquals(3, response.getUniqueVisitors());
+        assertEquals(2, response.getUniqueVisitorsInRange());
+        assertEquals("2024-01-01", response.getClicksByDate().get(0).getDate());
+        assertEquals("US", response.getTopCountries().get(0).getCountry());
+        assertEquals(80.0, response.getTopCountries().get(0).getPercentage());
+        assertEquals("Unknown", response.getTopCountries().get(1).getCountry());
+        assertEquals(5L, response.getClicksByHour().get("13"));
+        verify(clickEventRepository, never()).countByUrlId(any());
+    }
+
+    @Test
+    void getUrlAnalytics_ParallelModeKeepsResultsOfSuccessfulQueries() {
+        ReflectionTestUtils.setField(analyticsService, "queryMode", AnalyticsService.QueryMode.PARALLEL);
+        when(clickEventRepository.countByUrlId("url123")).thenReturn(10L);
+        when(clickEventRepository.countDistinctIpAddressesByUrlId("url123")).thenReturn(4L);
+        when(clickEventRepository.getTopCountries("url123")).thenThrow(new RuntimeException("timeout"));
+
+        AnalyticsResponse response = analyticsService.getUrlAnalytics("url123", start, end);
+
+        assertEquals(10, response.getTotalClicks());
+        assertEquals(4, response.getUniqueVisitors());
+        assertTrue(response.getTopCountries().isEmpty());
+        verify(clickEventRepository).getTopBrowsers("url123");
+        verify(clickEventRepository).getClicksByHour("url123");
+    }
+}
@@ -0,0 +1,101 @@
+package com.urlshortener.service;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.urlshortener.model.Url;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClickCounterServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache urlCache;
+
+    private ClickCounterService clickCounterService;
+
+    @BeforeEach
+    void setUp() {
+        clickCounterService = new ClickCounterService(mongoTemplate, cacheManager, new SimpleMeterRegistry());
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Url.class)).thenReturn(bulkOperations);
+    }
+
+    @Test
+    void flush_EvictsCachedUrlsWhoseCountChanged() {
+        when(cacheManager.getCache("urls")).thenReturn(urlCache);
+        clickCounterService.increment("abc123");
+        clickCounterService.increment("abc123");
+
+        clickCounterService.flush();
+
+        verify(bulkOperations).execute();
+        verify(urlCache).evict("abc123");
+        assertEquals(0, clickCounterService.getPendingClicks());
+    }
+
+    @Test
+    void flush_KeepsClicksAndCacheWhenWriteFails() {
+        when(bulkOperations.execute()).thenThrow(new RuntimeException("down"));
+        clickCounterService.increment("abc123");
+
+        clickCounterService.flush();
+
+        verify(cacheManager, never()).getCache(any());
+        assertEquals(1, clickCounterService.getPendingClicks());
+    }
+
+    @Test
+    void flush_RetriesOnlyTheUpdatesThatFailedInAPartialWrite() {
+        when(cacheManager.getCache("urls")).thenReturn(urlCache);
+        List<String> order = new ArrayList<>();
+        when(bulkOperations.updateOne(any(Query.class), any(Update.class))).thenAnswer(invocation -> {
+            order.add(invocation.<Query>getArgument(0).getQueryObject().getString("shortCode"));
+            return bulkOperations;
+        });
+        when(bulkOperations.execute()).thenAnswer(invocation -> {
+            BulkWriteError error = new BulkWriteError(11000, "write failed", new BsonDocument(), order.indexOf("failed"));
+            throw new BulkOperationException("partial", new MongoBulkWriteException(
+                    BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()), List.of(error), null,
+                    new ServerAddress()));
+        });
+        clickCounterService.increment("applied");
+        clickCounterService.increment("applied");
+        clickCounterService.increment("failed");
+
+        clickCounterService.flush();
+
+        assertEquals(1, clickCounterService.getPendingClicks());
+        verify(urlCache).evict("applied");
+        verify(urlCache, never()).evict("failed");
+    }
+}
@@ -0,0 +1,77 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.repository.ClickDictionary;
+import com.urlshortener.repository.ClickEventCodec;
+import com.urlshortener.repository.ClickEventStorage;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClickEventMigrationServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ClickDictionary dictionary;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    private ClickEventMigrationService migrationService(ClickEventStorage.Mode mode) {
+        return new ClickEventMigrationService(mongoTemplate, new ClickEventCodec(dictionary, ClickEventCodec.Format.V2),
+                new ClickEventStorage(mode, null, 0), true, 2, 10);
+    }
+
+    private static Document legacy(String urlId) {
+        return new Document("_id", new ObjectId()).append("urlId", urlId).append("ipAddress", "10.0.0.1")
+                .append("timestamp", new Date());
+    }
+
+    @Test
+    void migrate_RewritesLegacyDocumentsUntilNoneRemain() {
+        when(mongoTemplate.getCollectionName(ClickEvent.class)).thenReturn(ClickEventStorage.STANDARD_COLLECTION);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ClickEventStorage.STANDARD_COLLECTION))
+                .thenReturn(bulkOperations);
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(ClickEventStorage.STANDARD_COLLECTION)))
+                .thenReturn(List.of(legacy("url1"), legacy("url2")), List.of(legacy("url3")), List.of());
+        ClickEventMigrationService migrationService = migrationService(ClickEventStorage.Mode.STANDARD);
+
+        migrationService.migrate();
+
+        ArgumentCaptor<Document> replacements = ArgumentCaptor.forClass(Document.class);
+        verify(bulkOperations, times(3)).replaceOne(any(Query.class), replacements.capture());
+        assertEquals(List.of("url1", "url2", "url3"), replacements.getAllValues().stream()
+                .map(document -> document.getString("urlId")).toList());
+        replacements.getAllValues().forEach(document ->
+                assertEquals(ClickEventCodec.COMPACT_VERSION, document.get(ClickEventCodec.VERSION)));
+        assertTrue(migrationService.isFinished());
+    }
+
+    @Test
+    void migrate_SkipsTimeSeriesStorage() {
+        ClickEventMigrationService migrationService = migrationService(ClickEventStorage.Mode.TIME_SERIES);
+
+        migrationService.migrate();
+
+        verifyNoInteractions(mongoTemplate);
+        assertFalse(migrationService.isFinished());
+    }
+}
@@ -0,0 +1,113 @@
+package com.urlshortener.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.urlshortener.exception.BadRequestException;
+import com.urlshortener.model.ClickEvent;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClickExportServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private ClickExportService exportService() {
+        return new ClickExportService(mongoTemplate, objectMapper, 100, 60_000);
+    }
+
+    private String export(ClickExportService.Format format, ClickEvent... events) throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(ClickEvent.class))).thenReturn(Stream.of(events));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        exportService().export("url1", null, null, null, null, format, false).writeTo(output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static ClickEvent click(String referer) {
+        return ClickEvent.builder().id(new ObjectId().toHexString()).urlId("url1")
+                .timestamp(LocalDateTime.of(2024, 3, 1, 12, 0)).referer(referer).country("DE").build();
+    }
+
+    @Test
+    void export_ResumesAfterTheLastClickIncludingTimestampTies() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(ClickEvent.class))).thenReturn(Stream.empty());
+        LocalDateTime last = LocalDateTime.of(2024, 3, 1, 12, 0);
+        String lastId = new ObjectId().toHexString();
+
+        exportService().export("url1", null, null, last, lastId, ClickExportService.Format.NDJSON, false)
+                .writeTo(new ByteArrayOutputStream());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(ClickEvent.class));
+        List<?> and = query.getValue().getQueryObject().get("$and", List.class);
+        List<?> or = ((Document) and.get(1)).get("$or", List.class);
+        assertEquals(new Document("timestamp", new Document("$gt", last)), or.get(0));
+        assertEquals(new Document("timestamp", last).append("_id", new Document("$gt", new ObjectId(lastId))),
+                or.get(1));
+        assertEquals(new Document("timestamp", 1).append("_id", 1), query.getValue().getSortObject());
+    }
+
+    @Test
+    void export_RejectsHalfAResumePosition() {
+        ClickExportService exportService = exportService();
+        LocalDateTime last = LocalDateTime.now();
+
+        assertThrows(BadRequestException.class, () -> exportService.export(
+                "url1", null, null, last, null, ClickExportService.Format.CSV, false));
+        assertThrows(BadRequestException.class, () -> exportService.export(
+                "url1", null, null, null, new ObjectId().toHexString(), ClickExportService.Format.CSV, false));
+        assertThrows(BadRequestException.class, () -> exportService.export(
+                "url1", null, null, last, "not-an-id", ClickExportService.Format.CSV, false));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void export_WritesCsvWithQuotedFields() throws Exception {
+        ClickEvent plain = click("https://example.com");
+        ClickEvent quoted = click("https://example.com/?a=1,b=\"2\"");
+
+        String[] lines = export(ClickExportService.Format.CSV, plain, quoted).split("\r\n");
+
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("id,timestamp,referer,country,"));
+        assertTrue(lines[1].startsWith(plain.getId() + ",2024-03-01T12:00,https://example.com,DE,"));
+        assertTrue(lines[2].contains(",\"https://example.com/?a=1,b=\"\"2\"\"\",DE,"));
+    }
+
+    @Test
+    void export_WritesOneJsonObjectPerLine() throws Exception {
+        ClickEvent first = click("https://example.com");
+        ClickEvent second = click(null);
+
+        String body = export(ClickExportService.Format.NDJSON, first, second);
+
+        assertTrue(body.endsWith("\n"));
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        JsonNode row = objectMapper.readTree(lines[0]);
+        assertEquals(first.getId(), row.get("id").asText());
+        assertEquals("https://example.com", row.get("referer").asText());
+        assertTrue(objectMapper.readTree(lines[1]).get("referer").isNull());
+    }
+}
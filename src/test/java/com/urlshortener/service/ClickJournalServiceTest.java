@@ -0,0 +1,107 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickCapture;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClickJournalServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private ClickEventWriter clickEventWriter;
+
+    private ClickJournalService journalService;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (journalService != null) {
+            journalService.stop();
+        }
+    }
+
+    private void start() {
+        journalService = new ClickJournalService(clickEventWriter, new SimpleMeterRegistry(), true,
+                directory.toString(), 64 * 1024, 4, 100, 1, 3);
+        journalService.start();
+    }
+
+    private static ClickCapture capture(String urlId) {
+        return ClickCapture.builder().timestampNanos(System.nanoTime()).urlId(urlId).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void replay_PoisonRecordIsDeadLetteredAndTheRestIsWritten() throws Exception {
+        Set<String> written = ConcurrentHashMap.newKeySet();
+        doAnswer(invocation -> {
+            List<ClickCapture> batch = invocation.getArgument(0);
+            if (batch.stream().anyMatch(capture -> "poison".equals(capture.getUrlId()))) {
+                throw new IllegalStateException("cannot encode");
+            }
+            batch.forEach(capture -> written.add(capture.getUrlId()));
+            return null;
+        }).when(clickEventWriter).write(anyList());
+        start();
+
+        journalService.append(capture("url-1"));
+        journalService.append(capture("poison"));
+        journalService.append(capture("url-2"));
+        awaitTrue(() -> written.containsAll(Set.of("url-1", "url-2")));
+
+        Path deadLetters = directory.resolve(ClickJournalService.DEAD_LETTER_FILE);
+        awaitTrue(() -> Files.exists(deadLetters));
+        byte[] bytes = Files.readAllBytes(deadLetters);
+        byte[] record = new byte[bytes.length - 4];
+        System.arraycopy(bytes, 4, record, 0, record.length);
+        assertEquals("poison", ClickJournalService.decode(record).getUrlId());
+        awaitTrue(() -> (Long) journalService.getStats().get("pendingBytes") == 0);
+    }
+
+    @Test
+    void replay_OutageIsRetriedWithoutDeadLettering() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (calls.incrementAndGet() <= 10) {
+                throw new DataAccessResourceFailureException("no primary");
+            }
+            return null;
+        }).when(clickEventWriter).write(anyList());
+        start();
+
+        journalService.append(capture("url-1"));
+        journalService.append(capture("url-2"));
+        awaitTrue(() -> calls.get() > 10);
+        awaitTrue(() -> (Long) journalService.getStats().get("pendingBytes") == 0);
+
+        assertFalse(Files.exists(directory.resolve(ClickJournalService.DEAD_LETTER_FILE)));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
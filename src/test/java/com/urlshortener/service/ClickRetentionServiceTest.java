@@ -0,0 +1,222 @@
+package com.urlshortener.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.repository.ClickEventStorage;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ClickRetentionServiceTest {
+
+    private static final String CHECKPOINTS = "click_retention";
+
+    @TempDir
+    Path archive;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ClickRollupService clickRollupService;
+
+    @Mock
+    private ClickRollupService.DayRebuild dayRebuild;
+
+    private final LocalDate day = LocalDate.now(ZoneOffset.UTC).minusDays(400);
+    private final List<ClickEvent> stored = new ArrayList<>();
+    private final List<String> recounted = new ArrayList<>();
+    private final AtomicBoolean failArchivedSave = new AtomicBoolean();
+    private final AtomicBoolean leaseHeldElsewhere = new AtomicBoolean();
+    private final AtomicBoolean interruptOnDelete = new AtomicBoolean();
+    private Document checkpoint;
+    private int parts;
+    private ClickRetentionService retentionService;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        retentionService = new ClickRetentionService(mongoTemplate, clickRollupService,
+                new ClickEventStorage(ClickEventStorage.Mode.STANDARD, null, 0), objectMapper,
+                true, 365, archive.toString(), 100, 0, 31, 60_000);
+
+        when(mongoTemplate.findById("checkpoint", Document.class, CHECKPOINTS))
+                .thenAnswer(invocation -> checkpoint != null ? new Document(checkpoint) : null);
+        when(mongoTemplate.findById("day-" + day, Document.class, CHECKPOINTS))
+                .thenAnswer(invocation -> parts > 0 ? new Document("parts", parts) : null);
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(CHECKPOINTS))).thenAnswer(invocation -> {
+            Document max = (Document) invocation.<Update>getArgument(1).getUpdateObject().get("$max");
+            if (max == null && leaseHeldElsewhere.get()) {
+                throw new DuplicateKeyException("lease");
+            }
+            if (max != null) {
+                parts = Math.max(parts, max.getInteger("parts"));
+            }
+            return UpdateResult.acknowledged(1, 1L, null);
+        });
+        when(mongoTemplate.save(any(Document.class), eq(CHECKPOINTS))).thenAnswer(invocation -> {
+            Document saved = invocation.getArgument(0);
+            if ("ARCHIVED".equals(saved.getString("phase")) && failArchivedSave.getAndSet(false)) {
+                throw new IllegalStateException("primary stepped down");
+            }
+            checkpoint = new Document(saved);
+            return saved;
+        });
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(CHECKPOINTS))).thenAnswer(invocation -> {
+            Document set = (Document) invocation.<Update>getArgument(1).getUpdateObject().get("$set");
+            if (set != null && !set.containsKey("expiresAt")) {
+                checkpoint.putAll(set);
+            }
+            return UpdateResult.acknowledged(1, 1L, null);
+        });
+
+        when(mongoTemplate.findOne(any(Query.class), eq(ClickEvent.class)))
+                .thenAnswer(invocation -> stored.isEmpty() ? null : stored.get(0));
+        when(mongoTemplate.stream(any(Query.class), eq(ClickEvent.class)))
+                .thenAnswer(invocation -> new ArrayList<>(stored).stream());
+        when(mongoTemplate.getCollectionName(ClickEvent.class)).thenReturn(ClickEventStorage.STANDARD_COLLECTION);
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(ClickEventStorage.STANDARD_COLLECTION)))
+                .thenAnswer(invocation -> stored.stream().map(event -> new Document("_id", event.getId()))
+                        .collect(Collectors.toList()));
+        when(mongoTemplate.remove(any(Query.class), eq(ClickEventStorage.STANDARD_COLLECTION))).thenAnswer(invocation -> {
+            long deleted = stored.size();
+            stored.clear();
+            if (interruptOnDelete.get()) {
+                Thread.currentThread().interrupt();
+            }
+            return DeleteResult.acknowledged(deleted);
+        });
+
+        when(clickRollupService.rebuildDay(day)).thenReturn(dayRebuild);
+        doAnswer(invocation -> recounted.add(invocation.<ClickEvent>getArgument(0).getUrlId()))
+                .when(dayRebuild).add(any(ClickEvent.class));
+    }
+
+    private void click(String urlId) {
+        LocalDateTime timestamp = LocalDateTime.ofInstant(day.atTime(12, 0).toInstant(ZoneOffset.UTC), ZoneId.systemDefault());
+        stored.add(ClickEvent.builder().id(new ObjectId().toHexString()).urlId(urlId).timestamp(timestamp).build());
+    }
+
+    private List<String> archivedUrlIds(int part) throws Exception {
+        Path file = retentionService.archiveFile(day, part);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            List<String> urlIds = new ArrayList<>();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                urlIds.add(objectMapper.readValue(line, ClickEvent.class).getUrlId());
+            }
+            return urlIds;
+        }
+    }
+
+    @Test
+    void run_InterruptedAfterTheFileMoveRewritesTheSamePart() throws Exception {
+        click("url1");
+        click("url2");
+        failArchivedSave.set(true);
+
+        assertThrows(IllegalStateException.class, retentionService::run);
+        assertEquals(2, stored.size());
+
+        Map<String, Object> result = retentionService.run();
+
+        assertEquals(1, result.get("days"));
+        assertEquals(2L, result.get("deleted"));
+        assertEquals(List.of("url1", "url2"), archivedUrlIds(0));
+        assertFalse(Files.exists(retentionService.archiveFile(day, 1)));
+        assertEquals("DONE", checkpoint.getString("phase"));
+    }
+
+    @Test
+    void run_LateClicksForAnArchivedDayRecountEveryPart() throws Exception {
+        click("url1");
+        click("url2");
+        retentionService.run();
+        click("late");
+        recounted.clear();
+
+        retentionService.run();
+
+        assertEquals(List.of("late"), archivedUrlIds(1));
+        assertEquals(List.of("url1", "url2", "late"), recounted);
+        verify(dayRebuild, times(2)).commit();
+    }
+
+    @Test
+    void run_LeavesRollupsAloneWhenAnEarlierPartIsMissing() throws Exception {
+        click("url1");
+        retentionService.run();
+        Files.delete(retentionService.archiveFile(day, 0));
+        click("late");
+
+        retentionService.run();
+
+        assertEquals(List.of("late"), archivedUrlIds(1));
+        assertFalse(Files.exists(retentionService.archiveFile(day, 0)));
+        verify(dayRebuild, times(1)).commit();
+    }
+
+    @Test
+    void run_SkipsWhileAnotherInstanceHoldsTheLease() {
+        click("url1");
+        leaseHeldElsewhere.set(true);
+
+        Map<String, Object> result = retentionService.run();
+
+        assertNotNull(result.get("skipped"));
+        assertEquals(1, stored.size());
+        assertNull(checkpoint);
+        verify(mongoTemplate, never()).stream(any(Query.class), eq(ClickEvent.class));
+    }
+
+    @Test
+    void run_StopsDeletingWhenInterruptedAndReleasesTheLease() {
+        click("url1");
+        interruptOnDelete.set(true);
+
+        try {
+            assertThrows(IllegalStateException.class, retentionService::run);
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertEquals("ARCHIVED", checkpoint.getString("phase"));
+        verify(mongoTemplate).remove(any(Query.class), eq(CHECKPOINTS));
+    }
+}
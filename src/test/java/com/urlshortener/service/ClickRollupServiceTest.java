@@ -0,0 +1,97 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.model.ClickRollup;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClickRollupServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    private ClickRollupService clickRollupService;
+
+    @BeforeEach
+    void setUp() {
+        clickRollupService = new ClickRollupService(mongoTemplate, 2, 90, 0);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ClickRollup.class)).thenReturn(bulkOperations);
+    }
+
+    private static ClickEvent click(LocalDateTime timestamp) {
+        return ClickEvent.builder().urlId("url1").userId("user1").country("DE").timestamp(timestamp).build();
+    }
+
+    @Test
+    void onBatch_IncrementsEveryRetainedTierOncePerBatch() {
+        LocalDateTime now = LocalDateTime.now();
+
+        clickRollupService.onBatch(List.of(click(now), click(now)));
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(5)).upsert(queries.capture(), updates.capture());
+        verify(bulkOperations).execute();
+        assertTrue(queries.getAllValues().stream().map(query -> query.getQueryObject().getString("_id"))
+                .collect(Collectors.toSet())
+                .contains(ClickRollup.idFor("url1", ClickRollup.Granularity.TOTAL, ClickRollup.TOTAL_BUCKET)));
+        for (Update update : updates.getAllValues()) {
+            assertEquals(2L, ((Document) update.getUpdateObject().get("$inc")).get("totalClicks"));
+        }
+    }
+
+    @Test
+    void onBatch_SkipsTiersThatWouldBePrunedForReplayedClicks() {
+        clickRollupService.onBatch(List.of(click(LocalDateTime.now().minusDays(30))));
+
+        // HOUR, DAY, MONTH and TOTAL; the minute tier keeps only two days
+        verify(bulkOperations, times(4)).upsert(any(Query.class), any(Update.class));
+    }
+
+    @Test
+    void onBatch_LeavesAFailedWriteToTheCaller() {
+        when(bulkOperations.execute()).thenThrow(new IllegalStateException("down"));
+
+        assertThrows(IllegalStateException.class, () -> clickRollupService.onBatch(List.of(click(LocalDateTime.now()))));
+    }
+
+    @Test
+    void rebuildDay_OverwritesCountersInsteadOfIncrementing() {
+        LocalDate day = LocalDate.now(ZoneOffset.UTC).minusDays(400);
+        LocalDateTime timestamp = LocalDateTime.ofInstant(day.atTime(12, 0).toInstant(ZoneOffset.UTC), ZoneId.systemDefault());
+        ClickRollupService.DayRebuild rebuild = clickRollupService.rebuildDay(day);
+        rebuild.add(click(timestamp));
+        rebuild.add(click(timestamp));
+
+        assertEquals(1, rebuild.commit());
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations).upsert(any(Query.class), update.capture());
+        assertNull(update.getValue().getUpdateObject().get("$inc"));
+        assertEquals(2L, ((Document) update.getValue().getUpdateObject().get("$set")).get("totalClicks"));
+    }
+}
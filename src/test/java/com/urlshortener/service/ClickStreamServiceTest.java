@@ -0,0 +1,130 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitterReturnValueHandler;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClickStreamServiceTest {
+
+    // Holds the sends until the test runs them, standing in for the task executor
+    private final List<Runnable> queued = new ArrayList<>();
+
+    private final ResponseBodyEmitterReturnValueHandler handler = new ResponseBodyEmitterReturnValueHandler(List.of(
+            new StringHttpMessageConverter(),
+            new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build())));
+
+    private ClickStreamService streamService(int bufferSize, long heartbeatMs) {
+        return new ClickStreamService(queued::add, new SimpleMeterRegistry(), bufferSize, 60_000, heartbeatMs, 2);
+    }
+
+    private static SseEmitter sseEndpoint() {
+        return null;
+    }
+
+    // Hands the emitter to MVC the way a controller return does, so sends reach the response
+    private MockHttpServletResponse open(SseEmitter emitter) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        NativeWebRequest webRequest = new ServletWebRequest(request, response);
+        WebAsyncUtils.getAsyncManager(webRequest).setAsyncWebRequest(new StandardServletAsyncWebRequest(request, response));
+        MethodParameter returnType = new MethodParameter(ClickStreamServiceTest.class.getDeclaredMethod("sseEndpoint"), -1);
+        handler.handleReturnValue(emitter, returnType, new ModelAndViewContainer(), webRequest);
+        return response;
+    }
+
+    private static ClickEvent click(String userId, String urlId) {
+        return ClickEvent.builder().userId(userId).urlId(urlId).timestamp(LocalDateTime.now())
+                .country("DE").referer("https://www.example.com/page").build();
+    }
+
+    private void flush(ClickStreamService streamService) {
+        streamService.flush();
+        List<Runnable> sends = new ArrayList<>(queued);
+        queued.clear();
+        sends.forEach(Runnable::run);
+    }
+
+    @Test
+    void flush_CoalescesAUsersClicksIntoOneEvent() throws Exception {
+        ClickStreamService streamService = streamService(10, 60_000);
+        MockHttpServletResponse response = open(streamService.subscribe("user1", null));
+
+        streamService.onBatch(List.of(click("user1", "url1"), click("user1", "url1"),
+                click("user1", "url2"), click("user2", "url1")));
+        flush(streamService);
+
+        String body = response.getContentAsString();
+        assertTrue(body.startsWith(":connected\n\n"));
+        assertEquals(1, body.split("event:clicks").length - 1);
+        assertTrue(body.contains("\"url1\":2"));
+        assertTrue(body.contains("\"url2\":1"));
+        assertTrue(body.contains("\"refererDomain\":\"example.com\""));
+        assertTrue(body.contains("\"droppedClicks\":0"));
+    }
+
+    @Test
+    void onBatch_FiltersToTheSubscribedLinkAndCountsDroppedSummaries() throws Exception {
+        ClickStreamService streamService = streamService(2, 60_000);
+        MockHttpServletResponse response = open(streamService.subscribe("user1", "url1"));
+
+        streamService.onBatch(List.of(click("user1", "url1"), click("user1", "url2"),
+                click("user1", "url1"), click("user1", "url1")));
+        flush(streamService);
+
+        String body = response.getContentAsString();
+        assertTrue(body.contains("\"clicksByUrl\":{\"url1\":3}"));
+        assertTrue(body.contains("\"droppedClicks\":1"));
+        assertFalse(body.contains("url2"));
+    }
+
+    @Test
+    void flush_SendsNothingUntilAClickOrHeartbeatIsDue() throws Exception {
+        ClickStreamService quiet = streamService(10, 60_000);
+        open(quiet.subscribe("user1", null));
+        quiet.flush();
+        assertTrue(queued.isEmpty());
+
+        ClickStreamService heartbeat = streamService(10, 0);
+        MockHttpServletResponse response = open(heartbeat.subscribe("user1", null));
+        flush(heartbeat);
+        assertTrue(response.getContentAsString().contains(":keepalive\n\n"));
+    }
+
+    @Test
+    void subscribe_OverThePerUserLimitClosesTheOldestConnection() throws Exception {
+        ClickStreamService streamService = streamService(10, 60_000);
+        MockHttpServletResponse oldest = open(streamService.subscribe("user1", null));
+        MockHttpServletResponse second = open(streamService.subscribe("user1", null));
+        MockHttpServletResponse newest = open(streamService.subscribe("user1", null));
+        open(streamService.subscribe("user2", null));
+
+        assertEquals(3, streamService.getSubscriberCount());
+
+        streamService.onBatch(List.of(click("user1", "url1")));
+        flush(streamService);
+
+        assertFalse(oldest.getContentAsString().contains("event:clicks"));
+        assertTrue(second.getContentAsString().contains("event:clicks"));
+        assertTrue(newest.getContentAsString().contains("event:clicks"));
+    }
+}
@@ -0,0 +1,150 @@
+package com.urlshortener.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoApiClientTest {
+
+    private static final String SUCCESS = "{\"status\":\"success\",\"country\":\"Japan\",\"countryCode\":\"JP\","
+            + "\"regionName\":\"Tokyo\",\"city\":\"Tokyo\",\"timezone\":\"Asia/Tokyo\",\"isp\":\"Example\","
+            + "\"lat\":35.69,\"lon\":139.69}";
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/batch", this::handleBatch);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    // Answers every requested address except 198.51.100.1, which the provider cannot locate
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        String requested = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        StringBuilder body = new StringBuilder("[");
+        for (String ipAddress : requested.replaceAll("[\\[\\]\"]", "").split(",")) {
+            if (body.length() > 1) {
+                body.append(',');
+            }
+            body.append(ipAddress.equals("198.51.100.1")
+                    ? "{\"status\":\"fail\",\"query\":\"" + ipAddress + "\"}"
+                    : SUCCESS.replace("{\"status\"", "{\"query\":\"" + ipAddress + "\",\"status\""));
+        }
+        byte[] bytes = body.append(']').toString().getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private GeoApiClient client(long requestTimeoutMs, int failureThreshold) {
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        return new GeoApiClient(base + "/batch", 2, 500, requestTimeoutMs, 32, failureThreshold, 60_000);
+    }
+
+    private static GeoLocationService.GeoLocation lookup(GeoApiClient client, String ipAddress) {
+        return client.lookupBatch(List.of(ipAddress)).join().get(ipAddress);
+    }
+
+    @Test
+    void lookupBatch_ParsesSuccessfulResponse() {
+        GeoLocationService.GeoLocation location = lookup(client(2000, 3), "203.0.113.7");
+
+        assertEquals("Japan", location.getCountry());
+        assertEquals("JP", location.getCountryCode());
+        assertEquals("Tokyo", location.getCity());
+        assertEquals(139.69, location.getLongitude(), 0.001);
+    }
+
+    @Test
+    void lookupBatch_CoalescesConcurrentRequestsForSameAddress() {
+        release = new CountDownLatch(1);
+        GeoApiClient client = client(2000, 3);
+
+        List<CompletableFuture<Map<String, GeoLocationService.GeoLocation>>> lookups = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            lookups.add(client.lookupBatch(List.of("203.0.113.7")));
+        }
+        release.countDown();
+
+        for (CompletableFuture<Map<String, GeoLocationService.GeoLocation>> lookup : lookups) {
+            assertEquals("Japan", lookup.join().get("203.0.113.7").getCountry());
+        }
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void lookupBatch_TimesOutToUnknown() {
+        release = new CountDownLatch(1);
+        GeoApiClient client = client(200, 3);
+
+        long started = System.nanoTime();
+        GeoLocationService.GeoLocation location = lookup(client, "203.0.113.7");
+        release.countDown();
+
+        assertEquals("Unknown", location.getCountry());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 2000);
+    }
+
+    @Test
+    void lookupBatch_FailsFastOnceCircuitOpens() {
+        status = 503;
+        GeoApiClient client = client(2000, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("Unknown", lookup(client, "203.0.113." + i).getCountry());
+        }
+        assertEquals(GeoApiClient.State.OPEN, client.getState());
+
+        assertEquals("Unknown", lookup(client, "203.0.113.50").getCountry());
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void lookupBatch_SendsOneRequestPerBatchOfDistinctAddresses() {
+        GeoApiClient client = client(2000, 3);
+
+        Map<String, GeoLocationService.GeoLocation> locations = client.lookupBatch(
+                List.of("203.0.113.1", "203.0.113.2", "203.0.113.1", "198.51.100.1")).join();
+
+        assertEquals(3, locations.size());
+        assertEquals("Japan", locations.get("203.0.113.1").getCountry());
+        assertEquals("Japan", locations.get("203.0.113.2").getCountry());
+        assertEquals("Unknown", locations.get("198.51.100.1").getCountry());
+        // Batch size 2: three distinct addresses take two requests
+        assertEquals(2, requests.get());
+    }
+}
@@ -0,0 +1,103 @@
+package com.urlshortener.service;
+
+import com.urlshortener.util.IpAddresses;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoDatabaseServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private GeoDatabaseService service(Path file) {
+        return new GeoDatabaseService(new SimpleMeterRegistry(), file.toString());
+    }
+
+    private static GeoLocationService.GeoLocation lookup(GeoDatabaseService service, String address) {
+        return service.lookup(IpAddresses.parse(address));
+    }
+
+    // Each write gets a distinct modification time, so the poll sees it as a new file
+    private static void writeGzip(Path file, long modifiedAt, String... lines) throws IOException {
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(file))) {
+            output.write(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        }
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modifiedAt));
+    }
+
+    @Test
+    void splitCsv_HandlesQuotedCommasAndEscapedQuotes() {
+        assertEquals(List.of("1.0.0.0", "1.0.0.255", "AU", "Australia"),
+                GeoDatabaseService.splitCsv("1.0.0.0, 1.0.0.255 ,AU,Australia"));
+        assertEquals(List.of("a", "Washington, D.C.", "say \"hi\"", ""),
+                GeoDatabaseService.splitCsv("a,\"Washington, D.C.\",\"say \"\"hi\"\"\","));
+    }
+
+    @Test
+    void reload_FillsOmittedColumnsAndSkipsBadLines() throws Exception {
+        Path file = directory.resolve("geo.csv");
+        Files.writeString(file, String.join("\n",
+                "# start,end,countryCode,country,region,city,latitude,longitude,timezone,isp",
+                "203.0.113.0,203.0.113.255,DE,Germany,Berlin,\"Berlin, Mitte\",52.52,13.40,Europe/Berlin,Example ISP",
+                "198.51.100.0,198.51.100.255,FR",
+                "",
+                "not-an-ip,198.51.100.255,XX",
+                "192.0.2.0,2001:db8::1,XX"));
+        GeoDatabaseService service = service(file);
+
+        service.reload();
+
+        GeoLocationService.GeoLocation full = lookup(service, "203.0.113.7");
+        assertEquals("Berlin, Mitte", full.getCity());
+        assertEquals(52.52, full.getLatitude());
+        assertEquals("Example ISP", full.getIsp());
+        GeoLocationService.GeoLocation partial = lookup(service, "198.51.100.7");
+        assertEquals("FR", partial.getCountryCode());
+        assertEquals("Unknown", partial.getCity());
+        assertEquals(0, partial.getLatitude());
+        assertNull(lookup(service, "192.0.2.1"));
+        assertEquals(2, service.getStats().get("ranges"));
+    }
+
+    @Test
+    void reloadIfChanged_KeepsTheLoadedTableWhenTheNewFileIsBroken() throws Exception {
+        Path file = directory.resolve("geo.csv.gz");
+        writeGzip(file, 1_000_000, "203.0.113.0,203.0.113.255,DE");
+        GeoDatabaseService service = service(file);
+        service.reloadIfChanged();
+        assertEquals("DE", lookup(service, "203.0.113.7").getCountryCode());
+
+        Files.write(file, "203.0.113.0,203.0.113.255,FR".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2_000_000));
+        service.reloadIfChanged();
+
+        assertEquals("DE", lookup(service, "203.0.113.7").getCountryCode());
+
+        writeGzip(file, 3_000_000, "203.0.113.0,203.0.113.255,FR");
+        service.reloadIfChanged();
+
+        assertEquals("FR", lookup(service, "203.0.113.7").getCountryCode());
+    }
+
+    @Test
+    void lookup_ReturnsNullUntilADatabaseIsLoaded() {
+        GeoDatabaseService service = service(directory.resolve("missing.csv"));
+
+        service.reloadIfChanged();
+
+        assertFalse(service.isLoaded());
+        assertNull(lookup(service, "203.0.113.7"));
+    }
+}
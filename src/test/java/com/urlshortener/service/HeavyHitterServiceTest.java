@@ -0,0 +1,81 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.model.HeavyHitters;
+import com.urlshortener.util.SpaceSaving;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HeavyHitterServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private HeavyHitterService heavyHitterService;
+
+    @BeforeEach
+    void setUp() {
+        heavyHitterService = new HeavyHitterService(mongoTemplate, 8);
+        heavyHitterService.onBatch(List.of(ClickEvent.builder()
+                .urlId("url1").userId("user1").country("DE").browser("Firefox").timestamp(LocalDateTime.now()).build()));
+    }
+
+    @Test
+    void flush_RemergesAgainstTheNewerSummariesAfterAConcurrentWrite() {
+        HeavyHitters concurrent = HeavyHitters.builder().id("url1").userId("user1").capacity(8).version(3)
+                .countries(List.of(HeavyHitters.Entry.builder().item("US").count(5).build()))
+                .build();
+        when(mongoTemplate.findById("url1", HeavyHitters.class)).thenReturn(null, concurrent);
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(HeavyHitters.class)))
+                .thenThrow(new DuplicateKeyException("_id"))
+                .thenReturn(null);
+
+        heavyHitterService.flush();
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).upsert(queries.capture(), updates.capture(), eq(HeavyHitters.class));
+        assertEquals(3L, queries.getValue().getQueryObject().get("version"));
+        Document retried = (Document) updates.getValue().getUpdateObject().get("$set");
+        assertEquals(4L, retried.get("version"));
+        List<?> countries = (List<?>) retried.get("countries");
+        assertEquals(List.of("US", "DE"), countries.stream()
+                .map(entry -> ((HeavyHitters.Entry) entry).getItem()).collect(Collectors.toList()));
+    }
+
+    @Test
+    void flush_KeepsTheSummariesPendingWhenTheWriteFails() {
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(HeavyHitters.class)))
+                .thenThrow(new IllegalStateException("down"));
+
+        heavyHitterService.flush();
+
+        List<SpaceSaving.Counter> countries = heavyHitterService.getSummaries("url1").getCountries().top(8);
+        assertEquals(1, countries.size());
+        assertEquals("DE", countries.get(0).getItem());
+
+        reset(mongoTemplate);
+        heavyHitterService.flush();
+
+        verify(mongoTemplate).upsert(any(Query.class), any(Update.class), eq(HeavyHitters.class));
+    }
+}
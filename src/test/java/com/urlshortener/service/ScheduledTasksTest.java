@@ -0,0 +1,66 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.RedirectEntry;
+import com.urlshortener.model.Url;
+import com.urlshortener.repository.UrlRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ScheduledTasksTest {
+
+    @Mock
+    private UrlRepository urlRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private RedirectTableService redirectTableService;
+
+    @Mock
+    private UserDashboardService userDashboardService;
+
+    @Mock
+    private ClickRetentionService clickRetentionService;
+
+    @InjectMocks
+    private ScheduledTasks scheduledTasks;
+
+    @Test
+    void deactivateExpiredUrls_OnlyClearsActiveFlagAndKeepsClickCount() {
+        Url url = Url.builder()
+                .id("url123")
+                .shortCode("abc123")
+                .originalUrl("https://www.example.com")
+                .userId("user123")
+                .clickCount(42)
+                .expiresAt(LocalDateTime.now().minusDays(1))
+                .build();
+        when(urlRepository.findExpiredUrls(any())).thenReturn(List.of(url));
+
+        scheduledTasks.deactivateExpiredUrls();
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(Url.class));
+        assertTrue(update.getValue().modifies("isActive"));
+        assertFalse(update.getValue().modifies("clickCount"));
+        verify(urlRepository, never()).save(any());
+        verify(redirectTableService).put(any(RedirectEntry.class));
+        verify(userDashboardService).onUrlsExpired("user123");
+    }
+}
@@ -0,0 +1,104 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.Url;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShortCodeFilterServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private final List<Url> urls = new ArrayList<>();
+    private ShortCodeFilterService filterService;
+
+    @BeforeEach
+    void setUp() {
+        filterService = new ShortCodeFilterService(mongoTemplate, true, 0.01, 1000, 100, 60);
+        when(mongoTemplate.estimatedCount(Url.class)).thenReturn(0L);
+        // The mock ignores the _id criteria, like a window that never advances
+        when(mongoTemplate.stream(any(Query.class), eq(Url.class)))
+                .thenAnswer(invocation -> new ArrayList<>(urls).stream());
+    }
+
+    private String insert(String shortCode, long secondsAgo) {
+        Date createdAt = new Date(System.currentTimeMillis() - secondsAgo * 1000);
+        String id = new ObjectId(createdAt).toHexString();
+        urls.add(Url.builder().id(id).shortCode(shortCode).build());
+        return id;
+    }
+
+    @Test
+    void refresh_WithoutNewInsertsKeepsCodesRemovable() {
+        insert("old111", 600);
+        String recent = insert("recent", 10);
+        filterService.rebuild();
+
+        for (int i = 0; i < 40; i++) {
+            filterService.refresh();
+        }
+        filterService.remove(recent, "recent");
+
+        assertFalse(filterService.mightExist("recent"));
+        assertTrue(filterService.mightExist("old111"));
+    }
+
+    @Test
+    void refresh_AddsCodesCreatedElsewhereOnce() {
+        insert("old111", 600);
+        filterService.rebuild();
+        String remote = insert("remote", 1);
+
+        for (int i = 0; i < 40; i++) {
+            filterService.refresh();
+        }
+        assertTrue(filterService.mightExist("remote"));
+
+        filterService.remove(remote, "remote");
+        assertFalse(filterService.mightExist("remote"));
+    }
+
+    @Test
+    void refresh_SkipsCodesAddedLocally() {
+        insert("old111", 600);
+        filterService.rebuild();
+        String local = insert("local1", 1);
+        filterService.add("local1");
+
+        filterService.refresh();
+        filterService.refresh();
+        filterService.remove(local, "local1");
+
+        assertFalse(filterService.mightExist("local1"));
+    }
+
+    @Test
+    void remove_LeavesCountersAloneForIdsRefreshHasNotSeen() {
+        String counted = insert("alias1", 600);
+        filterService.rebuild();
+        // The code was deleted and taken again elsewhere; this instance has not refreshed since
+        String unseen = new ObjectId(new Date(System.currentTimeMillis() + 1000)).toHexString();
+
+        filterService.remove(unseen, "alias1");
+
+        assertTrue(filterService.mightExist("alias1"));
+        filterService.remove(counted, "alias1");
+        assertFalse(filterService.mightExist("alias1"));
+    }
+}
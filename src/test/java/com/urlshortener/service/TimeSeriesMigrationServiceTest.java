@@ -0,0 +1,146 @@
+package com.urlshortener.service;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import com.urlshortener.exception.BadRequestException;
+import com.urlshortener.repository.ClickDictionary;
+import com.urlshortener.repository.ClickEventCodec;
+import com.urlshortener.repository.ClickEventStorage;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TimeSeriesMigrationServiceTest {
+
+    private static final String CHECKPOINTS = "click_events_ts_migration";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ClickDictionary dictionary;
+
+    @Mock
+    private MongoCollection<Document> target;
+
+    // Holds the chunk copies until the test runs them, standing in for the worker pool
+    private final List<Runnable> queued = new ArrayList<>();
+
+    private TimeSeriesMigrationService migrationService(ClickEventStorage.Mode mode) {
+        return new TimeSeriesMigrationService(mongoTemplate, new ClickEventCodec(dictionary, ClickEventCodec.Format.V2),
+                new ClickEventStorage(mode, null, 0), queued::add, 4, 100);
+    }
+
+    private void stubOneChunk() {
+        Document chunk = new Document("_id", 0).append("from", new ObjectId()).append("to", null)
+                .append("copied", 0L).append("done", false);
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(CHECKPOINTS))).thenReturn(List.of(chunk));
+        when(mongoTemplate.findAll(Document.class, CHECKPOINTS)).thenReturn(List.of(chunk));
+    }
+
+    private static Document click() {
+        return new Document("_id", new ObjectId()).append("urlId", "url1").append("timestamp", new Date());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void migrate_ReturnsBeforeCopyingAndReportsTheRunWhenItEnds() {
+        stubOneChunk();
+        when(mongoTemplate.getCollection(ClickEventStorage.TIME_SERIES_COLLECTION)).thenReturn(target);
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq(ClickEventStorage.STANDARD_COLLECTION)))
+                .thenReturn(Stream.of(click(), click()));
+        TimeSeriesMigrationService migrationService = migrationService(ClickEventStorage.Mode.TIME_SERIES);
+
+        Map<String, Object> started = migrationService.migrate();
+
+        assertEquals(true, started.get("running"));
+        assertEquals(1, queued.size());
+        verifyNoInteractions(target);
+
+        queued.forEach(Runnable::run);
+
+        verify(target).insertMany(anyList(), any(InsertManyOptions.class));
+        Map<String, Object> status = migrationService.getStatus();
+        assertEquals(false, status.get("running"));
+        assertEquals(2L, ((Map<String, Object>) status.get("lastRun")).get("copied"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void migrate_RecordsAFailedChunkAndCanBeStartedAgain() {
+        stubOneChunk();
+        when(mongoTemplate.getCollection(ClickEventStorage.TIME_SERIES_COLLECTION)).thenReturn(target);
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq(ClickEventStorage.STANDARD_COLLECTION)))
+                .thenThrow(new IllegalStateException("cursor killed"));
+        TimeSeriesMigrationService migrationService = migrationService(ClickEventStorage.Mode.TIME_SERIES);
+
+        migrationService.migrate();
+        assertEquals(true, migrationService.migrate().get("running"));
+        assertEquals(1, queued.size());
+        queued.remove(0).run();
+
+        Map<String, Object> status = migrationService.getStatus();
+        assertEquals(false, status.get("running"));
+        assertEquals("cursor killed", ((Map<String, Object>) status.get("lastRun")).get("error"));
+
+        migrationService.migrate();
+        assertEquals(1, queued.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void migrate_SkipsEventsTheInterruptedBatchAlreadyInserted() {
+        Document copied = click();
+        Document notCopied = click();
+        Document chunk = new Document("_id", 0).append("from", new ObjectId(new Date(0))).append("to", null)
+                .append("inFlightTo", notCopied.getObjectId("_id")).append("copied", 0L).append("done", false);
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(CHECKPOINTS))).thenReturn(List.of(chunk));
+        when(mongoTemplate.getCollection(ClickEventStorage.TIME_SERIES_COLLECTION)).thenReturn(target);
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq(ClickEventStorage.STANDARD_COLLECTION)))
+                .thenReturn(Stream.of(copied, notCopied));
+        FindIterable<Document> found = mock(FindIterable.class);
+        when(target.find(any(Bson.class))).thenReturn(found);
+        when(found.projection(any())).thenReturn(found);
+        when(found.into(any())).thenAnswer(invocation -> {
+            List<Document> into = invocation.getArgument(0);
+            into.add(new Document("_id", copied.getObjectId("_id")));
+            return into;
+        });
+        TimeSeriesMigrationService migrationService = migrationService(ClickEventStorage.Mode.TIME_SERIES);
+
+        migrationService.migrate();
+        queued.forEach(Runnable::run);
+
+        ArgumentCaptor<List<Document>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(target).insertMany(inserted.capture(), any(InsertManyOptions.class));
+        assertEquals(1, inserted.getValue().size());
+        assertEquals(notCopied.getObjectId("_id"), inserted.getValue().get(0).get("_id"));
+    }
+
+    @Test
+    void migrate_RejectsStandardStorage() {
+        TimeSeriesMigrationService migrationService = migrationService(ClickEventStorage.Mode.STANDARD);
+
+        assertThrows(BadRequestException.class, migrationService::migrate);
+        assertTrue(queued.isEmpty());
+    }
+}
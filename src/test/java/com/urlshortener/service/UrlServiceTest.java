@@ -1,6 +1,8 @@
 package com.urlshortener.service;
 
+import com.mongodb.client.result.DeleteResult;
 import com.urlshortener.dto.request.CreateUrlRequest;
+import com.urlshortener.dto.request.UpdateUrlRequest;
 import com.urlshortener.dto.response.UrlResponse;
 import com.urlshortener.exception.DuplicateResourceException;
 import com.urlshortener.exception.ResourceNotFoundException;
@@ -11,18 +13,24 @@ import com.urlshortener.util.ShortCodeGenerator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,6 +39,9 @@ class UrlServiceTest {
     @Mock
     private UrlRepository urlRepository;
 
+    @Mock
+    private MongoTemplate mongoTemplate;
+
     @Mock
     private ShortCodeGenerator shortCodeGenerator;
 
@@ -43,6 +54,18 @@ class UrlServiceTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private ClickCounterService clickCounterService;
+
+    @Mock
+    private ShortCodeFilterService shortCodeFilterService;
+
+    @Mock
+    private RedirectTableService redirectTableService;
+
+    @Mock
+    private UserDashboardService userDashboardService;
+
     @InjectMocks
     private UrlService urlService;
 
@@ -90,6 +113,7 @@ class UrlServiceTest {
         assertEquals("abc123", response.getShortCode());
         assertEquals("https://www.example.com/very-long-url", response.getOriginalUrl());
         verify(urlRepository).save(any(Url.class));
+        verify(shortCodeFilterService).add("abc123");
     }
 
     @Test
@@ -139,12 +163,59 @@ class UrlServiceTest {
 
     @Test
     void incrementClickCount_Success() {
+        urlService.incrementClickCount("abc123");
+
+        verify(clickCounterService).increment("abc123");
+        verifyNoInteractions(urlRepository);
+    }
+
+    @Test
+    void deleteUrlAsAdmin_RemovesEveryDerivedCopy() {
         when(urlRepository.findByShortCode("abc123")).thenReturn(Optional.of(testUrl));
-        when(urlRepository.save(any(Url.class))).thenReturn(testUrl);
+        when(mongoTemplate.remove(any(Query.class), eq(Url.class))).thenReturn(DeleteResult.acknowledged(1));
 
-        urlService.incrementClickCount("abc123");
+        urlService.deleteUrlAsAdmin("abc123");
 
-        assertEquals(1, testUrl.getClickCount());
-        verify(urlRepository).save(testUrl);
+        verify(shortCodeFilterService).remove("url123", "abc123");
+        verify(redirectTableService).remove("abc123");
+        verify(userDashboardService).onUrlChanged(testUrl);
+    }
+
+    @Test
+    void deleteUrlAsAdmin_RepeatedDeleteLeavesARecreatedCodeVisible() {
+        ShortCodeFilterService filter = new ShortCodeFilterService(mongoTemplate, true, 0.01, 1000, 100, 60);
+        when(mongoTemplate.estimatedCount(Url.class)).thenReturn(0L);
+        when(mongoTemplate.stream(any(Query.class), eq(Url.class))).thenReturn(Stream.empty());
+        filter.rebuild();
+        ReflectionTestUtils.setField(urlService, "shortCodeFilterService", filter);
+        when(urlRepository.findByShortCode("abc123")).thenReturn(Optional.of(testUrl));
+        when(mongoTemplate.remove(any(Query.class), eq(Url.class)))
+                .thenReturn(DeleteResult.acknowledged(1), DeleteResult.acknowledged(0));
+
+        filter.add("abc123");
+        urlService.deleteUrlAsAdmin("abc123");
+        // The alias is taken again, then a delete from a stale cached url arrives
+        filter.add("abc123");
+        urlService.deleteUrlAsAdmin("abc123");
+
+        assertTrue(filter.mightExist("abc123"));
+    }
+
+    @Test
+    void updateUrl_WritesOnlyChangedFieldsAndKeepsClickCount() {
+        testUrl.setClickCount(42);
+        when(urlRepository.findByShortCode("abc123")).thenReturn(Optional.of(testUrl));
+        when(userService.findByEmail("test@example.com")).thenReturn(testUser);
+        UpdateUrlRequest request = UpdateUrlRequest.builder().title("Renamed").isActive(false).build();
+
+        UrlResponse response = urlService.updateUrl("abc123", request, "test@example.com");
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(Url.class));
+        assertTrue(update.getValue().modifies("title"));
+        assertTrue(update.getValue().modifies("isActive"));
+        assertFalse(update.getValue().modifies("clickCount"));
+        verify(urlRepository, never()).save(any());
+        assertEquals(42, response.getClickCount());
     }
 }
@@ -0,0 +1,131 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.Url;
+import com.urlshortener.model.UserDashboard;
+import com.urlshortener.repository.UrlRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserDashboardServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private UrlRepository urlRepository;
+
+    @Mock
+    private ClickRollupService clickRollupService;
+
+    private UserDashboardService dashboardService;
+
+    @BeforeEach
+    void setUp() {
+        dashboardService = new UserDashboardService(mongoTemplate, urlRepository, clickRollupService, 100);
+    }
+
+    private static Url url(String id, boolean active, LocalDateTime expiresAt) {
+        return Url.builder().id(id).shortCode("c-" + id).userId("user1").isActive(active).expiresAt(expiresAt)
+                .createdAt(LocalDateTime.now()).build();
+    }
+
+    private void stubUrlState(long total, long active, long expired) {
+        when(urlRepository.countByUserId("user1")).thenReturn(total);
+        when(urlRepository.countByUserIdAndIsActive("user1", true)).thenReturn(active);
+        when(urlRepository.countByUserIdAndExpired(eq("user1"), any(LocalDateTime.class))).thenReturn(expired);
+        when(urlRepository.findTop5ByUserIdOrderByCreatedAtDesc("user1")).thenReturn(List.of());
+        when(urlRepository.findTop5ByUserIdOrderByClickCountDesc("user1")).thenReturn(List.of());
+    }
+
+    private Document capturedUpdate() {
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(UserDashboard.class));
+        return update.getValue().getUpdateObject();
+    }
+
+    @Test
+    void onUrlCreated_CountsTheUrlAndPushesItToRecent() {
+        dashboardService.onUrlCreated(url("url1", true, null));
+
+        Document update = capturedUpdate();
+        Map<?, ?> inc = (Map<?, ?>) update.get("$inc");
+        assertEquals(1, inc.get("totalUrls"));
+        assertEquals(1, inc.get("activeUrls"));
+        assertEquals(0, inc.get("expiredUrls"));
+        assertTrue(((Map<?, ?>) update.get("$push")).containsKey("recentUrls"));
+    }
+
+    @Test
+    void onUrlChanged_RecomputesTheUrlCounts() {
+        stubUrlState(3, 2, 1);
+
+        dashboardService.onUrlChanged(url("url1", false, null));
+
+        Map<?, ?> set = (Map<?, ?>) capturedUpdate().get("$set");
+        assertEquals(3L, set.get("totalUrls"));
+        assertEquals(2L, set.get("activeUrls"));
+        assertEquals(1L, set.get("expiredUrls"));
+    }
+
+    @Test
+    void onUrlChanged_AfterDeleteDropsTheUrl() {
+        stubUrlState(0, 0, 0);
+
+        dashboardService.onUrlChanged(url("url1", true, null));
+
+        Map<?, ?> set = (Map<?, ?>) capturedUpdate().get("$set");
+        assertEquals(0L, set.get("totalUrls"));
+        assertEquals(List.of(), set.get("recentUrls"));
+    }
+
+    @Test
+    void onUrlsExpired_UsesTheSameCountAsTheQueryPath() {
+        // Created already expired, so onUrlCreated counted it; the sweep must not count it again
+        Url url = url("url1", true, LocalDateTime.now().minusDays(1));
+        dashboardService.onUrlCreated(url);
+        stubUrlState(1, 0, 1);
+
+        dashboardService.onUrlsExpired("user1");
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), updates.capture(), eq(UserDashboard.class));
+        assertEquals(1, ((Map<?, ?>) updates.getAllValues().get(0).getUpdateObject().get("$inc")).get("expiredUrls"));
+        Map<?, ?> set = (Map<?, ?>) updates.getAllValues().get(1).getUpdateObject().get("$set");
+        assertEquals(1L, set.get("expiredUrls"));
+        assertEquals(0L, set.get("activeUrls"));
+        assertFalse(updates.getAllValues().get(1).getUpdateObject().containsKey("$inc"));
+    }
+
+    @Test
+    void reconcile_CountsExpiredUrlsLikeTheQueryPath() {
+        stubUrlState(4, 3, 2);
+        when(clickRollupService.getTotalClicksForUser("user1")).thenReturn(10L);
+        when(clickRollupService.getClicksByDate(eq("userId"), eq("user1"), any(), any())).thenReturn(new TreeMap<>());
+        when(mongoTemplate.save(any(UserDashboard.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        UserDashboard dashboard = dashboardService.reconcile("user1");
+
+        assertEquals(4, dashboard.getTotalUrls());
+        assertEquals(3, dashboard.getActiveUrls());
+        assertEquals(2, dashboard.getExpiredUrls());
+        assertEquals(10, dashboard.getTotalClicks());
+    }
+}
@@ -0,0 +1,83 @@
+package com.urlshortener.service;
+
+import com.urlshortener.model.ClickEvent;
+import com.urlshortener.model.ClickRollup;
+import com.urlshortener.util.Hashing;
+import com.urlshortener.util.HyperLogLog;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VisitorSketchServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ClickRollupService clickRollupService;
+
+    private VisitorSketchService visitorSketchService;
+
+    @BeforeEach
+    void setUp() {
+        visitorSketchService = new VisitorSketchService(mongoTemplate, clickRollupService);
+        // Only the MONTH and TOTAL sketches are kept for a click outside the retained days
+        when(clickRollupService.retains(eq(ClickRollup.Granularity.DAY), any())).thenReturn(false);
+        visitorSketchService.onBatch(List.of(ClickEvent.builder()
+                .urlId("url1").userId("user1").ipAddress("203.0.113.7").timestamp(LocalDateTime.now()).build()));
+    }
+
+    @Test
+    void flush_RemergesAgainstTheNewerSketchAfterAConcurrentWrite() {
+        HyperLogLog stored = new HyperLogLog(VisitorSketchService.PRECISION);
+        stored.offer(Hashing.hash64("198.51.100.1"));
+        ClickRollup concurrent = ClickRollup.builder().visitorSketch(stored.toBytes()).visitorSketchVersion(1).build();
+        when(mongoTemplate.findOne(any(Query.class), eq(ClickRollup.class))).thenReturn(null, concurrent, null);
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(ClickRollup.class)))
+                .thenThrow(new DuplicateKeyException("_id"))
+                .thenReturn(null);
+
+        visitorSketchService.flush();
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(3)).upsert(queries.capture(), updates.capture(), eq(ClickRollup.class));
+        assertEquals(1L, queries.getAllValues().get(1).getQueryObject().get("visitorSketchVersion"));
+        Document retried = (Document) updates.getAllValues().get(1).getUpdateObject().get("$set");
+        assertEquals(2L, retried.get("visitorSketchVersion"));
+        assertEquals(2, HyperLogLog.fromBytes((byte[]) retried.get("visitorSketch")).cardinality());
+    }
+
+    @Test
+    void flush_KeepsTheSketchPendingWhenTheWriteFails() {
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(ClickRollup.class)))
+                .thenThrow(new IllegalStateException("down"));
+
+        visitorSketchService.flush();
+
+        when(mongoTemplate.find(any(Query.class), eq(ClickRollup.class))).thenReturn(List.of());
+        assertEquals(1, visitorSketchService.getLifetimeSketch("url1").cardinality());
+
+        reset(mongoTemplate);
+        visitorSketchService.flush();
+
+        verify(mongoTemplate, times(2)).upsert(any(Query.class), any(Update.class), eq(ClickRollup.class));
+    }
+}
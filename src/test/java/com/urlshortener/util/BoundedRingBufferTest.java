@@ -0,0 +1,86 @@
+package com.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedRingBufferTest {
+
+    @Test
+    void offerAndPoll_PreservesOrder() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(8);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(buffer.offer(i));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, buffer.poll());
+        }
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    void offer_WhenFull_ReturnsFalse() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+    }
+
+    @Test
+    void drainTo_RespectsLimit() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(16);
+        for (int i = 0; i < 10; i++) {
+            buffer.offer(i);
+        }
+
+        List<Integer> sink = new ArrayList<>();
+        int drained = buffer.drainTo(sink, 6);
+
+        assertEquals(6, drained);
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), sink);
+        assertEquals(4, buffer.size());
+    }
+
+    @Test
+    void offer_ConcurrentProducers_LosesNothing() throws Exception {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(1 << 16);
+        int producers = 4;
+        int perProducer = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch done = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            executor.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    buffer.offer(base + i);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        Set<Integer> seen = new HashSet<>();
+        Integer value;
+        while ((value = buffer.poll()) != null) {
+            seen.add(value);
+        }
+        assertEquals(producers * perProducer, seen.size());
+    }
+}
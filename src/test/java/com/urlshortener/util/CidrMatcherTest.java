@@ -0,0 +1,51 @@
+package com.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CidrMatcherTest {
+
+    @Test
+    void reserved_MatchesOnlyTheTwelveBitPrivateBlockOf172() {
+        assertFalse(CidrMatcher.RESERVED.matches("172.15.255.255"));
+        assertTrue(CidrMatcher.RESERVED.matches("172.16.0.1"));
+        assertTrue(CidrMatcher.RESERVED.matches("172.31.255.255"));
+        assertFalse(CidrMatcher.RESERVED.matches("172.32.0.1"));
+        assertFalse(CidrMatcher.RESERVED.matches("172.217.16.14"));
+    }
+
+    @Test
+    void reserved_MatchesPrivateLoopbackAndSharedIPv4Space() {
+        assertTrue(CidrMatcher.RESERVED.matches("127.0.0.1"));
+        assertTrue(CidrMatcher.RESERVED.matches("10.200.1.1"));
+        assertTrue(CidrMatcher.RESERVED.matches("192.168.1.1"));
+        assertTrue(CidrMatcher.RESERVED.matches("100.64.0.1"));
+        assertTrue(CidrMatcher.RESERVED.matches("239.255.255.250"));
+        assertFalse(CidrMatcher.RESERVED.matches("100.128.0.1"));
+        assertFalse(CidrMatcher.RESERVED.matches("8.8.8.8"));
+    }
+
+    @Test
+    void reserved_MatchesIPv6SpecialRanges() {
+        assertTrue(CidrMatcher.RESERVED.matches("::1"));
+        assertTrue(CidrMatcher.RESERVED.matches("0:0:0:0:0:0:0:1"));
+        assertTrue(CidrMatcher.RESERVED.matches("fe80::1"));
+        assertTrue(CidrMatcher.RESERVED.matches("fd12:3456::1"));
+        assertTrue(CidrMatcher.RESERVED.matches("2001:db8::1"));
+        assertFalse(CidrMatcher.RESERVED.matches("::2"));
+        assertFalse(CidrMatcher.RESERVED.matches("2606:4700::1111"));
+    }
+
+    @Test
+    void matches_ReturnsFalseForUnparseableAddress() {
+        assertFalse(CidrMatcher.RESERVED.matches("not-an-ip"));
+        assertFalse(CidrMatcher.RESERVED.matches((String) null));
+    }
+
+    @Test
+    void constructor_RejectsInvalidBlocks() {
+        assertThrows(IllegalArgumentException.class, () -> new CidrMatcher("10.0.0.0/33"));
+        assertThrows(IllegalArgumentException.class, () -> new CidrMatcher("nope/8"));
+    }
+}
@@ -0,0 +1,113 @@
+package com.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClickJournalTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendAndRead_ReturnsRecordsInOrder() throws Exception {
+        ClickJournal journal = ClickJournal.open(directory, SEGMENT_SIZE, 4);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(journal.append(bytes("click-" + i)));
+        }
+
+        ClickJournal.Batch batch = journal.read(journal.getCheckpoint(), 100);
+        assertEquals(10, batch.getRecords().size());
+        assertEquals("click-0", string(batch.getRecords().get(0)));
+        assertEquals("click-9", string(batch.getRecords().get(9)));
+        assertEquals(batch.getNext(), journal.read(batch.getNext(), 100).getNext());
+        journal.close();
+    }
+
+    @Test
+    void read_FollowsSegmentRotationAndCommitDeletesOldSegments() throws Exception {
+        ClickJournal journal = ClickJournal.open(directory, SEGMENT_SIZE, 8);
+        byte[] payload = new byte[1000];
+
+        for (int i = 0; i < 200; i++) {
+            assertTrue(journal.append(payload));
+        }
+        assertTrue(journal.segmentCount() > 1);
+
+        List<byte[]> all = new ArrayList<>();
+        ClickJournal.Position position = journal.getCheckpoint();
+        ClickJournal.Batch batch;
+        do {
+            batch = journal.read(position, 50);
+            all.addAll(batch.getRecords());
+            position = batch.getNext();
+        } while (!batch.getRecords().isEmpty());
+
+        assertEquals(200, all.size());
+        journal.commit(position);
+        assertEquals(1, journal.segmentCount());
+        assertEquals(0, journal.pendingBytes());
+        assertEquals(1, countSegmentFiles());
+        journal.close();
+    }
+
+    @Test
+    void append_ReturnsFalseWhenSegmentLimitReached() throws Exception {
+        ClickJournal journal = ClickJournal.open(directory, SEGMENT_SIZE, 2);
+        byte[] payload = new byte[1000];
+
+        int appended = 0;
+        while (journal.append(payload)) {
+            appended++;
+        }
+
+        assertTrue(appended > 100);
+        assertEquals(2, journal.segmentCount());
+        journal.close();
+    }
+
+    @Test
+    void open_ResumesFromCheckpointAfterRestart() throws Exception {
+        ClickJournal journal = ClickJournal.open(directory, SEGMENT_SIZE, 4);
+        for (int i = 0; i < 5; i++) {
+            journal.append(bytes("click-" + i));
+        }
+        ClickJournal.Batch first = journal.read(journal.getCheckpoint(), 3);
+        journal.commit(first.getNext());
+        journal.close();
+
+        ClickJournal reopened = ClickJournal.open(directory, SEGMENT_SIZE, 4);
+        reopened.append(bytes("click-5"));
+
+        ClickJournal.Batch remaining = reopened.read(reopened.getCheckpoint(), 100);
+        assertEquals(3, remaining.getRecords().size());
+        assertEquals("click-3", string(remaining.getRecords().get(0)));
+        assertEquals("click-5", string(remaining.getRecords().get(2)));
+        reopened.close();
+    }
+
+    private long countSegmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".journal")).count();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,55 @@
+package com.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountingBloomFilterTest {
+
+    @Test
+    void mightContain_AddedValues_ReturnsTrue() {
+        CountingBloomFilter filter = CountingBloomFilter.create(1000, 0.01);
+
+        for (int i = 0; i < 1000; i++) {
+            filter.add("code" + i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("code" + i));
+        }
+    }
+
+    @Test
+    void mightContain_UnknownValues_StaysNearFalsePositiveRate() {
+        CountingBloomFilter filter = CountingBloomFilter.create(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add("code" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("missing" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 300, "Too many false positives: " + falsePositives);
+    }
+
+    @Test
+    void remove_DropsValueWithoutAffectingOthers() {
+        CountingBloomFilter filter = CountingBloomFilter.create(1000, 0.01);
+        filter.add("abc123");
+        filter.add("xyz789");
+
+        filter.remove("abc123");
+
+        assertFalse(filter.mightContain("abc123"));
+        assertTrue(filter.mightContain("xyz789"));
+    }
+
+    @Test
+    void create_InvalidFalsePositiveRate_ThrowsException() {
+        assertThrows(IllegalArgumentException.class, () -> CountingBloomFilter.create(1000, 1.5));
+    }
+}
@@ -0,0 +1,70 @@
+package com.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void cardinality_IsWithinErrorBound() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        int distinct = 100_000;
+
+        for (int i = 0; i < distinct; i++) {
+            sketch.offer(Hashing.hash64("10.0." + (i >> 8) + "." + (i & 0xFF) + "#" + i));
+        }
+
+        double error = Math.abs(sketch.cardinality() - distinct) / (double) distinct;
+        assertTrue(error < 4 * sketch.standardError(), "relative error " + error);
+    }
+
+    @Test
+    void cardinality_IgnoresDuplicates() {
+        HyperLogLog sketch = new HyperLogLog(12);
+
+        for (int i = 0; i < 10_000; i++) {
+            sketch.offer(Hashing.hash64("visitor-" + (i % 50)));
+        }
+
+        assertEquals(50, sketch.cardinality(), 2);
+    }
+
+    @Test
+    void merge_MatchesUnion() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        HyperLogLog union = new HyperLogLog(12);
+
+        for (int i = 0; i < 20_000; i++) {
+            long hash = Hashing.hash64("ip-" + i);
+            (i % 2 == 0 ? first : second).offer(hash);
+            union.offer(hash);
+        }
+        first.merge(second);
+
+        assertEquals(union.cardinality(), first.cardinality());
+    }
+
+    @Test
+    void toBytes_RoundTripsSparseAndDense() {
+        HyperLogLog small = new HyperLogLog(12);
+        HyperLogLog large = new HyperLogLog(12);
+        for (int i = 0; i < 10; i++) {
+            small.offer(Hashing.hash64("small-" + i));
+        }
+        for (int i = 0; i < 50_000; i++) {
+            large.offer(Hashing.hash64("large-" + i));
+        }
+
+        byte[] smallBytes = small.toBytes();
+        assertTrue(smallBytes.length < 64);
+        assertEquals(small.cardinality(), HyperLogLog.fromBytes(smallBytes).cardinality());
+        assertEquals(large.cardinality(), HyperLogLog.fromBytes(large.toBytes()).cardinality());
+    }
+
+    @Test
+    void merge_RejectsDifferentPrecision() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(12).merge(new HyperLogLog(10)));
+    }
+}
@@ -0,0 +1,36 @@
+package com.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IpAddressesTest {
+
+    @Test
+    void parse_IPv4RoundTrips() {
+        byte[] bytes = IpAddresses.parse("203.0.113.7");
+
+        assertArrayEquals(new byte[]{(byte) 203, 0, 113, 7}, bytes);
+        assertEquals("203.0.113.7", IpAddresses.format(bytes));
+    }
+
+    @Test
+    void parse_IPv6RoundTrips() {
+        byte[] bytes = IpAddresses.parse("2001:db8::1");
+
+        assertNotNull(bytes);
+        assertEquals(16, bytes.length);
+        assertEquals("2001:db8:0:0:0:0:0:1", IpAddresses.format(bytes));
+    }
+
+    @Test
+    void parse_RejectsNonLiterals() {
+        assertNull(IpAddresses.parse(null));
+        assertNull(IpAddresses.parse(""));
+        assertNull(IpAddresses.parse("localhost"));
+        assertNull(IpAddresses.parse("256.1.1.1"));
+        assertNull(IpAddresses.parse("1.2.3"));
+        assertNull(IpAddresses.parse("1.2.3.4.5"));
+        assertNull(IpAddresses.parse("example.com:80"));
+    }
+}
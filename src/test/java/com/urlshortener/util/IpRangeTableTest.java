@@ -0,0 +1,67 @@
+package com.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IpRangeTableTest {
+
+    private static IpRangeTable.Builder<String> builder() {
+        return IpRangeTable.<String>builder();
+    }
+
+    private static void add(IpRangeTable.Builder<String> builder, String start, String end, String value) {
+        builder.add(IpAddresses.parse(start), IpAddresses.parse(end), value);
+    }
+
+    @Test
+    void lookup_FindsContainingIPv4Range() {
+        IpRangeTable.Builder<String> builder = builder();
+        add(builder, "203.0.113.0", "203.0.113.255", "doc");
+        add(builder, "1.0.0.0", "1.0.0.255", "low");
+        // Above 128.0.0.0, so only correct with unsigned comparison
+        add(builder, "200.0.0.0", "200.255.255.255", "high");
+        IpRangeTable<String> table = builder.build();
+
+        assertEquals("low", table.lookup("1.0.0.7"));
+        assertEquals("doc", table.lookup("203.0.113.0"));
+        assertEquals("doc", table.lookup("203.0.113.255"));
+        assertEquals("high", table.lookup("200.1.2.3"));
+        assertNull(table.lookup("203.0.114.0"));
+        assertNull(table.lookup("0.255.255.255"));
+        assertNull(table.lookup("not-an-ip"));
+    }
+
+    @Test
+    void lookup_FindsContainingIPv6Range() {
+        IpRangeTable.Builder<String> builder = builder();
+        add(builder, "2001:db8::", "2001:db8:0:ffff:ffff:ffff:ffff:ffff", "doc");
+        add(builder, "fe80::", "fe80::ffff", "link");
+        IpRangeTable<String> table = builder.build();
+
+        assertEquals("doc", table.lookup("2001:db8::1"));
+        assertEquals("link", table.lookup("fe80::1"));
+        assertNull(table.lookup("2001:db8:1::1"));
+        assertNull(table.lookup("1.2.3.4"));
+    }
+
+    @Test
+    void build_SharesEqualValues() {
+        IpRangeTable.Builder<String> builder = builder();
+        add(builder, "1.0.0.0", "1.0.0.255", "same");
+        add(builder, "2.0.0.0", "2.0.0.255", "same");
+        IpRangeTable<String> table = builder.build();
+
+        assertEquals(2, table.size());
+        assertEquals(1, table.distinctValues());
+    }
+
+    @Test
+    void build_RejectsOverlappingRanges() {
+        IpRangeTable.Builder<String> builder = builder();
+        add(builder, "1.0.0.0", "1.0.1.0", "a");
+        add(builder, "1.0.0.128", "1.0.2.0", "b");
+
+        assertThrows(IllegalArgumentException.class, builder::build);
+    }
+}
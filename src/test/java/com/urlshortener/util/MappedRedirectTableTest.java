@@ -0,0 +1,177 @@
+package com.urlshortener.util;
+
+import com.urlshortener.model.RedirectEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedRedirectTableTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void put_ThenGet_ReturnsEntry() throws Exception {
+        try (MappedRedirectTable table = MappedRedirectTable.open(directory, 1024, 1 << 20)) {
+            table.put(entry("abc123", "https://example.com", true), 1000);
+
+            RedirectEntry result = table.get("abc123", 0);
+
+            assertNotNull(result);
+            assertEquals("https://example.com", result.getTargetUrl());
+            assertEquals("url-abc123", result.getUrlId());
+            assertTrue(result.isActive());
+            assertNull(table.get("missing", 0));
+        }
+    }
+
+    @Test
+    void put_ExistingCode_ReplacesEntry() throws Exception {
+        try (MappedRedirectTable table = MappedRedirectTable.open(directory, 1024, 1 << 20)) {
+            table.put(entry("abc123", "https://example.com", true), 1000);
+            table.put(entry("abc123", "https://example.org", false), 2000);
+
+            RedirectEntry result = table.get("abc123", 0);
+
+            assertEquals(1, table.size());
+            assertEquals("https://example.org", result.getTargetUrl());
+            assertFalse(result.isActive());
+        }
+    }
+
+    @Test
+    void get_OlderThanMinimum_ReturnsNull() throws Exception {
+        try (MappedRedirectTable table = MappedRedirectTable.open(directory, 1024, 1 << 20)) {
+            table.put(entry("abc123", "https://example.com", true), 1000);
+
+            assertNull(table.get("abc123", 1001));
+        }
+    }
+
+    @Test
+    void remove_DeletesEntry() throws Exception {
+        try (MappedRedirectTable table = MappedRedirectTable.open(directory, 1024, 1 << 20)) {
+            table.put(entry("abc123", "https://example.com", true), 1000);
+
+            assertTrue(table.remove("abc123"));
+            assertNull(table.get("abc123", 0));
+            assertEquals(0, table.size());
+        }
+    }
+
+    @Test
+    void open_ExistingFiles_KeepsEntries() throws Exception {
+        try (MappedRedirectTable table = MappedRedirectTable.open(directory, 1024, 1 << 20)) {
+            table.put(entry("abc123", "https://example.com", true), 1000);
+        }
+
+        try (MappedRedirectTable table = MappedRedirectTable.open(directory, 1024, 1 << 20)) {
+            assertEquals(1, table.size());
+            assertEquals("https://example.com", table.get("abc123", 0).getTargetUrl());
+        }
+    }
+
+    @Test
+    void put_BeyondCapacityAndDataSize_ResizesAndCompacts() throws Exception {
+        try (MappedRedirectTable table = MappedRedirectTable.open(directory, 1024, 256 * 1024)) {
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 2000; i++) {
+                    table.put(entry("code" + i, "https://example.com/" + round + "/" + i, true), round);
+                }
+            }
+
+            assertEquals(2000, table.size());
+            assertTrue(table.capacity() > 2000);
+            assertEquals("https://example.com/4/1999", table.get("code1999", 0).getTargetUrl());
+        }
+    }
+
+    @Test
+    void open_IndexFromEarlierCompaction_StartsEmpty() throws Exception {
+        Path savedIndex = directory.resolve("saved.idx");
+        try (MappedRedirectTable table = MappedRedirectTable.open(directory, 1024, 64 * 1024)) {
+            table.put(entry("abc123", "https://example.com", true), 1000);
+            table.force();
+            Files.copy(directory.resolve("redirects.idx"), savedIndex);
+            for (int i = 0; i < 2000; i++) {
+                table.put(entry("abc123", "https://example.com/" + i, true), 1000);
+            }
+        }
+        // As if the process died after the data file was swapped but before the index was
+        Files.copy(savedIndex, directory.resolve("redirects.idx"), StandardCopyOption.REPLACE_EXISTING);
+
+        try (MappedRedirectTable table = MappedRedirectTable.open(directory, 1024, 64 * 1024)) {
+            assertEquals(0, table.size());
+            assertNull(table.get("abc123", 0));
+        }
+    }
+
+    @Test
+    void put_AfterCompaction_SurvivesReopen() throws Exception {
+        try (MappedRedirectTable table = MappedRedirectTable.open(directory, 1024, 64 * 1024)) {
+            table.put(entry("keep", "https://example.com/keep", true), 1000);
+            table.put(entry("gone", "https://example.com/gone", true), 1000);
+            table.remove("gone");
+            for (int i = 0; i < 2000; i++) {
+                table.put(entry("abc123", "https://example.com/" + i, true), 1000);
+            }
+        }
+
+        try (MappedRedirectTable table = MappedRedirectTable.open(directory, 1024, 64 * 1024)) {
+            assertEquals(2, table.size());
+            assertEquals("https://example.com/keep", table.get("keep", 0).getTargetUrl());
+            assertEquals("https://example.com/1999", table.get("abc123", 0).getTargetUrl());
+            assertNull(table.get("gone", 0));
+        }
+    }
+
+    @Test
+    void put_MapsDataFileOnlyAsItFills() throws Exception {
+        long maxDataBytes = 64L << 20;
+        try (MappedRedirectTable table = MappedRedirectTable.open(directory, 1024, maxDataBytes)) {
+            long initial = table.dataBytesMapped();
+            assertTrue(initial < maxDataBytes);
+            assertEquals(initial, Files.size(directory.resolve("redirects.dat")));
+
+            for (int i = 0; i < 20000; i++) {
+                table.put(entry("code" + i, "https://example.com/some/longer/path/" + i, true), 1000);
+            }
+
+            assertTrue(table.dataBytesMapped() > initial);
+            assertTrue(table.dataBytesMapped() < maxDataBytes);
+            assertEquals("https://example.com/some/longer/path/0", table.get("code0", 0).getTargetUrl());
+        }
+
+        try (MappedRedirectTable table = MappedRedirectTable.open(directory, 1024, maxDataBytes)) {
+            assertEquals(20000, table.size());
+            assertEquals("https://example.com/some/longer/path/19999", table.get("code19999", 0).getTargetUrl());
+        }
+    }
+
+    @Test
+    void get_AfterClose_ReturnsNull() throws Exception {
+        MappedRedirectTable table = MappedRedirectTable.open(directory, 1024, 1 << 20);
+        table.put(entry("abc123", "https://example.com", true), 1000);
+        table.close();
+
+        assertNull(table.get("abc123", 0));
+        assertFalse(table.remove("abc123"));
+    }
+
+    private RedirectEntry entry(String shortCode, String targetUrl, boolean active) {
+        return RedirectEntry.builder()
+                .shortCode(shortCode)
+                .targetUrl(targetUrl)
+                .urlId("url-" + shortCode)
+                .userId("user123")
+                .active(active)
+                .expiresAtMillis(RedirectEntry.NO_EXPIRY)
+                .passwordProtected(false)
+                .build();
+    }
+}
@@ -0,0 +1,23 @@
+package com.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MongoKeysTest {
+
+    @Test
+    void encode_EscapesPathCharacters() {
+        String encoded = MongoKeys.encode("https://www.example.com/$path%20");
+
+        assertFalse(encoded.contains("."));
+        assertFalse(encoded.contains("$"));
+        assertEquals("https://www.example.com/$path%20", MongoKeys.decode(encoded));
+    }
+
+    @Test
+    void encode_LeavesPlainKeysUntouched() {
+        assertSame("Chrome", MongoKeys.encode("Chrome"));
+        assertEquals("United States", MongoKeys.decode(MongoKeys.encode("United States")));
+    }
+}
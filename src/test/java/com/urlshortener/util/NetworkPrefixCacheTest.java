@@ -0,0 +1,91 @@
+package com.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkPrefixCacheTest {
+
+    @Test
+    void get_SharesEntriesWithinTheSameNetworkBlock() {
+        NetworkPrefixCache<String> cache = new NetworkPrefixCache<>(1000, Duration.ofHours(1));
+        cache.put(IpAddresses.parse("203.0.113.7"), "v4");
+        cache.put(IpAddresses.parse("2001:db8:1234:5::1"), "v6");
+
+        assertEquals("v4", cache.get(IpAddresses.parse("203.0.113.200")));
+        assertNull(cache.get(IpAddresses.parse("203.0.114.7")));
+        assertEquals("v6", cache.get(IpAddresses.parse("2001:db8:1234:ffff::9")));
+        assertNull(cache.get(IpAddresses.parse("2001:db8:1235::1")));
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    void prefixKey_KeepsFamiliesApartAndNeverReturnsZeroForAddresses() {
+        long v4 = NetworkPrefixCache.prefixKey(IpAddresses.parse("0.0.0.1"));
+        long v6 = NetworkPrefixCache.prefixKey(IpAddresses.parse("::1"));
+
+        assertNotEquals(0, v4);
+        assertNotEquals(0, v6);
+        assertNotEquals(v4, v6);
+        assertEquals(0, NetworkPrefixCache.prefixKey(null));
+    }
+
+    @Test
+    void put_StaysWithinBudgetAndKeepsRecentlyReadEntries() {
+        NetworkPrefixCache<Integer> cache = new NetworkPrefixCache<>(1024, Duration.ofHours(1));
+        byte[] hot = IpAddresses.parse("198.51.100.1");
+        cache.put(hot, -1);
+        for (int i = 0; i < 20_000; i++) {
+            cache.put(new byte[]{(byte) (i >>> 16), (byte) (i >>> 8), (byte) i, 0}, i);
+            if (i % 100 == 0) {
+                assertEquals(-1, cache.get(hot));
+            }
+        }
+
+        assertTrue(cache.size() <= 1024, "size " + cache.size());
+        assertEquals(-1, cache.get(hot));
+    }
+
+    @Test
+    void get_MissesOnceAnEntryOutlivesItsExpiry() {
+        AtomicLong now = new AtomicLong();
+        NetworkPrefixCache<String> cache = new NetworkPrefixCache<>(1000, Duration.ofMinutes(60), now::get);
+        byte[] address = IpAddresses.parse("203.0.113.7");
+        cache.put(address, "old");
+
+        now.addAndGet(Duration.ofMinutes(59).toNanos());
+        assertEquals("old", cache.get(address));
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+        assertNull(cache.get(address));
+
+        cache.put(address, "new");
+        assertEquals("new", cache.get(address));
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void get_CopyingForwardKeepsTheOriginalWriteTime() {
+        AtomicLong now = new AtomicLong();
+        NetworkPrefixCache<Integer> cache = new NetworkPrefixCache<>(32, Duration.ofMinutes(60), now::get);
+        byte[] old = IpAddresses.parse("198.51.100.1");
+        cache.put(old, -1);
+        now.addAndGet(Duration.ofMinutes(30).toNanos());
+        // Enough writes to rotate every generation many times; the reads keep copying it forward
+        for (int i = 0; i < 1000; i++) {
+            cache.put(new byte[]{10, (byte) (i >>> 8), (byte) i, 0}, i);
+            if (i % 10 == 0) {
+                assertEquals(-1, cache.get(old));
+            }
+        }
+
+        now.addAndGet(Duration.ofMinutes(29).toNanos());
+        assertEquals(-1, cache.get(old));
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+        assertNull(cache.get(old));
+    }
+}
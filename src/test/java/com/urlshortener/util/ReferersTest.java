@@ -0,0 +1,20 @@
+package com.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReferersTest {
+
+    @Test
+    void domain_KeepsOnlyTheHost() {
+        assertEquals("example.com", Referers.domain("https://www.Example.com:8443/path?q=1#top"));
+        assertEquals("news.example.org", Referers.domain("news.example.org/story"));
+    }
+
+    @Test
+    void domain_NullForMissingReferer() {
+        assertNull(Referers.domain(null));
+        assertNull(Referers.domain(" "));
+    }
+}
@@ -0,0 +1,76 @@
+package com.urlshortener.util;
+
+import com.urlshortener.model.ClickRollup.Granularity;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollupQueryPlannerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 4, 3, 6, 0);
+
+    private final RollupQueryPlanner planner = new RollupQueryPlanner(Map.of());
+
+    @Test
+    void plan_UsesMonthsInTheMiddleAndFinerTiersAtTheEdges() {
+        List<RollupQueryPlanner.Segment> segments = planner.plan(
+                LocalDateTime.of(2024, 1, 15, 10, 30), LocalDateTime.of(2024, 4, 3, 5, 14, 59),
+                NOW, Granularity.MINUTE, Granularity.MONTH);
+
+        assertEquals(List.of(
+                "MINUTE 2024-01-15T10:30..2024-01-15T10:59",
+                "HOUR 2024-01-15T11..2024-01-15T23",
+                "DAY 2024-01-16..2024-01-31",
+                "MONTH 2024-02..2024-03",
+                "DAY 2024-04-01..2024-04-02",
+                "HOUR 2024-04-03T00..2024-04-03T04",
+                "MINUTE 2024-04-03T05:00..2024-04-03T05:14"), describe(segments));
+    }
+
+    @Test
+    void plan_StopsAtCoarsestTier() {
+        List<RollupQueryPlanner.Segment> segments = planner.plan(
+                LocalDateTime.of(2024, 1, 15, 0, 0), LocalDateTime.of(2024, 4, 2, 23, 59),
+                NOW, Granularity.MINUTE, Granularity.DAY);
+
+        assertEquals(List.of("DAY 2024-01-15..2024-04-02"), describe(segments));
+    }
+
+    @Test
+    void plan_WidensEdgesPastRetention() {
+        RollupQueryPlanner pruned = new RollupQueryPlanner(Map.of(
+                Granularity.MINUTE, Duration.ofDays(2),
+                Granularity.HOUR, Duration.ofDays(30)));
+
+        List<RollupQueryPlanner.Segment> segments = pruned.plan(
+                LocalDateTime.of(2024, 1, 15, 10, 30), LocalDateTime.of(2024, 4, 2, 12, 45),
+                NOW, Granularity.MINUTE, Granularity.MONTH);
+
+        assertEquals(List.of(
+                "DAY 2024-01-15..2024-01-31",
+                "MONTH 2024-02..2024-03",
+                "DAY 2024-04-01..2024-04-01",
+                "HOUR 2024-04-02T00..2024-04-02T11",
+                "MINUTE 2024-04-02T12:00..2024-04-02T12:45"), describe(segments));
+    }
+
+    @Test
+    void plan_SingleMinuteAndEmptyRanges() {
+        LocalDateTime minute = LocalDateTime.of(2024, 4, 3, 5, 7, 12);
+
+        assertEquals(List.of("MINUTE 2024-04-03T05:07..2024-04-03T05:07"),
+                describe(planner.plan(minute, minute, NOW, Granularity.MINUTE, Granularity.MONTH)));
+        assertTrue(planner.plan(minute, minute.minusMinutes(1), NOW, Granularity.MINUTE, Granularity.MONTH).isEmpty());
+    }
+
+    private static List<String> describe(List<RollupQueryPlanner.Segment> segments) {
+        return segments.stream()
+                .map(segment -> segment.getGranularity() + " " + segment.getFirstBucket() + ".." + segment.getLastBucket())
+                .toList();
+    }
+}
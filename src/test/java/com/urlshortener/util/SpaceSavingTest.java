@@ -0,0 +1,73 @@
+package com.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingTest {
+
+    @Test
+    void top_FindsHeavyHittersInLongTail() {
+        SpaceSaving summary = new SpaceSaving(16);
+
+        for (int i = 0; i < 10_000; i++) {
+            summary.offer("tail-" + i);
+            if (i % 4 == 0) {
+                summary.offer("US");
+            }
+            if (i % 10 == 0) {
+                summary.offer("DE");
+            }
+        }
+
+        List<SpaceSaving.Counter> top = summary.top(2);
+        assertEquals("US", top.get(0).getItem());
+        assertEquals("DE", top.get(1).getItem());
+        assertTrue(top.get(0).getCount() - top.get(0).getError() <= 2500);
+        assertTrue(top.get(0).getCount() >= 2500);
+    }
+
+    @Test
+    void offer_IsExactBelowCapacity() {
+        SpaceSaving summary = new SpaceSaving(8);
+        summary.offer("Chrome", 5);
+        summary.offer("Firefox", 2);
+        summary.offer("Chrome");
+
+        assertEquals(0, summary.errorBound());
+        assertEquals(new SpaceSaving.Counter("Chrome", 6, 0), summary.top(1).get(0));
+    }
+
+    @Test
+    void merge_CombinesCountsAndKeepsBounds() {
+        SpaceSaving first = new SpaceSaving(4);
+        SpaceSaving second = new SpaceSaving(4);
+        for (int i = 0; i < 100; i++) {
+            first.offer("a");
+            second.offer("a");
+            second.offer("b");
+            first.offer("x" + (i % 20));
+        }
+
+        first.merge(second);
+
+        SpaceSaving.Counter a = first.top(1).get(0);
+        assertEquals("a", a.getItem());
+        assertTrue(a.getCount() >= 200);
+        assertTrue(a.getCount() - a.getError() <= 200);
+        assertTrue(first.size() <= 4);
+    }
+
+    @Test
+    void of_RestoresCounters() {
+        SpaceSaving restored = SpaceSaving.of(2, List.of(
+                new SpaceSaving.Counter("a", 10, 1),
+                new SpaceSaving.Counter("b", 5, 0),
+                new SpaceSaving.Counter("c", 1, 0)));
+
+        assertEquals(2, restored.size());
+        assertEquals(5, restored.errorBound());
+    }
+}
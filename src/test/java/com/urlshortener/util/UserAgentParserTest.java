@@ -0,0 +1,40 @@
+package com.urlshortener.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserAgentParserTest {
+
+    private static final String IPAD =
+            "Mozilla/5.0 (iPad; CPU OS 17_0 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.0 Mobile/15E148 Safari/604.1";
+
+    @Test
+    void parse_MemoizesRepeatedUserAgents() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        UserAgentParser parser = new UserAgentParser(registry, 1 << 20);
+
+        UserAgentParser.ParsedUserAgent first = parser.parse(IPAD);
+        UserAgentParser.ParsedUserAgent second = parser.parse(IPAD);
+
+        assertSame(first, second);
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "userAgents").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void parse_ClassifiesFromOneLowercasedString() {
+        UserAgentParser parser = new UserAgentParser(new SimpleMeterRegistry(), 1 << 20);
+
+        UserAgentParser.ParsedUserAgent tablet = parser.parse(IPAD);
+        assertEquals("Tablet", tablet.getDeviceType());
+        assertTrue(tablet.isMobile());
+        assertFalse(tablet.isBot());
+
+        UserAgentParser.ParsedUserAgent bot = parser.parse("Mozilla/5.0 (compatible; Googlebot/2.1)");
+        assertEquals("Bot", bot.getDeviceType());
+        assertTrue(bot.isBot());
+
+        assertEquals("Unknown", parser.parse("").getDeviceType());
+    }
+}